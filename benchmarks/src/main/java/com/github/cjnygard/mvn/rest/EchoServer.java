@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.Random;
+
+import org.glassfish.grizzly.http.Method;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+
+/**
+ * An embedded HTTP server for the benchmarks.
+ *
+ * Request bodies are echoed back as the response, so uploads and downloads
+ * are the same size. A <code>GET</code> request returns <code>size</code>
+ * bytes, taken from the query parameter of that name.
+ */
+public class EchoServer
+{
+
+    private final HttpServer server = new HttpServer();
+
+    private final byte[] payload;
+
+    private final int port;
+
+    /**
+     * @param maxDownload
+     *            the largest response to a <code>GET</code> request
+     * @throws IOException
+     *             if the server cannot be started
+     */
+    public EchoServer( int maxDownload ) throws IOException
+    {
+        payload = new byte[maxDownload];
+        new Random( 42 ).nextBytes( payload );
+        port = freePort();
+        server.addListener( new NetworkListener( "benchmark", "127.0.0.1", port ) );
+        server.getServerConfiguration().addHttpHandler( new HttpHandler()
+        {
+            @Override
+            public void service( Request request, Response response ) throws Exception
+            {
+                response.setContentType( "application/octet-stream" );
+                if ( Method.GET.equals( request.getMethod() ) )
+                {
+                    int size = Math.min( payload.length, Integer.parseInt( request.getParameter( "size" ) ) );
+                    response.setContentLength( size );
+                    response.getOutputStream().write( payload, 0, size );
+                }
+                else
+                {
+                    echo( request.getInputStream(), response.getOutputStream() );
+                }
+            }
+        }, "/" );
+        server.start();
+    }
+
+    private static void echo( InputStream in, OutputStream out ) throws IOException
+    {
+        byte[] buffer = new byte[64 * 1024];
+        int n;
+        while ( (n = in.read( buffer )) != -1 )
+        {
+            out.write( buffer, 0, n );
+        }
+    }
+
+    private static int freePort() throws IOException
+    {
+        try ( ServerSocket socket = new ServerSocket( 0 ) )
+        {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * @return the base URI of the server
+     */
+    public URI getUri()
+    {
+        return URI.create( "http://127.0.0.1:" + port + "/" );
+    }
+
+    /**
+     * Stop the server and drop open connections.
+     */
+    public void stop()
+    {
+        server.shutdownNow();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.apache.maven.model.FileSet;
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.codehaus.plexus.util.ReflectionUtils;
+
+/**
+ * Configures plugin instances the way Maven would inject them.
+ */
+final class Mojos
+{
+
+    private Mojos()
+    {
+    }
+
+    /**
+     * @param endpoint
+     *            the service to call
+     * @param connector
+     *            the client connector
+     * @param outputDir
+     *            where the responses are written
+     * @return a plugin that logs warnings and errors only, with incremental
+     *         builds, metrics, request deduplication and conditional GET
+     *         requests turned off, so every iteration sends every request
+     */
+    static Plugin create( URI endpoint, String connector, File outputDir )
+    {
+        Plugin plugin = new Plugin();
+        plugin.setLog( new DefaultLog( new ConsoleLogger( Logger.LEVEL_WARN, "rest" ) ) );
+        set( plugin, "endpoint", endpoint );
+        set( plugin, "connector", connector );
+        set( plugin, "outputDir", outputDir );
+        set( plugin, "outputFilename", new File( "rest.out" ) );
+        set( plugin, "target", outputDir.getParentFile() );
+        set( plugin, "incremental", false );
+        set( plugin, "metrics", false );
+        set( plugin, "deduplicate", false );
+        set( plugin, "conditionalGet", false );
+        return plugin;
+    }
+
+    /**
+     * @param plugin
+     *            the plugin
+     * @param directory
+     *            the files to send
+     */
+    static void fileset( Plugin plugin, File directory )
+    {
+        FileSet fileset = new FileSet();
+        fileset.setDirectory( directory.getPath() );
+        fileset.addInclude( "*.bin" );
+        set( plugin, "fileset", fileset );
+    }
+
+    static void set( Plugin plugin, String parameter, Object value )
+    {
+        try
+        {
+            ReflectionUtils.setVariableValueInObject( plugin, parameter, value );
+        }
+        catch ( IllegalAccessException ex )
+        {
+            throw new IllegalStateException( String.format( "Unable to set [%s]", parameter ), ex );
+        }
+    }
+
+    /**
+     * Create files of random bytes.
+     *
+     * @param directory
+     *            the directory to create the files in
+     * @param count
+     *            the number of files
+     * @param size
+     *            the size of each file
+     * @throws IOException
+     *             if a file cannot be written
+     */
+    static void createFiles( Path directory, int count, int size ) throws IOException
+    {
+        Random random = new Random( 42 );
+        byte[] data = new byte[size];
+        for ( int i = 0; i < count; i++ )
+        {
+            random.nextBytes( data );
+            Files.write( directory.resolve( String.format( "f%04d.bin", i ) ), data );
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A full plugin execution uploading a directory of files, each echoed back
+ * by the server and written to the output directory. Covers client creation,
+ * request dispatch, the upload and the response processing.
+ *
+ * Select a subset of the parameters with <code>-p</code>, for example
+ * <code>java -jar target/benchmarks.jar RequestBenchmark -p connector=apache</code>.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class RequestBenchmark
+{
+
+    @Param( { "1024", "65536", "1048576" } )
+    public int fileSize;
+
+    @Param( { "16", "128" } )
+    public int fileCount;
+
+    @Param( { ClientFactory.DEFAULT, ClientFactory.APACHE, ClientFactory.GRIZZLY, ClientFactory.JETTY } )
+    public String connector;
+
+    @Param( { "1", "8" } )
+    public int concurrency;
+
+    @Param( { "false", "true" } )
+    public boolean async;
+
+    private EchoServer server;
+
+    private Path input;
+
+    private Path output;
+
+    @Setup( Level.Trial )
+    public void setUp() throws IOException
+    {
+        server = new EchoServer( 0 );
+        input = Files.createTempDirectory( "rest-benchmark-in" );
+        output = Files.createTempDirectory( "rest-benchmark-out" );
+        Mojos.createFiles( input, fileCount, fileSize );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() throws IOException
+    {
+        server.stop();
+        FileUtils.deleteDirectory( input.toFile() );
+        FileUtils.deleteDirectory( output.toFile() );
+    }
+
+    @Benchmark
+    public void execute() throws Exception
+    {
+        Plugin plugin = Mojos.create( server.getUri(), connector, output.toFile() );
+        Mojos.fileset( plugin, input.toFile() );
+        Mojos.set( plugin, "concurrency", concurrency );
+        Mojos.set( plugin, "async", async );
+        Mojos.set( plugin, "maxInFlight", concurrency );
+        plugin.execute();
+    }
+}
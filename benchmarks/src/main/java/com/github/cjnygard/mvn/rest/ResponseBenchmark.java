@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing responses to disk: {@link Plugin#pipeToFile} on its own, and a
+ * plain <code>GET</code> execution whose response goes through
+ * <code>processResponse</code>.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class ResponseBenchmark
+{
+
+    /** A response body held in memory. */
+    @State( Scope.Benchmark )
+    public static class Body
+    {
+
+        @Param( { "1024", "65536", "1048576", "16777216" } )
+        public int size;
+
+        private byte[] data;
+
+        private Path output;
+
+        private Plugin plugin;
+
+        @Setup( Level.Trial )
+        public void setUp() throws IOException
+        {
+            data = new byte[size];
+            new Random( 42 ).nextBytes( data );
+            output = Files.createTempDirectory( "rest-benchmark-out" );
+            plugin = Mojos.create( URI.create( "http://127.0.0.1/" ), ClientFactory.DEFAULT, output.toFile() );
+        }
+
+        @TearDown( Level.Trial )
+        public void tearDown() throws IOException
+        {
+            FileUtils.deleteDirectory( output.toFile() );
+        }
+    }
+
+    /** A server returning response bodies of a given size. */
+    @State( Scope.Benchmark )
+    public static class Service
+    {
+
+        @Param( { "1024", "65536", "1048576", "16777216" } )
+        public int size;
+
+        @Param( { ClientFactory.DEFAULT, ClientFactory.APACHE, ClientFactory.GRIZZLY, ClientFactory.JETTY } )
+        public String connector;
+
+        private EchoServer server;
+
+        private Path output;
+
+        @Setup( Level.Trial )
+        public void setUp() throws IOException
+        {
+            server = new EchoServer( size );
+            output = Files.createTempDirectory( "rest-benchmark-out" );
+        }
+
+        @TearDown( Level.Trial )
+        public void tearDown() throws IOException
+        {
+            server.stop();
+            FileUtils.deleteDirectory( output.toFile() );
+        }
+    }
+
+    @Benchmark
+    public void pipeToFile( Body body ) throws IOException
+    {
+        body.plugin.pipeToFile( new ByteArrayInputStream( body.data ), new File( body.output.toFile(), "pipe.out" ) );
+    }
+
+    @Benchmark
+    public void download( Service service ) throws Exception
+    {
+        Plugin get = Mojos.create( service.server.getUri(), service.connector, service.output.toFile() );
+        get.setMethod( "GET" );
+        Mojos.set( get, "queryParams", Collections.singletonMap( "size", String.valueOf( service.size ) ) );
+        get.execute();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+/**
+ * A concurrency limit that follows the observed capacity of the endpoint.
+ *
+ * Every request holds a slot from {@link #acquire()} until its response has
+ * been processed and {@link #release()} is called, and reports the
+ * round-trip time and outcome of each attempt with
+ * {@link #sample(long, boolean)}. The limit grows while requests succeed
+ * with a steady latency: by one for every success at first (slow start),
+ * then by one per round of <code>limit</code> requests. It is cut
+ * multiplicatively when a request is rejected by the endpoint (429, 5xx or
+ * transport errors) or when the smoothed latency rises well above the
+ * lowest latency of the recent requests, at most once per round trip.
+ *
+ * The lowest latency is taken over a window of the last
+ * {@link #MIN_RTT_WINDOW} to twice as many samples, so a single fast
+ * response, or a change of the endpoint or of the request sizes, does not
+ * hold the limit down for the rest of the build.
+ */
+public class AdaptiveLimit
+{
+
+    /** Latency above this multiple of the lowest latency means queueing. */
+    static final double LATENCY_TOLERANCE = 2.0;
+
+    /** The number of samples after which the lowest latency is forgotten. */
+    static final int MIN_RTT_WINDOW = 100;
+
+    private static final double BACKOFF_ERROR = 0.75;
+
+    private static final double BACKOFF_LATENCY = 0.9;
+
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private double limit;
+
+    private int inFlight;
+
+    private int peak;
+
+    private boolean slowStart = true;
+
+    /** The lowest latency of the previous and the current window. */
+    private long minRtt = Long.MAX_VALUE;
+
+    /** The lowest latency of the current window. */
+    private long windowMinRtt = Long.MAX_VALUE;
+
+    private int windowSamples;
+
+    private double smoothedRtt;
+
+    private long lastDecrease;
+
+    /**
+     * @param minLimit
+     *            the lowest limit
+     * @param initialLimit
+     *            the limit to start with
+     * @param maxLimit
+     *            the highest limit
+     */
+    public AdaptiveLimit( int minLimit, int initialLimit, int maxLimit )
+    {
+        Validate.isTrue( minLimit > 0, "minimum limit must be greater than 0" );
+        Validate.isTrue( maxLimit >= minLimit, "maximum limit must not be less than the minimum limit" );
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max( minLimit, Math.min( maxLimit, initialLimit ) );
+        this.peak = (int) limit;
+    }
+
+    /**
+     * Wait for a free slot.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public synchronized void acquire() throws InterruptedException
+    {
+        while ( inFlight >= (int) limit )
+        {
+            wait();
+        }
+        inFlight++;
+    }
+
+    /**
+     * Return a slot.
+     */
+    public synchronized void release()
+    {
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * Adjust the limit to the outcome of a request.
+     *
+     * @param rtt
+     *            the round-trip time of the request in nanoseconds, or 0 if
+     *            it is not known
+     * @param dropped
+     *            <code>true</code> if the endpoint rejected the request
+     * @return the change of the limit, negative if it was cut
+     */
+    public synchronized int sample( long rtt, boolean dropped )
+    {
+        int before = (int) limit;
+        long now = System.nanoTime();
+        if ( rtt > 0 )
+        {
+            minRtt = Math.min( minRtt, rtt );
+            windowMinRtt = Math.min( windowMinRtt, rtt );
+            if ( ++windowSamples >= MIN_RTT_WINDOW )
+            {
+                minRtt = windowMinRtt;
+                windowMinRtt = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+            smoothedRtt = (smoothedRtt == 0) ? rtt : ((1 - SMOOTHING) * smoothedRtt) + (SMOOTHING * rtt);
+        }
+        boolean queueing = (rtt > 0) && (smoothedRtt > LATENCY_TOLERANCE * minRtt);
+        if ( dropped || queueing )
+        {
+            // all requests in flight see the same overload, only react once per round trip
+            if ( slowStart || (now - lastDecrease >= smoothedRtt) )
+            {
+                limit = Math.max( minLimit, limit * (dropped ? BACKOFF_ERROR : BACKOFF_LATENCY) );
+                lastDecrease = now;
+                slowStart = false;
+            }
+        }
+        else if ( inFlight * 2 >= (int) limit )
+        {
+            limit = Math.min( maxLimit, limit + (slowStart ? 1.0 : (1.0 / limit)) );
+        }
+        peak = Math.max( peak, (int) limit );
+        notifyAll();
+        return (int) limit - before;
+    }
+
+    /**
+     * @return the current limit
+     */
+    public synchronized int getLimit()
+    {
+        return (int) limit;
+    }
+
+    /**
+     * @return the highest limit reached
+     */
+    public synchronized int getPeak()
+    {
+        return peak;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Limits the number of asynchronous REST requests in flight.
+ *
+ * A permit is taken with {@link #tryAcquire(long, TimeUnit)} before a
+ * request is sent, which blocks the submitting thread once
+ * <code>maxInFlight</code> requests are outstanding. Completed responses are
+ * handed to a small pool of worker threads with
+ * {@link #complete(Completion)}, which returns the permit once the request is
+ * done. A failed request is sent again with
+ * {@link #resend(Runnable, long, TimeUnit)} after its retry delay, keeping its
+ * permit, so no worker thread waits for the retry. The number of threads is
+ * therefore independent of the number of outstanding requests.
+ */
+public class AsyncRequestDispatcher
+{
+
+    /**
+     * The processing of a completed response.
+     */
+    public interface Completion
+    {
+        /**
+         * @return <code>true</code> if the request is done,
+         *         <code>false</code> if it will be sent again and keeps its
+         *         permit
+         */
+        boolean process();
+    }
+
+    private final int maxInFlight;
+
+    private final Semaphore inFlight;
+
+    private final RequestDispatcher completions;
+
+    private final ScheduledExecutorService retries;
+
+    /**
+     * @param maxInFlight
+     *            the maximum number of outstanding requests
+     * @param threads
+     *            the number of threads processing completed responses
+     */
+    public AsyncRequestDispatcher( int maxInFlight, int threads )
+    {
+        Validate.isTrue( maxInFlight > 0, "maxInFlight must be greater than 0" );
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore( maxInFlight );
+        this.completions = new RequestDispatcher( threads );
+        this.retries = Executors.newSingleThreadScheduledExecutor( new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable r )
+            {
+                Thread t = new Thread( r, "rest-retry" );
+                t.setDaemon( true );
+                return t;
+            }
+        } );
+    }
+
+    /**
+     * Wait a limited time until another request may be sent.
+     *
+     * @param timeout
+     *            the maximum time to wait
+     * @param unit
+     *            the unit of the timeout
+     * @return <code>true</code> if a permit was taken
+     * @throws MojoExecutionException
+     *             if interrupted while waiting
+     */
+    public boolean tryAcquire( long timeout, TimeUnit unit ) throws MojoExecutionException
+    {
+        try
+        {
+            return inFlight.tryAcquire( timeout, unit );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while waiting to send REST request", e );
+        }
+    }
+
+    /**
+     * Return the permit of a request that needs no further processing.
+     */
+    public void release()
+    {
+        inFlight.release();
+    }
+
+    /**
+     * Process a completed response on a worker thread, then return its
+     * permit unless the request is sent again.
+     *
+     * @param task
+     *            the response processing
+     */
+    public void complete( final Completion task )
+    {
+        completions.submit( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                boolean done = true;
+                try
+                {
+                    done = task.process();
+                }
+                finally
+                {
+                    if ( done )
+                    {
+                        inFlight.release();
+                    }
+                }
+            }
+        } );
+    }
+
+    /**
+     * Send a request again after a delay. The request keeps its permit,
+     * which <code>send</code> returns with {@link #release()} if it does not
+     * send the request, and which is returned if it throws an exception.
+     *
+     * @param send
+     *            sends the request, on the thread scheduling the retries
+     * @param delay
+     *            the time to wait before sending
+     * @param unit
+     *            the unit of the delay
+     * @return <code>false</code> if the dispatcher is shut down and the
+     *         request is not sent again
+     */
+    public boolean resend( final Runnable send, long delay, TimeUnit unit )
+    {
+        try
+        {
+            retries.schedule( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    boolean sent = false;
+                    try
+                    {
+                        send.run();
+                        sent = true;
+                    }
+                    finally
+                    {
+                        if ( !sent )
+                        {
+                            inFlight.release();
+                        }
+                    }
+                }
+            }, delay, unit );
+            return true;
+        }
+        catch ( RejectedExecutionException ex )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Wait for all outstanding requests, including their retries, to
+     * complete and release the worker threads.
+     *
+     * @throws MojoExecutionException
+     *             if interrupted while waiting, or if processing a response
+     *             failed with an exception
+     */
+    public void await() throws MojoExecutionException
+    {
+        try
+        {
+            inFlight.acquire( maxInFlight );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while waiting for REST requests", e );
+        }
+        finally
+        {
+            retries.shutdownNow();
+            completions.await();
+        }
+    }
+
+    /**
+     * Wait a limited time for all outstanding requests to complete. Response
+     * processing that has not completed by then is interrupted, and retries
+     * that have not been sent are dropped.
+     *
+     * @param timeout
+     *            the maximum time to wait
+     * @param unit
+     *            the unit of the timeout
+     * @return <code>true</code> if all requests completed
+     * @throws MojoExecutionException
+     *             if interrupted while waiting, or if processing a response
+     *             failed with an exception
+     */
+    public boolean await( long timeout, TimeUnit unit ) throws MojoExecutionException
+    {
+        long end = System.nanoTime() + unit.toNanos( timeout );
+        boolean done = false;
+        try
+        {
+            done = inFlight.tryAcquire( maxInFlight, timeout, unit );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while waiting for REST requests", e );
+        }
+        finally
+        {
+            retries.shutdownNow();
+            if ( done )
+            {
+                // every permit is back, so all completions have run
+                completions.await();
+            }
+            else
+            {
+                completions.await( Math.max( 0, end - System.nanoTime() ), TimeUnit.NANOSECONDS );
+            }
+        }
+        return done;
+    }
+}
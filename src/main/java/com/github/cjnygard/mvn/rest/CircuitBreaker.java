@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+/**
+ * Stops sending requests to an endpoint that is clearly down.
+ *
+ * After <code>threshold</code> consecutive failures the breaker opens and
+ * every request fails immediately. Once <code>cooldown</code> milliseconds
+ * have passed a single trial request is let through: if it succeeds the
+ * breaker closes again, otherwise it stays open for another cooldown.
+ */
+public class CircuitBreaker
+{
+
+    private final int threshold;
+
+    private final long cooldown;
+
+    private int failures;
+
+    private long openedAt = -1;
+
+    private boolean trial;
+
+    /**
+     * @param threshold
+     *            the number of consecutive failures that opens the breaker,
+     *            or 0 to never open it
+     * @param cooldown
+     *            milliseconds to wait before a trial request is sent to an
+     *            open breaker
+     */
+    public CircuitBreaker( int threshold, long cooldown )
+    {
+        Validate.isTrue( threshold >= 0, "circuitBreakerThreshold must not be negative" );
+        Validate.isTrue( cooldown >= 0, "circuitBreakerCooldown must not be negative" );
+        this.threshold = threshold;
+        this.cooldown = cooldown;
+    }
+
+    /**
+     * @return <code>true</code> if a request may be sent now
+     */
+    public synchronized boolean allowRequest()
+    {
+        if ( openedAt < 0 )
+        {
+            return true;
+        }
+        if ( !trial && (System.currentTimeMillis() - openedAt >= cooldown) )
+        {
+            trial = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Record a request that reached a working endpoint.
+     */
+    public synchronized void recordSuccess()
+    {
+        failures = 0;
+        openedAt = -1;
+        trial = false;
+    }
+
+    /**
+     * Record a request that failed because of the endpoint.
+     *
+     * @return <code>true</code> if this failure opened the breaker
+     */
+    public synchronized boolean recordFailure()
+    {
+        failures++;
+        if ( trial )
+        {
+            trial = false;
+            openedAt = System.currentTimeMillis();
+            return false;
+        }
+        if ( (threshold > 0) && (openedAt < 0) && (failures >= threshold) )
+        {
+            openedAt = System.currentTimeMillis();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> if requests are being rejected
+     */
+    public synchronized boolean isOpen()
+    {
+        return openedAt >= 0;
+    }
+}
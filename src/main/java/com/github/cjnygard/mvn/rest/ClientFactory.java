@@ -0,0 +1,346 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.eclipse.jetty.client.HttpClient;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientLifecycleListener;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.HttpUrlConnectorProvider;
+import org.glassfish.jersey.client.RequestEntityProcessing;
+import org.glassfish.jersey.grizzly.connector.GrizzlyConnectorProvider;
+import org.glassfish.jersey.jetty.connector.JettyConnectorProvider;
+import org.glassfish.jersey.media.multipart.MultiPartFeature;
+import org.glassfish.jersey.message.DeflateEncoder;
+import org.glassfish.jersey.message.GZipEncoder;
+
+import com.ning.http.client.AsyncHttpClientConfig;
+
+/**
+ * Creates the JAX-RS client used to send the REST requests.
+ *
+ * The client transport is selected by name from the Jersey connectors
+ * bundled with the plugin. The pooling connectors (<code>apache</code>,
+ * <code>grizzly</code> and <code>jetty</code>) keep connections alive between
+ * requests so that the TCP/TLS handshake is not repeated for every file.
+ */
+public class ClientFactory
+{
+
+    /** The JDK HttpURLConnection transport. */
+    public static final String DEFAULT = "default";
+
+    /** Apache HttpClient with a pooling connection manager. */
+    public static final String APACHE = "apache";
+
+    /** Grizzly AsyncHttpClient. */
+    public static final String GRIZZLY = "grizzly";
+
+    /** Jetty HttpClient. */
+    public static final String JETTY = "jetty";
+
+    private String connector = DEFAULT;
+
+    private int maxConnections = 64;
+
+    private int maxConnectionsPerRoute = 32;
+
+    private long connectionIdleTimeout = 30000L;
+
+    private String requestBufferingMode;
+
+    private int chunkSize = 64 * 1024;
+
+    private boolean compression;
+
+    private boolean multipart;
+
+    private int connectTimeout;
+
+    private int readTimeout;
+
+    /**
+     * @param connector
+     *            the name of the connector to use
+     */
+    public void setConnector( String connector )
+    {
+        this.connector = (null == connector) ? DEFAULT : connector.trim().toLowerCase( Locale.ENGLISH );
+    }
+
+    /**
+     * @param maxConnections
+     *            the maximum number of pooled connections
+     */
+    public void setMaxConnections( int maxConnections )
+    {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * @param maxConnectionsPerRoute
+     *            the maximum number of pooled connections to a single host
+     */
+    public void setMaxConnectionsPerRoute( int maxConnectionsPerRoute )
+    {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    /**
+     * @param connectionIdleTimeout
+     *            milliseconds after which an idle pooled connection is closed
+     */
+    public void setConnectionIdleTimeout( long connectionIdleTimeout )
+    {
+        this.connectionIdleTimeout = connectionIdleTimeout;
+    }
+
+    /**
+     * @param requestBufferingMode
+     *            <code>buffered</code> or <code>chunked</code>, or
+     *            <code>null</code> to use the connector default
+     */
+    public void setRequestBufferingMode( String requestBufferingMode )
+    {
+        this.requestBufferingMode = requestBufferingMode;
+    }
+
+    /**
+     * @param chunkSize
+     *            the chunk size in bytes for chunked request bodies
+     */
+    public void setChunkSize( int chunkSize )
+    {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param compression
+     *            <code>true</code> to gzip request bodies sent with a
+     *            <code>Content-Encoding</code> header and decode compressed
+     *            responses
+     */
+    public void setCompression( boolean compression )
+    {
+        this.compression = compression;
+    }
+
+    /**
+     * @param multipart
+     *            <code>true</code> to send and read multipart entities
+     */
+    public void setMultipart( boolean multipart )
+    {
+        this.multipart = multipart;
+    }
+
+    /**
+     * @param connectTimeout
+     *            milliseconds to wait for a connection, or 0 to wait forever
+     */
+    public void setConnectTimeout( int connectTimeout )
+    {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * @param readTimeout
+     *            milliseconds to wait for data from the server, or 0 to wait
+     *            forever
+     */
+    public void setReadTimeout( int readTimeout )
+    {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * @return the milliseconds after which an idle pooled connection is
+     *         closed
+     */
+    public long getConnectionIdleTimeout()
+    {
+        return connectionIdleTimeout;
+    }
+
+    /**
+     * @return identifies the settings, clients built from factories with
+     *         the same key are interchangeable
+     */
+    public String getKey()
+    {
+        return String.format( "%s|%d|%d|%d|%s|%d|%b|%b|%d|%d", connector, maxConnections, maxConnectionsPerRoute,
+                connectionIdleTimeout, requestBufferingMode, chunkSize, compression, multipart, connectTimeout,
+                readTimeout );
+    }
+
+    /**
+     * Build a new client. The caller owns the client and must close it to
+     * release the pooled connections.
+     *
+     * @return the configured client
+     * @throws MojoExecutionException
+     *             if the connector name is not known
+     */
+    public Client create() throws MojoExecutionException
+    {
+        ClientConfig config = new ClientConfig();
+        config.register( new FileChannelWriter() );
+        if ( connectTimeout > 0 )
+        {
+            config.property( ClientProperties.CONNECT_TIMEOUT, connectTimeout );
+        }
+        if ( readTimeout > 0 )
+        {
+            config.property( ClientProperties.READ_TIMEOUT, readTimeout );
+        }
+        if ( multipart )
+        {
+            config.register( MultiPartFeature.class );
+        }
+        if ( compression )
+        {
+            config.register( GZipEncoder.class );
+            config.register( DeflateEncoder.class );
+        }
+        if ( null != requestBufferingMode )
+        {
+            RequestEntityProcessing mode;
+            try
+            {
+                mode = RequestEntityProcessing.valueOf( requestBufferingMode.trim().toUpperCase( Locale.ENGLISH ) );
+            }
+            catch ( IllegalArgumentException ex )
+            {
+                throw new MojoExecutionException( String.format(
+                        "Unknown requestBufferingMode [%s], expected one of [buffered, chunked]",
+                        requestBufferingMode ), ex );
+            }
+            config.property( ClientProperties.REQUEST_ENTITY_PROCESSING, mode );
+            if ( RequestEntityProcessing.CHUNKED == mode )
+            {
+                config.property( ClientProperties.CHUNKED_ENCODING_SIZE, chunkSize );
+            }
+        }
+        switch ( connector )
+        {
+            case DEFAULT:
+                config.connectorProvider( new HttpUrlConnectorProvider() );
+                return ClientBuilder.newClient( config );
+            case APACHE:
+                configureApache( config );
+                return ClientBuilder.newClient( config );
+            case GRIZZLY:
+                configureGrizzly( config );
+                registerGzipDecodedFilter( config );
+                return ClientBuilder.newClient( config );
+            case JETTY:
+                config.connectorProvider( new JettyConnectorProvider() );
+                registerGzipDecodedFilter( config );
+                Client client = ClientBuilder.newClient( config );
+                HttpClient httpClient = JettyConnectorProvider.getHttpClient( client );
+                httpClient.setMaxConnectionsPerDestination( maxConnectionsPerRoute );
+                httpClient.setIdleTimeout( connectionIdleTimeout );
+                return client;
+            default:
+                throw new MojoExecutionException( String.format(
+                        "Unknown connector [%s], expected one of [%s, %s, %s, %s]", connector, DEFAULT,
+                        APACHE, GRIZZLY, JETTY ) );
+        }
+    }
+
+    private void configureApache( ClientConfig config )
+    {
+        final PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+        manager.setMaxTotal( maxConnections );
+        manager.setDefaultMaxPerRoute( maxConnectionsPerRoute );
+        final IdleConnectionEvictor evictor = new IdleConnectionEvictor( manager, connectionIdleTimeout,
+                TimeUnit.MILLISECONDS );
+
+        config.connectorProvider( new ApacheConnectorProvider() );
+        config.property( ApacheClientProperties.CONNECTION_MANAGER, manager );
+        config.register( new ClientLifecycleListener()
+        {
+            @Override
+            public void onInit()
+            {
+                evictor.start();
+            }
+
+            @Override
+            public void onClose()
+            {
+                evictor.shutdown();
+            }
+        } );
+    }
+
+    /**
+     * The grizzly and jetty clients decode gzip responses themselves but
+     * leave the <code>Content-Encoding</code> header in place; drop it so the
+     * response is not decoded twice.
+     */
+    private void registerGzipDecodedFilter( ClientConfig config )
+    {
+        if ( compression )
+        {
+            config.register( new ClientResponseFilter()
+            {
+                @Override
+                public void filter( ClientRequestContext request, ClientResponseContext response )
+                {
+                    if ( "gzip".equalsIgnoreCase( response.getHeaderString( HttpHeaders.CONTENT_ENCODING ) ) )
+                    {
+                        response.getHeaders().remove( HttpHeaders.CONTENT_ENCODING );
+                    }
+                }
+            } );
+        }
+    }
+
+    private void configureGrizzly( ClientConfig config )
+    {
+        config.connectorProvider( new GrizzlyConnectorProvider( new GrizzlyConnectorProvider.AsyncClientCustomizer()
+        {
+            @Override
+            public AsyncHttpClientConfig.Builder customize( Client client, Configuration configuration,
+                    AsyncHttpClientConfig.Builder builder )
+            {
+                return builder.setAllowPoolingConnections( true ).setMaxConnections( maxConnections )
+                        .setMaxConnectionsPerHost( maxConnectionsPerRoute )
+                        .setPooledConnectionIdleTimeout( (int) connectionIdleTimeout );
+            }
+        } ) );
+    }
+}
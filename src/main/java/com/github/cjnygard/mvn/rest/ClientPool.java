@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.client.Client;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Shares clients between the executions of a Maven session.
+ *
+ * Executions with the same client settings lease the same client, so its
+ * connection pool is reused by every module instead of being built and torn
+ * down by each of them. A client that is no longer leased is closed once it
+ * has been idle for the connection idle timeout, by which time its pooled
+ * connections would have been closed anyway. The thread closing idle
+ * clients only runs while the pool holds a client, so a pool left behind by
+ * a finished session in a long-lived JVM keeps neither threads nor
+ * connections.
+ */
+public class ClientPool
+    implements Closeable
+{
+
+    private static final class Lease
+    {
+        private final String key;
+
+        private final Client client;
+
+        private int count;
+
+        private ScheduledFuture<?> closing;
+
+        Lease( String key, Client client )
+        {
+            this.key = key;
+            this.client = client;
+        }
+    }
+
+    private final Map<String, Lease> leases = new HashMap<>();
+
+    private final Map<Client, Lease> clients = new IdentityHashMap<>();
+
+    private ScheduledThreadPoolExecutor closer;
+
+    /**
+     * Lease a client, building it if no client with the same settings is
+     * open.
+     *
+     * @param factory
+     *            builds the client
+     * @return the client, to be returned with {@link #release(Client, long)}
+     * @throws MojoExecutionException
+     *             if the client cannot be built
+     */
+    public synchronized Client lease( ClientFactory factory ) throws MojoExecutionException
+    {
+        Lease lease = leases.get( factory.getKey() );
+        if ( null == lease )
+        {
+            lease = new Lease( factory.getKey(), factory.create() );
+            leases.put( lease.key, lease );
+            clients.put( lease.client, lease );
+        }
+        else if ( null != lease.closing )
+        {
+            lease.closing.cancel( false );
+            lease.closing = null;
+        }
+        lease.count++;
+        return lease.client;
+    }
+
+    /**
+     * Return a leased client.
+     *
+     * @param client
+     *            the client
+     * @param linger
+     *            milliseconds to keep the client open for another lease once
+     *            it is no longer leased
+     */
+    public synchronized void release( Client client, long linger )
+    {
+        final Lease lease = clients.get( client );
+        if ( (null == lease) || (--lease.count > 0) )
+        {
+            return;
+        }
+        if ( linger <= 0 )
+        {
+            close( lease );
+            return;
+        }
+        lease.closing = getCloser().schedule( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                synchronized ( ClientPool.this )
+                {
+                    if ( (lease.count == 0) && (null != lease.closing) )
+                    {
+                        close( lease );
+                    }
+                }
+            }
+        }, linger, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Close every client, leased or not, and stop the thread closing idle
+     * clients.
+     */
+    @Override
+    public synchronized void close()
+    {
+        for ( Lease lease : new ArrayList<>( leases.values() ) )
+        {
+            close( lease );
+        }
+    }
+
+    /**
+     * @return the number of open clients
+     */
+    public synchronized int size()
+    {
+        return leases.size();
+    }
+
+    private void close( Lease lease )
+    {
+        leases.remove( lease.key );
+        clients.remove( lease.client );
+        if ( null != lease.closing )
+        {
+            lease.closing.cancel( false );
+            lease.closing = null;
+        }
+        lease.client.close();
+        if ( leases.isEmpty() && (null != closer) )
+        {
+            closer.shutdown();
+            closer = null;
+        }
+    }
+
+    private ScheduledThreadPoolExecutor getCloser()
+    {
+        if ( null == closer )
+        {
+            closer = new ScheduledThreadPoolExecutor( 1, new ThreadFactory()
+            {
+                @Override
+                public Thread newThread( Runnable r )
+                {
+                    Thread t = new Thread( r, "rest-client-closer" );
+                    t.setDaemon( true );
+                    return t;
+                }
+            } );
+            closer.setRemoveOnCancelPolicy( true );
+        }
+        return closer;
+    }
+}
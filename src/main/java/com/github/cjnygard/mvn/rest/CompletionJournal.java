@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records the outcome of every file of an execution as it finishes.
+ *
+ * The journal is a text file with one line per completed or failed file,
+ * holding the status, the request fingerprint, the checksum of the output
+ * and the input path. Every line is written to the file as soon as the file
+ * is done, so the journal of a build that was killed still lists the files
+ * that were completed. A resumed build skips a file only if its request is
+ * unchanged and its output still has the recorded checksum.
+ */
+public class CompletionJournal
+{
+
+    private static final String DONE = "done";
+
+    private static final String FAILED = "failed";
+
+    private static final String SEPARATOR = "\t";
+
+    private final File journalFile;
+
+    /** The last entry of every input file, from the journal of an earlier build. */
+    private final Map<String, String[]> entries = new HashMap<>();
+
+    private FileChannel channel;
+
+    /**
+     * @param journalFile
+     *            the file backing this journal
+     */
+    public CompletionJournal( File journalFile )
+    {
+        this.journalFile = journalFile;
+    }
+
+    /**
+     * @return the file backing this journal
+     */
+    public File getFile()
+    {
+        return journalFile;
+    }
+
+    /**
+     * Open the journal for appending.
+     *
+     * @param resume
+     *            <code>true</code> to keep the entries of the earlier build,
+     *            <code>false</code> to start an empty journal
+     * @throws IOException
+     *             if the journal cannot be read or written
+     */
+    public synchronized void open( boolean resume ) throws IOException
+    {
+        entries.clear();
+        File dir = journalFile.getAbsoluteFile().getParentFile();
+        if ( !dir.isDirectory() && !dir.mkdirs() )
+        {
+            throw new IOException( String.format( "Unable to create path [%s]", dir ) );
+        }
+        if ( resume && journalFile.isFile() )
+        {
+            load();
+            compact( dir );
+        }
+        channel = FileChannel.open( journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND );
+        if ( !resume )
+        {
+            channel.truncate( 0 );
+        }
+    }
+
+    /**
+     * @return the number of files completed by the earlier build
+     */
+    public synchronized int getCompletedCount()
+    {
+        int count = 0;
+        for ( String[] entry : entries.values() )
+        {
+            if ( DONE.equals( entry[0] ) )
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param input
+     *            the input file
+     * @param fingerprint
+     *            the fingerprint of the request that would be sent now
+     * @param output
+     *            the output file the request would produce
+     * @return <code>true</code> if an earlier build completed the same
+     *         request and its output is unchanged
+     */
+    public boolean isCompleted( File input, String fingerprint, File output )
+    {
+        String[] entry;
+        synchronized ( this )
+        {
+            entry = entries.get( input.getAbsolutePath() );
+        }
+        if ( (null == entry) || !DONE.equals( entry[0] ) || !entry[1].equals( fingerprint ) || !output.isFile() )
+        {
+            return false;
+        }
+        try
+        {
+            return entry[2].equals( RequestFingerprint.content( output ) );
+        }
+        catch ( IOException ex )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Record a completed file.
+     *
+     * @param input
+     *            the input file
+     * @param fingerprint
+     *            the fingerprint of the request that was sent
+     * @param output
+     *            the output file written for the response
+     * @throws IOException
+     *             if the output cannot be read or the journal written
+     */
+    public void completed( File input, String fingerprint, File output ) throws IOException
+    {
+        append( DONE, fingerprint, RequestFingerprint.content( output ), input );
+    }
+
+    /**
+     * Record a failed file, so it is sent again when the build is resumed.
+     *
+     * @param input
+     *            the input file
+     * @param fingerprint
+     *            the fingerprint of the request that was sent
+     * @throws IOException
+     *             if the journal cannot be written
+     */
+    public void failed( File input, String fingerprint ) throws IOException
+    {
+        append( FAILED, fingerprint, "-", input );
+    }
+
+    /**
+     * Close the journal. The entries stay on disk for a resumed build.
+     *
+     * @throws IOException
+     *             if the journal cannot be closed
+     */
+    public synchronized void close() throws IOException
+    {
+        if ( null != channel )
+        {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Close and delete the journal, once every file of the build completed.
+     *
+     * @throws IOException
+     *             if the journal cannot be deleted
+     */
+    public synchronized void delete() throws IOException
+    {
+        close();
+        entries.clear();
+        Files.deleteIfExists( journalFile.toPath() );
+    }
+
+    private void append( String status, String fingerprint, String checksum, File input ) throws IOException
+    {
+        String line = status + SEPARATOR + fingerprint + SEPARATOR + checksum + SEPARATOR + input.getAbsolutePath()
+                + "\n";
+        ByteBuffer buffer = ByteBuffer.wrap( line.getBytes( StandardCharsets.UTF_8 ) );
+        synchronized ( this )
+        {
+            if ( null == channel )
+            {
+                throw new IOException( String.format( "Journal [%s] is not open", journalFile ) );
+            }
+            // one write per line, so a killed build loses at most the line being written
+            while ( buffer.hasRemaining() )
+            {
+                channel.write( buffer );
+            }
+        }
+    }
+
+    private void load() throws IOException
+    {
+        try ( BufferedReader reader = Files.newBufferedReader( journalFile.toPath(), StandardCharsets.UTF_8 ) )
+        {
+            for ( String line = reader.readLine(); null != line; line = reader.readLine() )
+            {
+                String[] entry = line.split( SEPARATOR, 4 );
+                if ( (4 == entry.length) && (DONE.equals( entry[0] ) || FAILED.equals( entry[0] )) )
+                {
+                    entries.put( entry[3], entry );
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace the journal with the last entry of every file, dropping the
+     * superseded entries and any line cut short by a killed build.
+     */
+    private void compact( File dir ) throws IOException
+    {
+        File tmp = File.createTempFile( journalFile.getName(), ".tmp", dir );
+        try
+        {
+            try ( Writer out = Files.newBufferedWriter( tmp.toPath(), StandardCharsets.UTF_8 ) )
+            {
+                for ( String[] entry : entries.values() )
+                {
+                    out.write( entry[0] + SEPARATOR + entry[1] + SEPARATOR + entry[2] + SEPARATOR + entry[3] + "\n" );
+                }
+            }
+            Files.move( tmp.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE );
+        }
+        finally
+        {
+            Files.deleteIfExists( tmp.toPath() );
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time by which all REST requests of an execution must be done.
+ *
+ * When the deadline passes, the registered expiry tasks run on a timer
+ * thread to cancel the requests still in flight.
+ */
+public class Deadline
+{
+
+    private final long timeout;
+
+    private final long expiresAt;
+
+    private final List<Runnable> tasks = new CopyOnWriteArrayList<>();
+
+    private volatile boolean expired;
+
+    private ScheduledExecutorService timer;
+
+    /**
+     * @param timeout
+     *            milliseconds from now, or 0 for no deadline
+     */
+    public Deadline( long timeout )
+    {
+        Validate.isTrue( timeout >= 0, "deadline must not be negative" );
+        this.timeout = timeout;
+        this.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeout );
+    }
+
+    /**
+     * @return <code>true</code> if there is a deadline
+     */
+    public boolean isSet()
+    {
+        return timeout > 0;
+    }
+
+    /**
+     * @return the timeout in milliseconds
+     */
+    public long getTimeout()
+    {
+        return timeout;
+    }
+
+    /**
+     * @return <code>true</code> once the deadline has passed
+     */
+    public boolean isExpired()
+    {
+        return expired || (isSet() && (System.nanoTime() - expiresAt >= 0));
+    }
+
+    /**
+     * @param unit
+     *            the unit of the result
+     * @return the time left, 0 once expired, or {@link Long#MAX_VALUE} if
+     *         there is no deadline
+     */
+    public long remaining( TimeUnit unit )
+    {
+        if ( !isSet() )
+        {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert( Math.max( 0, expiresAt - System.nanoTime() ), TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * Register a task to run when the deadline passes.
+     *
+     * @param task
+     *            the expiry task
+     */
+    public void onExpiry( Runnable task )
+    {
+        tasks.add( task );
+    }
+
+    /**
+     * Start the timer.
+     */
+    public synchronized void start()
+    {
+        if ( !isSet() || (null != timer) )
+        {
+            return;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor( new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable r )
+            {
+                Thread t = new Thread( r, "rest-deadline" );
+                t.setDaemon( true );
+                return t;
+            }
+        } );
+        timer.schedule( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                expired = true;
+                for ( Runnable task : tasks )
+                {
+                    task.run();
+                }
+            }
+        }, remaining( TimeUnit.NANOSECONDS ), TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * Stop the timer; the expiry tasks will not run any more.
+     */
+    public synchronized void cancel()
+    {
+        if ( null != timer )
+        {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+}
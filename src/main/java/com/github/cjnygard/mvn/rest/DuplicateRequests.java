@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds file requests that are identical to a request already sent, by this
+ * or by another execution in the same Maven session.
+ *
+ * Requests are identical when they have the same key, the fingerprint of the
+ * request configuration and the file content. Only the first request with a
+ * key is sent; the others wait for its response, or use it straight away if
+ * it has already arrived. Concurrent executions, such as modules of a
+ * parallel build converting the same shared file, thereby send it once.
+ *
+ * The requests of an execution are forgotten when it releases them, so
+ * responses are only shared while the execution that received them runs.
+ *
+ * @param <R>
+ *            the type of the request results
+ */
+public class DuplicateRequests<R>
+{
+
+    /**
+     * Completes a duplicate from the response to the identical request.
+     *
+     * @param <R>
+     *            the type of the request results
+     */
+    public interface Waiter<R>
+    {
+        /**
+         * @param source
+         *            the request that was sent
+         * @param result
+         *            its result, <code>null</code> on success
+         */
+        void completed( FileRequest source, R result );
+    }
+
+    /**
+     * The first request with a key, and the duplicates waiting for its
+     * response.
+     *
+     * @param <R>
+     *            the type of the request results
+     */
+    public static final class Source<R>
+    {
+
+        private final Object owner;
+
+        private final FileRequest request;
+
+        private final List<Waiter<R>> waiting = new ArrayList<>();
+
+        private boolean done;
+
+        private R result;
+
+        Source( Object owner, FileRequest request )
+        {
+            this.owner = owner;
+            this.request = request;
+        }
+
+        /**
+         * Wait for the response of this request.
+         *
+         * @param waiter
+         *            completes the duplicate once the response arrives
+         * @return <code>true</code> if the waiter is called once this request
+         *         completes, <code>false</code> if it has already completed
+         */
+        public synchronized boolean attach( Waiter<R> waiter )
+        {
+            if ( !done )
+            {
+                waiting.add( waiter );
+            }
+            return !done;
+        }
+
+        void complete( R result )
+        {
+            List<Waiter<R>> waiters;
+            synchronized ( this )
+            {
+                if ( done )
+                {
+                    return;
+                }
+                this.done = true;
+                this.result = result;
+                waiters = new ArrayList<>( waiting );
+                waiting.clear();
+            }
+            for ( Waiter<R> waiter : waiters )
+            {
+                waiter.completed( request, result );
+            }
+        }
+
+        /**
+         * @return the request
+         */
+        public FileRequest getRequest()
+        {
+            return request;
+        }
+
+        /**
+         * @return the result, <code>null</code> on success
+         */
+        public synchronized R getResult()
+        {
+            return result;
+        }
+    }
+
+    private final Map<String, Source<R>> sources = new HashMap<>();
+
+    /**
+     * Register a request that is about to be sent.
+     *
+     * @param owner
+     *            the execution sending the request
+     * @param request
+     *            the request, identified by its cache key
+     * @return <code>null</code> if the request must be sent, otherwise the
+     *         earlier identical request
+     */
+    public synchronized Source<R> add( Object owner, FileRequest request )
+    {
+        Source<R> source = sources.get( request.getCacheKey() );
+        if ( null == source )
+        {
+            sources.put( request.getCacheKey(), new Source<R>( owner, request ) );
+        }
+        return source;
+    }
+
+    /**
+     * Record the result of a request that was sent, and complete the
+     * duplicates waiting for it.
+     *
+     * @param request
+     *            the request
+     * @param result
+     *            its result, <code>null</code> on success
+     */
+    public void complete( FileRequest request, R result )
+    {
+        Source<R> source;
+        synchronized ( this )
+        {
+            source = sources.get( request.getCacheKey() );
+        }
+        if ( (null != source) && (source.getRequest() == request) )
+        {
+            source.complete( result );
+        }
+    }
+
+    /**
+     * Forget the requests of an execution that has ended. Duplicates still
+     * waiting for one of its requests are completed with an error.
+     *
+     * @param owner
+     *            the execution
+     * @param abandoned
+     *            the result of requests that were never completed
+     */
+    public void release( Object owner, R abandoned )
+    {
+        List<Source<R>> released = new ArrayList<>();
+        synchronized ( this )
+        {
+            for ( Iterator<Source<R>> it = sources.values().iterator(); it.hasNext(); )
+            {
+                Source<R> source = it.next();
+                if ( source.owner == owner )
+                {
+                    released.add( source );
+                    it.remove();
+                }
+            }
+        }
+        for ( Source<R> source : released )
+        {
+            source.complete( abandoned );
+        }
+    }
+
+    /**
+     * @return the number of distinct requests
+     */
+    public synchronized int size()
+    {
+        return sources.size();
+    }
+}
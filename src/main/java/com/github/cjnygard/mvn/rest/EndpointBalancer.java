@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreads REST requests over several equivalent endpoints.
+ *
+ * Each request goes to the healthy endpoint with the fewest outstanding
+ * requests, ties taking turns. An endpoint that fails
+ * <code>threshold</code> requests in a row is ejected and receives no more
+ * requests until a background probe finds it healthy again. If every
+ * endpoint is ejected, requests still go to the least loaded one so that
+ * their failures are reported.
+ */
+public class EndpointBalancer
+{
+
+    /**
+     * Checks whether an ejected endpoint can take requests again.
+     */
+    public interface Probe
+    {
+        /**
+         * @param uri
+         *            the endpoint
+         * @return <code>true</code> if the endpoint is healthy
+         */
+        boolean isHealthy( URI uri );
+    }
+
+    /**
+     * One endpoint and its load.
+     */
+    public static final class Replica
+    {
+
+        private final URI uri;
+
+        private int outstanding;
+
+        private int failures;
+
+        private boolean ejected;
+
+        Replica( URI uri )
+        {
+            this.uri = uri;
+        }
+
+        /**
+         * @return the endpoint
+         */
+        public URI getUri()
+        {
+            return uri;
+        }
+    }
+
+    private final List<Replica> replicas = new ArrayList<>();
+
+    private final int threshold;
+
+    private int next;
+
+    private ScheduledExecutorService prober;
+
+    /**
+     * @param uris
+     *            the endpoints
+     * @param threshold
+     *            the number of consecutive failures that ejects an
+     *            endpoint, or 0 to never eject
+     */
+    public EndpointBalancer( List<URI> uris, int threshold )
+    {
+        Validate.isTrue( !uris.isEmpty(), "at least one endpoint is required" );
+        Validate.isTrue( threshold >= 0, "endpointFailureThreshold must not be negative" );
+        for ( URI uri : uris )
+        {
+            replicas.add( new Replica( uri ) );
+        }
+        this.threshold = threshold;
+    }
+
+    /**
+     * Choose the endpoint for a request. The request is outstanding until it
+     * is passed to {@link #release(Replica, boolean)}.
+     *
+     * @return the chosen endpoint
+     */
+    public synchronized Replica acquire()
+    {
+        Replica best = choose( false );
+        if ( null == best )
+        {
+            best = choose( true );
+        }
+        best.outstanding++;
+        return best;
+    }
+
+    private Replica choose( boolean ejected )
+    {
+        Replica best = null;
+        int size = replicas.size();
+        for ( int i = 0; i < size; i++ )
+        {
+            Replica r = replicas.get( (next + i) % size );
+            if ( (r.ejected == ejected) && ((null == best) || (r.outstanding < best.outstanding)) )
+            {
+                best = r;
+            }
+        }
+        next = (next + 1) % size;
+        return best;
+    }
+
+    /**
+     * Record the outcome of a request.
+     *
+     * @param replica
+     *            the endpoint the request was sent to
+     * @param failed
+     *            <code>true</code> if the endpoint failed the request
+     * @return <code>true</code> if this failure ejected the endpoint
+     */
+    public synchronized boolean release( Replica replica, boolean failed )
+    {
+        replica.outstanding--;
+        if ( !failed )
+        {
+            replica.failures = 0;
+            replica.ejected = false;
+            return false;
+        }
+        replica.failures++;
+        if ( !replica.ejected && (threshold > 0) && (replica.failures >= threshold) )
+        {
+            replica.ejected = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of consecutive failures that ejects an endpoint
+     */
+    public int getThreshold()
+    {
+        return threshold;
+    }
+
+    /**
+     * @return the endpoints currently ejected
+     */
+    public synchronized List<URI> getEjected()
+    {
+        List<URI> ejected = new ArrayList<>();
+        for ( Replica r : replicas )
+        {
+            if ( r.ejected )
+            {
+                ejected.add( r.uri );
+            }
+        }
+        return ejected;
+    }
+
+    private synchronized void reinstate( URI uri )
+    {
+        for ( Replica r : replicas )
+        {
+            if ( r.uri.equals( uri ) )
+            {
+                r.failures = 0;
+                r.ejected = false;
+            }
+        }
+    }
+
+    /**
+     * Probe the ejected endpoints on a background thread.
+     *
+     * @param probe
+     *            the health check
+     * @param interval
+     *            milliseconds between probes
+     */
+    public synchronized void startProbing( final Probe probe, long interval )
+    {
+        if ( (null != prober) || (interval <= 0) )
+        {
+            return;
+        }
+        prober = Executors.newSingleThreadScheduledExecutor( new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable r )
+            {
+                Thread t = new Thread( r, "rest-endpoint-probe" );
+                t.setDaemon( true );
+                return t;
+            }
+        } );
+        prober.scheduleWithFixedDelay( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for ( URI uri : getEjected() )
+                {
+                    try
+                    {
+                        if ( probe.isHealthy( uri ) )
+                        {
+                            reinstate( uri );
+                        }
+                    }
+                    catch ( RuntimeException ex )
+                    {
+                        // an exception would cancel all further probes
+                    }
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Stop probing.
+     */
+    public synchronized void close()
+    {
+        if ( null != prober )
+        {
+            prober.shutdownNow();
+            prober = null;
+        }
+    }
+
+    /**
+     * @return the number of outstanding requests of each endpoint
+     */
+    synchronized List<Integer> getOutstanding()
+    {
+        List<Integer> outstanding = new ArrayList<>();
+        for ( Replica r : replicas )
+        {
+            outstanding.add( r.outstanding );
+        }
+        return Collections.unmodifiableList( outstanding );
+    }
+}
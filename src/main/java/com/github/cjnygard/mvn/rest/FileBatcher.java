@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Groups file requests into batches sent as a single multipart request.
+ *
+ * A batch is closed when adding another file would take it past
+ * <code>batchSize</code> files or <code>batchBytes</code> bytes. A single file
+ * larger than <code>batchBytes</code> is sent in a batch of its own.
+ */
+public class FileBatcher
+{
+
+    private final int batchSize;
+
+    private final long batchBytes;
+
+    private List<FileRequest> current = new ArrayList<>();
+
+    private long currentBytes;
+
+    /**
+     * @param batchSize
+     *            the maximum number of files per batch, or 0 for no limit
+     * @param batchBytes
+     *            the maximum total file size per batch, or 0 for no limit
+     */
+    public FileBatcher( int batchSize, long batchBytes )
+    {
+        this.batchSize = batchSize;
+        this.batchBytes = batchBytes;
+    }
+
+    /**
+     * Add a file to the current batch.
+     *
+     * @param request
+     *            the file request
+     * @return a batch that is ready to be sent, or <code>null</code>
+     */
+    public List<FileRequest> add( FileRequest request )
+    {
+        List<FileRequest> full = null;
+        long length = request.getInput().length();
+        if ( !current.isEmpty() && (((batchSize > 0) && (current.size() >= batchSize))
+                || ((batchBytes > 0) && (currentBytes + length > batchBytes))) )
+        {
+            full = flush();
+        }
+        current.add( request );
+        currentBytes += length;
+        return full;
+    }
+
+    /**
+     * Close the current batch.
+     *
+     * @return the files of the current batch, possibly empty
+     */
+    public List<FileRequest> flush()
+    {
+        List<FileRequest> batch = current;
+        current = new ArrayList<>();
+        currentBytes = 0;
+        return batch;
+    }
+}
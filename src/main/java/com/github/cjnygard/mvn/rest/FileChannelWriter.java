@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+/**
+ * Streams uploaded files straight from a {@link FileChannel}.
+ *
+ * Files of any size are sent with {@link FileChannel#transferTo}, which
+ * copies through a bounded buffer without holding the file in memory, so
+ * combined with chunked request entity processing, uploads take constant
+ * heap regardless of the file size.
+ */
+public class FileChannelWriter implements MessageBodyWriter<File>
+{
+
+    @Override
+    public boolean isWriteable( Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType )
+    {
+        return File.class.isAssignableFrom( type );
+    }
+
+    @Override
+    public long getSize( File file, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType )
+    {
+        // ignored since JAX-RS 2.0, the length is taken from the entity
+        return -1;
+    }
+
+    @Override
+    public void writeTo( File file, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream )
+        throws IOException, WebApplicationException
+    {
+        WritableByteChannel out = Channels.newChannel( entityStream );
+        try ( FileChannel in = FileChannel.open( file.toPath(), StandardOpenOption.READ ) )
+        {
+            long size = in.size();
+            long position = 0;
+            while ( position < size )
+            {
+                long count = in.transferTo( position, size - position, out );
+                if ( count <= 0 )
+                {
+                    throw new IOException( String.format( "File [%s] truncated while sending", file ) );
+                }
+                position += count;
+            }
+        }
+        // the entity stream belongs to the connector, flush but do not close it
+        entityStream.flush();
+    }
+}
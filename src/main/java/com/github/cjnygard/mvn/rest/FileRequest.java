@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.io.File;
+
+/**
+ * A file that must be sent to the REST service, along with the keys used to
+ * record its result once the response has been stored.
+ */
+public class FileRequest
+{
+
+    private final File input;
+
+    private final String outputFilename;
+
+    private final File output;
+
+    private final String fingerprint;
+
+    private final String cacheKey;
+
+    /**
+     * @param input
+     *            the file to upload
+     * @param outputFilename
+     *            the name of the result file
+     * @param output
+     *            the result file
+     * @param fingerprint
+     *            the fingerprint recorded for incremental builds and in the
+     *            journal, or <code>null</code>
+     * @param cacheKey
+     *            the fingerprint of the request configuration and file
+     *            content, which keys the response cache and identifies
+     *            duplicate files, or <code>null</code>
+     */
+    public FileRequest( File input, String outputFilename, File output, String fingerprint, String cacheKey )
+    {
+        this.input = input;
+        this.outputFilename = outputFilename;
+        this.output = output;
+        this.fingerprint = fingerprint;
+        this.cacheKey = cacheKey;
+    }
+
+    /**
+     * @return the input
+     */
+    public File getInput()
+    {
+        return input;
+    }
+
+    /**
+     * @return the outputFilename
+     */
+    public String getOutputFilename()
+    {
+        return outputFilename;
+    }
+
+    /**
+     * @return the output
+     */
+    public File getOutput()
+    {
+        return output;
+    }
+
+    /**
+     * @return the fingerprint
+     */
+    public String getFingerprint()
+    {
+        return fingerprint;
+    }
+
+    /**
+     * @return the cacheKey
+     */
+    public String getCacheKey()
+    {
+        return cacheKey;
+    }
+}
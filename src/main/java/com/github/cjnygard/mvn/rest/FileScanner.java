@@ -0,0 +1,550 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.maven.model.FileSet;
+import org.codehaus.plexus.util.DirectoryScanner;
+
+/**
+ * Lists the files of filesets with {@link Files#walkFileTree}.
+ *
+ * Include and exclude patterns use the Ant syntax of the plexus
+ * <code>DirectoryScanner</code> (<code>*</code>, <code>?</code>,
+ * <code>**</code>, a trailing <code>/</code> for <code>/**</code> and
+ * <code>%regex[..]</code>) and are compiled once per fileset. The default
+ * excludes of the <code>DirectoryScanner</code> (version control metadata,
+ * editor backups and the like) are always added. Directories that are
+ * excluded, or cannot contain an included file, are not entered.
+ * The filesets and the top level directories of each fileset are walked in
+ * parallel. Symbolic links are followed.
+ *
+ * A file reached through several filesets, or through a symbolic link to a
+ * directory, is listed once. Within a fileset this only needs the set of
+ * visited directories; the canonical paths of the files are kept only when
+ * there are several filesets.
+ *
+ * Like the <code>DirectoryScanner</code>, a directory that cannot be read
+ * is skipped and the scan goes on.
+ */
+public class FileScanner
+{
+
+    /**
+     * Notified of every directory or file that is skipped because it cannot
+     * be read.
+     */
+    public interface Listener
+    {
+        /**
+         * @param path
+         *            the directory or file that was skipped
+         * @param ex
+         *            the reason it cannot be read
+         */
+        void skipped( File path, IOException ex );
+    }
+
+    private final int threads;
+
+    private final Listener listener;
+
+    /**
+     * Scan with one thread per processor.
+     */
+    public FileScanner()
+    {
+        this( Runtime.getRuntime().availableProcessors(), null );
+    }
+
+    /**
+     * Scan with one thread per processor.
+     *
+     * @param listener
+     *            notified of the paths that are skipped, or <code>null</code>
+     */
+    public FileScanner( Listener listener )
+    {
+        this( Runtime.getRuntime().availableProcessors(), listener );
+    }
+
+    /**
+     * @param threads
+     *            the maximum number of directories walked at the same time
+     */
+    public FileScanner( int threads )
+    {
+        this( threads, null );
+    }
+
+    /**
+     * @param threads
+     *            the maximum number of directories walked at the same time
+     * @param listener
+     *            notified of the paths that are skipped, or <code>null</code>
+     */
+    public FileScanner( int threads, Listener listener )
+    {
+        Validate.isTrue( threads > 0, "threads must be greater than 0" );
+        this.threads = threads;
+        this.listener = listener;
+    }
+
+    /**
+     * List the files of the filesets, sorted by path. Filesets without a
+     * directory are ignored.
+     *
+     * @param filesets
+     *            the filesets to scan
+     * @return the distinct files of all filesets
+     * @throws IOException
+     *             if a fileset directory does not exist
+     */
+    public List<File> scan( List<FileSet> filesets ) throws IOException
+    {
+        List<File> files = new ArrayList<>();
+        try ( FileStream stream = stream( filesets, 1024 ) )
+        {
+            for ( File f = stream.next(); null != f; f = stream.next() )
+            {
+                files.add( f );
+            }
+        }
+        Collections.sort( files );
+        return files;
+    }
+
+    /**
+     * Start scanning the filesets in the background. Files are handed over
+     * in the order they are found.
+     *
+     * @param filesets
+     *            the filesets to scan
+     * @param capacity
+     *            the number of files the scan may run ahead of the consumer
+     * @return the files, to be closed by the caller
+     * @throws IOException
+     *             if a fileset directory does not exist
+     */
+    public FileStream stream( List<FileSet> filesets, int capacity ) throws IOException
+    {
+        List<FileSet> scanned = new ArrayList<>();
+        for ( FileSet fs : filesets )
+        {
+            if ( (null != fs) && (null != fs.getDirectory()) )
+            {
+                if ( !new File( fs.getDirectory() ).isDirectory() )
+                {
+                    throw new IOException( String.format( "Fileset directory [%s] does not exist",
+                            fs.getDirectory() ) );
+                }
+                scanned.add( fs );
+            }
+        }
+        FileStream stream = new FileStream( capacity, threads );
+        Set<Path> files = (scanned.size() > 1) ? newSet() : null;
+        // the tasks of one fileset may all complete before the next is forked
+        stream.hold();
+        try
+        {
+            for ( FileSet fs : scanned )
+            {
+                Path root = new File( fs.getDirectory() ).toPath();
+                new Walk( stream, root, new Patterns( fs.getIncludes(), fs.getExcludes() ), newSet(), files,
+                        listener ).fork( root );
+            }
+        }
+        catch ( RuntimeException ex )
+        {
+            stream.close();
+            throw ex;
+        }
+        finally
+        {
+            stream.finish();
+        }
+        return stream;
+    }
+
+    private static Set<Path> newSet()
+    {
+        return Collections.newSetFromMap( new ConcurrentHashMap<Path, Boolean>() );
+    }
+
+    /**
+     * The walk of one fileset. The fileset directory and each of its
+     * subdirectories are walked by separate tasks.
+     */
+    private static final class Walk
+    {
+
+        private final FileStream stream;
+
+        private final Path root;
+
+        private final Patterns patterns;
+
+        /** The canonical directories visited by this fileset. */
+        private final Set<Path> dirs;
+
+        /** The canonical files of all filesets, or <code>null</code>. */
+        private final Set<Path> files;
+
+        private final Listener listener;
+
+        private Walk( FileStream stream, Path root, Patterns patterns, Set<Path> dirs, Set<Path> files,
+                Listener listener )
+        {
+            this.stream = stream;
+            this.root = root;
+            this.patterns = patterns;
+            this.dirs = dirs;
+            this.files = files;
+            this.listener = listener;
+        }
+
+        private void fork( final Path start )
+        {
+            stream.fork( new FileStream.Task()
+            {
+                @Override
+                public void run() throws IOException
+                {
+                    walk( start );
+                }
+            } );
+        }
+
+        private void walk( final Path start ) throws IOException
+        {
+            final Map<Path, Path> realDirs = new HashMap<>();
+            Files.walkFileTree( start, EnumSet.of( FileVisitOption.FOLLOW_LINKS ), Integer.MAX_VALUE,
+                    new SimpleFileVisitor<Path>()
+                    {
+                        @Override
+                        public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attrs )
+                            throws IOException
+                        {
+                            if ( !dir.equals( root ) )
+                            {
+                                String relative = relative( dir );
+                                if ( !patterns.couldHoldIncluded( relative )
+                                        || patterns.isExcludedTree( relative ) )
+                                {
+                                    return FileVisitResult.SKIP_SUBTREE;
+                                }
+                                if ( !dir.equals( start ) && start.equals( root ) )
+                                {
+                                    fork( dir );
+                                    return FileVisitResult.SKIP_SUBTREE;
+                                }
+                            }
+                            Path real = (dir.equals( start ) || Files.isSymbolicLink( dir )) ? dir.toRealPath()
+                                    : realDirs.get( dir.getParent() ).resolve( dir.getFileName() );
+                            if ( !dirs.add( real ) )
+                            {
+                                // already walked through another link
+                                return FileVisitResult.SKIP_SUBTREE;
+                            }
+                            realDirs.put( dir, real );
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFile( Path file, BasicFileAttributes attrs )
+                            throws IOException
+                        {
+                            if ( attrs.isRegularFile() && patterns.isIncluded( relative( file ) ) )
+                            {
+                                if ( (null == files)
+                                        || files.add( realDirs.get( file.getParent() ).resolve( file.getFileName() ) ) )
+                                {
+                                    stream.put( file.toFile() );
+                                }
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed( Path file, IOException ex ) throws IOException
+                        {
+                            if ( ex instanceof FileSystemLoopException )
+                            {
+                                // a link back to a parent, every file is listed already
+                                return FileVisitResult.CONTINUE;
+                            }
+                            skipped( file, ex );
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult postVisitDirectory( Path dir, IOException ex ) throws IOException
+                        {
+                            if ( null != ex )
+                            {
+                                skipped( dir, ex );
+                            }
+                            realDirs.remove( dir );
+                            return FileVisitResult.CONTINUE;
+                        }
+                    } );
+        }
+
+        private void skipped( Path path, IOException ex )
+        {
+            if ( null != listener )
+            {
+                listener.skipped( path.toFile(), ex );
+            }
+        }
+
+        private String relative( Path path )
+        {
+            Path relative = root.relativize( path );
+            if ( relative.getNameCount() == 1 )
+            {
+                return relative.toString();
+            }
+            StringBuilder sb = new StringBuilder();
+            for ( Path name : relative )
+            {
+                if ( sb.length() > 0 )
+                {
+                    sb.append( '/' );
+                }
+                sb.append( name.toString() );
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * The compiled include and exclude patterns of a fileset, matched
+     * against relative paths separated by <code>/</code>.
+     */
+    static final class Patterns
+    {
+
+        private final List<AntPattern> includes = new ArrayList<>();
+
+        private final List<AntPattern> excludes = new ArrayList<>();
+
+        Patterns( List<String> includes, List<String> excludes )
+        {
+            for ( String include : includes )
+            {
+                this.includes.add( new AntPattern( include ) );
+            }
+            for ( String exclude : excludes )
+            {
+                this.excludes.add( new AntPattern( exclude ) );
+            }
+            for ( String exclude : DirectoryScanner.DEFAULTEXCLUDES )
+            {
+                this.excludes.add( new AntPattern( exclude ) );
+            }
+        }
+
+        boolean isIncluded( String path )
+        {
+            boolean included = false;
+            for ( AntPattern include : includes )
+            {
+                if ( include.matches( path ) )
+                {
+                    included = true;
+                    break;
+                }
+            }
+            if ( included )
+            {
+                for ( AntPattern exclude : excludes )
+                {
+                    if ( exclude.matches( path ) )
+                    {
+                        return false;
+                    }
+                }
+            }
+            return included;
+        }
+
+        boolean couldHoldIncluded( String dir )
+        {
+            for ( AntPattern include : includes )
+            {
+                if ( include.couldMatchBelow( dir ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isExcludedTree( String dir )
+        {
+            for ( AntPattern exclude : excludes )
+            {
+                if ( exclude.matchesTree( dir ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * One Ant style pattern.
+     */
+    static final class AntPattern
+    {
+
+        private static final String REGEX_PREFIX = "%regex[";
+
+        private static final String ANT_PREFIX = "%ant[";
+
+        private final Pattern regex;
+
+        /** The compiled path segments, <code>null</code> for <code>**</code>. */
+        private final Pattern[] segments;
+
+        AntPattern( String pattern )
+        {
+            String p = pattern.trim();
+            if ( p.startsWith( REGEX_PREFIX ) && p.endsWith( "]" ) )
+            {
+                regex = Pattern.compile( p.substring( REGEX_PREFIX.length(), p.length() - 1 ) );
+                segments = null;
+                return;
+            }
+            if ( p.startsWith( ANT_PREFIX ) && p.endsWith( "]" ) )
+            {
+                p = p.substring( ANT_PREFIX.length(), p.length() - 1 );
+            }
+            p = p.replace( '\\', '/' );
+            if ( p.endsWith( "/" ) )
+            {
+                p += "**";
+            }
+            String[] tokens = p.split( "/", -1 );
+            segments = new Pattern[tokens.length];
+            StringBuilder sb = new StringBuilder();
+            for ( int i = 0; i < tokens.length; i++ )
+            {
+                boolean last = i == tokens.length - 1;
+                if ( "**".equals( tokens[i] ) )
+                {
+                    sb.append( last ? ".*" : "(?:[^/]*/)*" );
+                }
+                else
+                {
+                    String segment = segment( tokens[i] );
+                    segments[i] = Pattern.compile( segment );
+                    sb.append( segment ).append( last ? "" : "/" );
+                }
+            }
+            regex = Pattern.compile( sb.toString() );
+        }
+
+        private static String segment( String token )
+        {
+            StringBuilder sb = new StringBuilder();
+            for ( char c : token.toCharArray() )
+            {
+                if ( c == '*' )
+                {
+                    sb.append( "[^/]*" );
+                }
+                else if ( c == '?' )
+                {
+                    sb.append( "[^/]" );
+                }
+                else
+                {
+                    sb.append( Pattern.quote( String.valueOf( c ) ) );
+                }
+            }
+            return sb.toString();
+        }
+
+        boolean matches( String path )
+        {
+            return regex.matcher( path ).matches();
+        }
+
+        /**
+         * @return <code>true</code> unless the pattern proves that no path
+         *         below the directory matches
+         */
+        boolean couldMatchBelow( String dir )
+        {
+            if ( null == segments )
+            {
+                return true;
+            }
+            String[] names = dir.split( "/" );
+            for ( int i = 0; i < names.length; i++ )
+            {
+                if ( i >= segments.length - 1 )
+                {
+                    // the last segment names the file itself
+                    return (segments.length > 0) && (null == segments[segments.length - 1]);
+                }
+                if ( null == segments[i] )
+                {
+                    return true;
+                }
+                if ( !segments[i].matcher( names[i] ).matches() )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return <code>true</code> if the pattern matches everything below
+         *         the directory
+         */
+        boolean matchesTree( String dir )
+        {
+            return (null != segments) && (segments.length > 0) && (null == segments[segments.length - 1])
+                    && matches( dir + "/" );
+        }
+    }
+}
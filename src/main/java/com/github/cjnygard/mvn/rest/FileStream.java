@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Files found by a background scan, handed over through a bounded queue.
+ *
+ * The scanning threads block while the queue is full, so the scan only
+ * runs ahead of the consumer by <code>capacity</code> files and memory does
+ * not grow with the size of the filesets.
+ */
+public class FileStream implements Closeable
+{
+
+    /** A task of the scan, which may hand over files. */
+    interface Task
+    {
+        void run() throws IOException;
+    }
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private static final long POLL = 50L;
+
+    private final BlockingQueue<File> queue;
+
+    private final ExecutorService executor;
+
+    private final AtomicInteger tasks = new AtomicInteger();
+
+    private volatile boolean done;
+
+    private volatile boolean closed;
+
+    private volatile IOException failure;
+
+    private File peeked;
+
+    private int count;
+
+    /**
+     * @param capacity
+     *            the maximum number of files found but not yet taken
+     * @param threads
+     *            the number of scanning threads
+     */
+    FileStream( int capacity, int threads )
+    {
+        Validate.isTrue( capacity > 0, "capacity must be greater than 0" );
+        queue = new ArrayBlockingQueue<>( capacity );
+        executor = Executors.newFixedThreadPool( threads, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable r )
+            {
+                Thread t = new Thread( r, "rest-scanner-" + THREADS.incrementAndGet() );
+                t.setDaemon( true );
+                return t;
+            }
+        } );
+    }
+
+    /**
+     * Run a task of the scan. The stream ends once every task has
+     * completed.
+     */
+    void fork( final Task task )
+    {
+        tasks.incrementAndGet();
+        try
+        {
+            executor.execute( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        task.run();
+                    }
+                    catch ( IOException ex )
+                    {
+                        fail( ex );
+                    }
+                    catch ( RuntimeException ex )
+                    {
+                        fail( new IOException( ex ) );
+                    }
+                    finally
+                    {
+                        finish();
+                    }
+                }
+            } );
+        }
+        catch ( RejectedExecutionException ex )
+        {
+            // closed
+            finish();
+        }
+    }
+
+    /**
+     * Keep the stream open while tasks are still being submitted, until the
+     * matching {@link #finish()}.
+     */
+    void hold()
+    {
+        tasks.incrementAndGet();
+    }
+
+    /**
+     * Complete a task or a {@link #hold()}.
+     */
+    void finish()
+    {
+        if ( tasks.decrementAndGet() == 0 )
+        {
+            done = true;
+        }
+    }
+
+    private void fail( IOException ex )
+    {
+        if ( !closed && (null == failure) )
+        {
+            failure = ex;
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Hand over a file, waiting while the queue is full.
+     *
+     * @throws InterruptedIOException
+     *             if the stream was closed while waiting
+     */
+    void put( File file ) throws InterruptedIOException
+    {
+        try
+        {
+            queue.put( file );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "File scan stopped" );
+        }
+    }
+
+    /**
+     * Take the next file, waiting until one is found.
+     *
+     * @return the next file, or <code>null</code> once all files were taken
+     * @throws IOException
+     *             if the scan failed
+     */
+    public File next() throws IOException
+    {
+        File file = peek();
+        if ( null != file )
+        {
+            peeked = null;
+            count++;
+        }
+        return file;
+    }
+
+    /**
+     * @return <code>true</code> if the scan found no file at all, waiting
+     *         until it finds one or completes
+     * @throws IOException
+     *             if the scan failed
+     */
+    public boolean isEmpty() throws IOException
+    {
+        return (count == 0) && (null == peek());
+    }
+
+    private File peek() throws IOException
+    {
+        try
+        {
+            while ( null == peeked )
+            {
+                if ( null != failure )
+                {
+                    throw failure;
+                }
+                // read the flag first, files put before it was set are queued
+                boolean finished = done;
+                peeked = queue.poll( POLL, TimeUnit.MILLISECONDS );
+                if ( (null == peeked) && finished )
+                {
+                    return null;
+                }
+            }
+            return peeked;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while scanning files" );
+        }
+    }
+
+    /**
+     * @return the number of files taken so far
+     */
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return <code>true</code> if all files were taken
+     */
+    public boolean isComplete()
+    {
+        return done && (null == peeked) && queue.isEmpty();
+    }
+
+    /**
+     * Stop the scan.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        executor.shutdownNow();
+        queue.clear();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Records the request fingerprint of every successfully processed file.
+ *
+ * The manifest is a properties file mapping the input file path to the
+ * fingerprint of the configuration and the fingerprint of the request that
+ * produced its output. A file whose current fingerprint matches the recorded
+ * one, and whose output still exists, does not need to be sent again.
+ */
+public class FingerprintManifest
+{
+
+    private final File manifestFile;
+
+    private final Properties entries = new Properties();
+
+    private boolean modified;
+
+    /**
+     * @param manifestFile
+     *            the properties file backing this manifest
+     */
+    public FingerprintManifest( File manifestFile )
+    {
+        this.manifestFile = manifestFile;
+    }
+
+    /**
+     * Read the manifest from disk, if it exists.
+     *
+     * @throws IOException
+     *             if the manifest exists but cannot be read
+     */
+    public synchronized void load() throws IOException
+    {
+        entries.clear();
+        if ( manifestFile.isFile() )
+        {
+            try ( InputStream in = Files.newInputStream( manifestFile.toPath() ) )
+            {
+                entries.load( in );
+            }
+        }
+        modified = false;
+    }
+
+    /**
+     * @param input
+     *            the input file
+     * @param fingerprint
+     *            the fingerprint of the request that would be sent now
+     * @param output
+     *            the output file the request would produce
+     * @return <code>true</code> if the output exists and was produced by an
+     *         identical request
+     */
+    public synchronized boolean isUpToDate( File input, String fingerprint, File output )
+    {
+        return output.isFile() && fingerprint.equals( part( input, 1 ) );
+    }
+
+    /**
+     * @param input
+     *            the input file
+     * @param configuration
+     *            the fingerprint of the configuration the file would be sent
+     *            with now
+     * @return <code>true</code> if the file was last processed with the same
+     *         configuration
+     */
+    public synchronized boolean isConfiguredBy( File input, String configuration )
+    {
+        return configuration.equals( part( input, 0 ) );
+    }
+
+    /**
+     * Record a successfully processed file.
+     *
+     * @param input
+     *            the input file
+     * @param configuration
+     *            the fingerprint of the configuration the file was sent with
+     * @param fingerprint
+     *            the fingerprint of the request that was sent
+     */
+    public synchronized void record( File input, String configuration, String fingerprint )
+    {
+        entries.setProperty( key( input ), configuration + " " + fingerprint );
+        modified = true;
+    }
+
+    /**
+     * Forget a file, so it is sent again on the next build.
+     *
+     * @param input
+     *            the input file
+     */
+    public synchronized void remove( File input )
+    {
+        if ( null != entries.remove( key( input ) ) )
+        {
+            modified = true;
+        }
+    }
+
+    /**
+     * Write the manifest to disk if it changed. The file is replaced
+     * atomically so an interrupted build never leaves a partial manifest.
+     *
+     * @throws IOException
+     *             if the manifest cannot be written
+     */
+    public synchronized void save() throws IOException
+    {
+        if ( !modified )
+        {
+            return;
+        }
+        File dir = manifestFile.getAbsoluteFile().getParentFile();
+        if ( !dir.isDirectory() && !dir.mkdirs() )
+        {
+            throw new IOException( String.format( "Unable to create path [%s]", dir ) );
+        }
+        File tmp = File.createTempFile( manifestFile.getName(), ".tmp", dir );
+        try
+        {
+            try ( OutputStream out = Files.newOutputStream( tmp.toPath() ) )
+            {
+                entries.store( out, "rest-maven-plugin request fingerprints" );
+            }
+            Files.move( tmp.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE );
+            modified = false;
+        }
+        finally
+        {
+            Files.deleteIfExists( tmp.toPath() );
+        }
+    }
+
+    /**
+     * @return the configuration (0) or request (1) fingerprint recorded for
+     *         a file, or <code>null</code>
+     */
+    private String part( File input, int index )
+    {
+        String entry = entries.getProperty( key( input ) );
+        String[] parts = (null == entry) ? new String[0] : entry.split( " " );
+        return (parts.length == 2) ? parts[index] : null;
+    }
+
+    private String key( File input )
+    {
+        return input.getAbsolutePath();
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Locale;
+
+import javax.ws.rs.core.Link;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriBuilder;
+
+import org.apache.commons.io.input.TeeInputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Finds the next page of a paginated GET request.
+ *
+ * In <code>link</code> mode the next page is the <code>Link</code> header
+ * with <code>rel="next"</code>, known as soon as the response headers
+ * arrive. In <code>cursor</code> mode it is a field of the JSON response
+ * body, named by a dotted path such as <code>meta.next</code>; the body is
+ * parsed while it is copied to the output, so the field is found without
+ * holding the page in memory. A cursor that is a URL or an absolute path
+ * is followed as is, any other cursor is sent as a query parameter.
+ */
+public class Pagination
+{
+
+    /** A single request. */
+    public static final String OFF = "off";
+
+    /** Follow <code>Link: &lt;...&gt;; rel="next"</code> headers. */
+    public static final String LINK = "link";
+
+    /** Follow a cursor field of a JSON body. */
+    public static final String CURSOR = "cursor";
+
+    /**
+     * Notified as soon as the next page is known, before the rest of the
+     * current page is copied.
+     */
+    public interface Listener
+    {
+        /**
+         * @param next
+         *            the URI of the next page
+         */
+        void next( URI next );
+    }
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final String mode;
+
+    private final String[] cursorField;
+
+    private final String cursorParameter;
+
+    /**
+     * @param mode
+     *            <code>link</code> or <code>cursor</code>
+     * @param cursorField
+     *            the dotted path of the cursor field, for the
+     *            <code>cursor</code> mode
+     * @param cursorParameter
+     *            the query parameter that sends a cursor back
+     * @throws IllegalArgumentException
+     *             if the mode is not known, or the cursor mode is not
+     *             configured
+     */
+    public Pagination( String mode, String cursorField, String cursorParameter )
+    {
+        this.mode = (null == mode) ? OFF : mode.trim().toLowerCase( Locale.ENGLISH );
+        Validate.isTrue( LINK.equals( this.mode ) || CURSOR.equals( this.mode ), String.format(
+                "Unknown pagination [%s], expected one of [%s, %s, %s]", mode, OFF, LINK, CURSOR ) );
+        if ( isCursor() )
+        {
+            Validate.isTrue( (null != cursorField) && !cursorField.trim().isEmpty(),
+                    "pageCursorField must be set for cursor pagination" );
+            Validate.isTrue( (null != cursorParameter) && !cursorParameter.trim().isEmpty(),
+                    "pageCursorParameter must be set for cursor pagination" );
+        }
+        this.cursorField = isCursor() ? cursorField.trim().split( "\\." ) : null;
+        this.cursorParameter = cursorParameter;
+    }
+
+    /**
+     * @return <code>true</code> if the next page is read from the body
+     */
+    public boolean isCursor()
+    {
+        return CURSOR.equals( mode );
+    }
+
+    /**
+     * @param response
+     *            the response to a page
+     * @param current
+     *            the URI of the page
+     * @return the URI of the next page, or <code>null</code> if it is not
+     *         given by the headers
+     */
+    public URI nextLink( Response response, URI current )
+    {
+        if ( isCursor() )
+        {
+            return null;
+        }
+        Link link = response.getLink( "next" );
+        return (null == link) ? null : current.resolve( link.getUri() );
+    }
+
+    /**
+     * Copy a page to the output, looking for the cursor on the way.
+     *
+     * @param in
+     *            the body of the page, left open
+     * @param out
+     *            the output, left open
+     * @param current
+     *            the URI of the page
+     * @param bufferSize
+     *            the size of the copy buffer
+     * @param listener
+     *            told about the next page as soon as the cursor is read
+     * @return the URI of the next page given by the cursor, or
+     *         <code>null</code>
+     * @throws IOException
+     *             if the page cannot be copied, or is not JSON in cursor
+     *             mode
+     */
+    public URI copy( InputStream in, OutputStream out, URI current, int bufferSize, Listener listener )
+        throws IOException
+    {
+        InputStream source = in;
+        URI next = null;
+        if ( isCursor() )
+        {
+            // everything the parser reads is copied to the output
+            source = new TeeInputStream( in, out );
+            JsonParser parser = JSON.createParser( source );
+            parser.disable( JsonParser.Feature.AUTO_CLOSE_SOURCE );
+            next = toUri( current, findCursor( parser ) );
+            if ( null != next )
+            {
+                listener.next( next );
+            }
+        }
+        byte[] buffer = new byte[bufferSize];
+        for ( int n = source.read( buffer ); n >= 0; n = source.read( buffer ) )
+        {
+            if ( source == in )
+            {
+                out.write( buffer, 0, n );
+            }
+        }
+        return next;
+    }
+
+    /**
+     * @param filename
+     *            the output file name
+     * @param page
+     *            the page number, from 1
+     * @return the name of the output file of a page, numbered before the
+     *         extension
+     */
+    public static String pageFilename( String filename, int page )
+    {
+        int dot = filename.lastIndexOf( '.' );
+        return (dot > 0) ? filename.substring( 0, dot ) + "-" + page + filename.substring( dot )
+                : filename + "-" + page;
+    }
+
+    private String findCursor( JsonParser parser ) throws IOException
+    {
+        if ( JsonToken.START_OBJECT != parser.nextToken() )
+        {
+            return null;
+        }
+        int depth = 0;
+        for ( JsonToken token = parser.nextToken(); JsonToken.FIELD_NAME == token; token = parser.nextToken() )
+        {
+            String name = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ( !cursorField[depth].equals( name ) )
+            {
+                parser.skipChildren();
+            }
+            else if ( depth == cursorField.length - 1 )
+            {
+                return (value.isScalarValue() && (JsonToken.VALUE_NULL != value)) ? parser.getText() : null;
+            }
+            else if ( JsonToken.START_OBJECT == value )
+            {
+                depth++;
+            }
+            else
+            {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private URI toUri( URI current, String cursor )
+    {
+        if ( (null == cursor) || cursor.isEmpty() )
+        {
+            return null;
+        }
+        if ( cursor.startsWith( "/" ) || cursor.contains( "://" ) )
+        {
+            return current.resolve( cursor );
+        }
+        return UriBuilder.fromUri( current ).replaceQueryParam( cursorParameter, "{cursor}" ).build( cursor );
+    }
+}
@@ -1,4 +1,3 @@
-
 /*
  * Licensed to the Apache Software Foundation (ASF) under one
  * or more contributor license agreements.  See the NOTICE file
@@ -20,23 +19,46 @@
 package com.github.cjnygard.mvn.rest;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.InvocationCallback;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status.Family;
+import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.Variant;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.maven.execution.MavenSession;
@@ -56,6 +78,10 @@ import org.apache.maven.settings.Settings;
 import org.codehaus.plexus.components.io.filemappers.FileMapper;
 //import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.util.FileUtils;
+import org.glassfish.jersey.media.multipart.BodyPart;
+import org.glassfish.jersey.media.multipart.FormDataMultiPart;
+import org.glassfish.jersey.media.multipart.MultiPart;
+import org.glassfish.jersey.media.multipart.file.FileDataBodyPart;
 import org.sonatype.plexus.build.incremental.BuildContext;
 
 /**
@@ -73,6 +99,11 @@ import org.sonatype.plexus.build.incremental.BuildContext;
 public class Plugin extends AbstractMojo
 {
 
+    /**
+     * @deprecated the files are listed with {@link FileScanner}, which walks
+     *             the filesets in parallel and lists every file once
+     */
+    @Deprecated
     public final class FileSetTransformer
     {
 
@@ -132,17 +163,30 @@ public class Plugin extends AbstractMojo
 
         private final int errorCode;
         private final String message;
+        private final String retryAfter;
+        private final boolean transport;
 
         public ErrorInfo( int code, String msg )
+        {
+            this( code, msg, null );
+        }
+
+        public ErrorInfo( int code, String msg, String retryAfter )
+        {
+            this( code, msg, retryAfter, false );
+        }
+
+        private ErrorInfo( int code, String msg, String retryAfter, boolean transport )
         {
             errorCode = code;
             message = msg;
+            this.retryAfter = retryAfter;
+            this.transport = transport;
         }
 
         public ErrorInfo( String msg )
         {
-            errorCode = -1;
-            message = msg;
+            this( -1, msg, null );
         }
 
         @Override
@@ -218,7 +262,8 @@ public class Plugin extends AbstractMojo
     /**
      * Base directory for target.
      *
-     * Currently unused, but exists for possible future use.
+     * Used to store the state kept between builds, such as the request
+     * fingerprints used by <code>incremental</code> builds.
      *
      * Default <code>${project.build.directory}</code>
      *
@@ -231,12 +276,45 @@ public class Plugin extends AbstractMojo
      *
      * This URL path is the base path, and can be used with multiple instances
      * (executions) in combination with the <code>resource</code> element to
-     * specify different URL resources with a common base URL.
+     * specify different URL resources with a common base URL. Either
+     * <code>endpoint</code> or <code>endpoints</code> must be set.
      *
      */
     @Parameter( property = "endpoint" )
     private URI endpoint;
 
+    /**
+     * Further endpoints serving the same REST resource, such as the replicas
+     * of a service.
+     *
+     * Each request is sent to the endpoint with the fewest outstanding
+     * requests. An endpoint that fails <code>endpointFailureThreshold</code>
+     * requests in a row (transport errors, 429 and 5xx responses) gets no
+     * more requests until a <code>HEAD</code> request, sent every
+     * <code>endpointProbeInterval</code> milliseconds, is answered again.
+     * Retries may go to another endpoint. <code>endpoint</code>, if set, is
+     * used as one of the endpoints.
+     */
+    @Parameter
+    private List<URI> endpoints;
+
+    /**
+     * The number of consecutive failed requests after which an endpoint of
+     * <code>endpoints</code> is ejected.
+     *
+     * Defaults to <code>3</code>
+     */
+    @Parameter( defaultValue = "3", property = "endpointFailureThreshold" )
+    private int endpointFailureThreshold = 3;
+
+    /**
+     * Milliseconds between probes of ejected endpoints.
+     *
+     * Defaults to <code>5000</code>
+     */
+    @Parameter( defaultValue = "5000", property = "endpointProbeInterval" )
+    private long endpointProbeInterval = 5000L;
+
     /**
      * A resource path added to the endpoint URL to access the REST resource.
      *
@@ -274,7 +352,8 @@ public class Plugin extends AbstractMojo
      *
      * This list of <code>fileset</code> elements will be used to gather all the
      * files to be submitted in the REST request. One REST request will be made
-     * per file.
+     * per file, unless <code>batchSize</code> or <code>batchBytes</code> is
+     * set.
      */
     @Parameter( property = "filesets" )
     private List<FileSet> filesets = new ArrayList<>();
@@ -312,6 +391,93 @@ public class Plugin extends AbstractMojo
     @Parameter( defaultValue = "rest.file", property = "outputFilename" )
     private File outputFilename;
 
+    /**
+     * Revalidate the result of a GET request without a fileset instead of
+     * downloading it again.
+     *
+     * The <code>ETag</code> and <code>Last-Modified</code> headers of the
+     * response are stored under
+     * <code>${project.build.directory}/rest-validators</code>, and sent back
+     * as <code>If-None-Match</code> and <code>If-Modified-Since</code> on the
+     * next build. If the service answers <code>304 Not Modified</code>, the
+     * existing file is kept.
+     *
+     * Defaults to <code>true</code>
+     */
+    @Parameter( defaultValue = "true", property = "conditionalGet" )
+    private boolean conditionalGet = true;
+
+    /**
+     * The number of byte ranges of a GET download without a fileset fetched
+     * in parallel.
+     *
+     * The size and range support of the resource are probed with a
+     * <code>HEAD</code> request. A resource of at least two
+     * <code>downloadRangeSize</code> ranges is split into ranges, which are
+     * written in place into a preallocated <code>.part</code> file. The
+     * completed ranges are recorded next to it, so a failed download resumes
+     * with the missing ranges on the next build. Resources that do not
+     * support ranges are downloaded with a single request.
+     *
+     * Defaults to <code>0</code>, a single request
+     */
+    @Parameter( defaultValue = "0", property = "downloadRanges" )
+    private int downloadRanges;
+
+    /**
+     * The size in bytes of each range of a ranged download.
+     *
+     * Defaults to <code>8388608</code> (8 MiB)
+     */
+    @Parameter( defaultValue = "8388608", property = "downloadRangeSize" )
+    private long downloadRangeSize = 8L * 1024 * 1024;
+
+    /**
+     * Follow the pages of the result of a GET request without a fileset.
+     *
+     * <code>link</code> follows the <code>Link</code> headers with
+     * <code>rel="next"</code>; <code>cursor</code> follows the
+     * <code>pageCursorField</code> of a JSON body. The next page is
+     * requested as soon as it is known, while the current page is still being
+     * written. The pages are concatenated into <code>outputFilename</code>,
+     * or written to numbered files if <code>pageFiles</code> is set.
+     * <code>downloadRanges</code> is not used for paginated requests.
+     *
+     * Defaults to <code>off</code>
+     */
+    @Parameter( defaultValue = Pagination.OFF, property = "pagination" )
+    private String pagination = Pagination.OFF;
+
+    /**
+     * The dotted path of the field of a JSON page that holds the cursor of
+     * the next page, such as <code>meta.next</code>. A cursor that is a URL
+     * or an absolute path is requested as is; any other cursor is sent in
+     * the <code>pageCursorParameter</code> query parameter. A missing, null
+     * or empty cursor ends the pages.
+     *
+     * Defaults to <code>next</code>
+     */
+    @Parameter( defaultValue = "next", property = "pageCursorField" )
+    private String pageCursorField = "next";
+
+    /**
+     * The query parameter that sends a cursor back to the service.
+     *
+     * Defaults to <code>cursor</code>
+     */
+    @Parameter( defaultValue = "cursor", property = "pageCursorParameter" )
+    private String pageCursorParameter = "cursor";
+
+    /**
+     * Write every page to its own file, numbered before the extension of
+     * <code>outputFilename</code> (<code>rest-1.file</code>,
+     * <code>rest-2.file</code>, ...), instead of concatenating the pages.
+     *
+     * Defaults to <code>false</code>
+     */
+    @Parameter( defaultValue = "false", property = "pageFiles" )
+    private boolean pageFiles;
+
     /**
      * A <code>map</code> of query parameters to add to the REST request URL.
      *
@@ -383,285 +549,3362 @@ public class Plugin extends AbstractMojo
     private MediaType responseType = MediaType.APPLICATION_OCTET_STREAM_TYPE;
 
     /**
-     * The Plexus BuildContext is used to identify files or directories modified
-     * since last build, implying functionality used to define if java
-     * generation must be performed again.
+     * The maximum number of REST requests sent in parallel.
+     *
+     * Each file in the <code>filesets</code> is still sent as its own
+     * request, but up to <code>concurrency</code> requests will be in flight
+     * at the same time. Errors from all requests are collected and reported
+     * together once every file has been processed.
+     *
+     * Defaults to <code>1</code>
      */
-    @Component( role = org.sonatype.plexus.build.incremental.BuildContext.class )
-    private BuildContext buildContext;
+    @Parameter( defaultValue = "1", property = "concurrency" )
+    private int concurrency = 1;
 
     /**
-     * Note that the execution parameter will be injected ONLY if this plugin is
-     * executed as part of a maven standard lifecycle - as opposed to directly
-     * invoked with a direct invocation. When firing this mojo directly (i.e.
-     * {@code mvn rest:something} ), the {@code execution} object will not be
-     * injected.
+     * Send the requests asynchronously.
+     *
+     * In <code>async</code> mode requests are sent without waiting for the
+     * previous responses, up to <code>maxInFlight</code> outstanding requests.
+     * Completed responses are written by <code>concurrency</code> worker
+     * threads, so hundreds of requests can be outstanding with only a few
+     * threads. Use the <code>grizzly</code> connector for fully non-blocking
+     * I/O; the other connectors block one of Jersey's threads per request.
+     *
+     * Defaults to <code>false</code>
      */
-    @Parameter( defaultValue = "${mojoExecution}", readonly = true )
-    private MojoExecution execution;
+    @Parameter( defaultValue = "false", property = "async" )
+    private boolean async;
 
-    private <T> T getInjectedObject( final T objectOrNull, final String objectName )
-    {
-        if ( objectOrNull == null )
-        {
-            getLog().error(
-                    String.format( "Found null [%s]: Maven @Component injection was not done properly.", objectName ) );
-        }
+    /**
+     * The maximum number of outstanding requests in <code>async</code> mode.
+     *
+     * Defaults to <code>100</code>
+     */
+    @Parameter( defaultValue = "100", property = "maxInFlight" )
+    private int maxInFlight = 100;
 
-        return objectOrNull;
-    }
+    /**
+     * The number of bytes transferred per step when writing a response to
+     * its output file.
+     *
+     * Defaults to <code>65536</code>
+     */
+    @Parameter( defaultValue = "65536", property = "bufferSize" )
+    private int bufferSize = 64 * 1024;
 
     /**
-     * The Plexus BuildContext is used to identify files or directories modified
-     * since last build, implying functionality used to define if java
-     * generation must be performed again.
+     * The HTTP transport used to send the REST requests.
      *
-     * @return the active Plexus BuildContext.
+     * One of <code>default</code> (the JDK HttpURLConnection),
+     * <code>apache</code>, <code>grizzly</code> or <code>jetty</code>. The
+     * <code>apache</code>, <code>grizzly</code> and <code>jetty</code>
+     * connectors keep a pool of persistent connections, so successive
+     * requests to the same endpoint skip the TCP/TLS handshake.
+     *
+     * Defaults to <code>default</code>
      */
-    protected final BuildContext getBuildContext()
-    {
-        return getInjectedObject( buildContext, "buildContext" );
-    }
+    @Parameter( defaultValue = ClientFactory.DEFAULT, property = "connector" )
+    private String connector = ClientFactory.DEFAULT;
 
     /**
-     * @return The active MavenProject.
+     * The maximum number of pooled connections kept by the connector.
+     *
+     * Ignored by the <code>default</code> and <code>jetty</code> connectors.
+     *
+     * Defaults to <code>64</code>
      */
-    protected final MavenProject getProject()
-    {
-        return getInjectedObject( project, "project" );
-    }
+    @Parameter( defaultValue = "64", property = "maxConnections" )
+    private int maxConnections = 64;
 
     /**
-     * @return The active MojoExecution.
+     * The maximum number of pooled connections to a single host.
+     *
+     * This should be at least as large as <code>concurrency</code>. Ignored by
+     * the <code>default</code> connector.
+     *
+     * Defaults to <code>32</code>
      */
-    public MojoExecution getExecution()
-    {
-        return getInjectedObject( execution, "execution" );
-    }
+    @Parameter( defaultValue = "32", property = "maxConnectionsPerRoute" )
+    private int maxConnectionsPerRoute = 32;
 
-    protected List<File> getFilesToProcess() throws MojoExecutionException
-    {
-        List<File> files = new ArrayList<>();
-        if ( null != getFileset() )
-        {
-            if ( null == getFilesets() )
-            {
-                filesets = new ArrayList<>();
-            }
-            getFilesets().add( getFileset() );
+    /**
+     * Time in milliseconds after which an idle pooled connection is closed.
+     *
+     * Ignored by the <code>default</code> connector.
+     *
+     * Defaults to <code>30000</code>
+     */
+    @Parameter( defaultValue = "30000", property = "connectionIdleTimeout" )
+    private long connectionIdleTimeout = 30000L;
 
-        }
-        if ( null != getFilesets() )
-        {
-            for ( FileSet fs : getFilesets() )
-            {
-                if ( (null != fs) && (null != fs.getDirectory()) )
-                {
-                    FileSetTransformer fileMgr = new FileSetTransformer( fs );
-                    files.addAll( fileMgr.toFileList() );
-                }
-            }
-        }
-        return files;
-    }
+    /**
+     * Share the client and its connection pool with the other executions of
+     * the build.
+     *
+     * Executions with the same connector and pool settings use one client,
+     * kept open between modules until it has been idle for
+     * <code>connectionIdleTimeout</code>. An execution with a
+     * <code>deadline</code> always uses its own client, which is closed when
+     * the deadline passes.
+     *
+     * Defaults to <code>true</code>
+     */
+    @Parameter( defaultValue = "true", property = "shareClient" )
+    private boolean shareClient = true;
 
-    protected String readStream( InputStream in ) throws MojoExecutionException
-    {
-        byte buf[] = new byte[1024];
-        int sz = 0;
-        StringBuilder result = new StringBuilder();
-        try
-        {
-            while ( sz != -1 )
-            {
-                sz = in.read( buf );
-                result.append( buf );
-            }
-            return result.toString();
-        }
-        catch ( IOException e )
-        {
-            throw new MojoExecutionException( "Unable to read result stream", e );
-        }
+    /**
+     * How request bodies are sent: <code>buffered</code> or
+     * <code>chunked</code>.
+     *
+     * In <code>buffered</code> mode the whole file is buffered in memory to
+     * compute the Content-Length. In <code>chunked</code> mode files are
+     * streamed from disk using chunked transfer encoding, so uploads take
+     * constant memory regardless of the file size. If not set, the connector
+     * default is used.
+     */
+    @Parameter( property = "requestBufferingMode" )
+    private String requestBufferingMode;
 
-    }
+    /**
+     * The chunk size in bytes used by the <code>chunked</code>
+     * <code>requestBufferingMode</code>.
+     *
+     * Defaults to <code>65536</code>
+     */
+    @Parameter( defaultValue = "65536", property = "chunkSize" )
+    private int chunkSize = 64 * 1024;
 
-    protected <T> String wrap( String prefix, String suffix, List<T> tokens )
-    {
-        StringBuilder str = new StringBuilder();
-        for ( T s : tokens )
-        {
-            str.append( prefix );
-            str.append( s.toString() );
-            str.append( suffix );
-        }
-        return str.toString();
-    }
+    /**
+     * Gzip the uploaded files on the fly.
+     *
+     * The request body is compressed while it is streamed and sent with a
+     * <code>Content-Encoding: gzip</code> header. The REST service must
+     * accept compressed requests.
+     *
+     * Defaults to <code>false</code>
+     */
+    @Parameter( defaultValue = "false", property = "compressRequest" )
+    private boolean compressRequest;
 
-    protected <T> String join( String delim, List<T> tokens )
-    {
-        StringBuilder str = new StringBuilder();
-        for ( T s : tokens )
-        {
-            str.append( s.toString() );
-            str.append( delim );
-        }
-        return str.toString().substring( 0, -delim.length() );
-    }
+    /**
+     * The value of the <code>Accept-Encoding</code> request header, for
+     * example <code>gzip, deflate</code>.
+     *
+     * Compressed responses are decompressed while they are written to the
+     * output file. If not set, no <code>Accept-Encoding</code> header is sent.
+     */
+    @Parameter( property = "acceptEncoding" )
+    private String acceptEncoding;
 
-    protected void pipeToFile( InputStream stream, File outputFile ) throws IOException
-    {
-        getLog().info( String.format( "Writing file [%s]", outputFile.getCanonicalPath() ) );
-        OutputStream outStream = new FileOutputStream( outputFile );
+    /**
+     * The maximum number of files sent in one multipart batch request.
+     *
+     * When <code>batchSize</code> is greater than 1, or <code>batchBytes</code>
+     * is set, several files are packed into one
+     * <code>multipart/form-data</code> request, one part per file named
+     * <code>batchPartName</code>. A <code>multipart</code> response is split
+     * back into one output file per part. Parts are matched to input files
+     * by their Content-Disposition filename, or else by position, and stored
+     * under the mapped name of the input file. Batches are sent by the
+     * <code>concurrency</code> worker threads; <code>async</code> is not
+     * used for batches.
+     *
+     * Defaults to <code>0</code>, one request per file
+     */
+    @Parameter( defaultValue = "0", property = "batchSize" )
+    private int batchSize;
 
-        byte[] buffer = new byte[8 * 1024];
-        int bytesRead;
-        while ( (bytesRead = stream.read( buffer )) != -1 )
-        {
-            outStream.write( buffer, 0, bytesRead );
-        }
-        IOUtils.closeQuietly( stream );
-        IOUtils.closeQuietly( outStream );
-    }
+    /**
+     * The maximum total size in bytes of the files in one multipart batch
+     * request. A file larger than this is sent in a batch of its own.
+     *
+     * Defaults to <code>0</code>, no size limit
+     */
+    @Parameter( defaultValue = "0", property = "batchBytes" )
+    private long batchBytes;
 
-    protected String remapFilename( String filename )
-    {
-        String remappedName = filename;
-        if ( null != getFileMapper() )
-        {
-            return getFileMapper().getMappedFileName( filename );
-        }
-        else
-        { // iteratively modify the filename, apply all mappers in order
-            if ( null != getFileMappers() )
-            {
-                for ( FileMapper fm : getFileMappers() )
-                {
-                    if ( null != fm )
-                    {
-                        remappedName = fm.getMappedFileName( remappedName );
-                    }
-                }
-            }
-        }
+    /**
+     * The form field name of each file part in a multipart batch request.
+     *
+     * Defaults to <code>file</code>
+     */
+    @Parameter( defaultValue = "file", property = "batchPartName" )
+    private String batchPartName = "file";
 
-        return remappedName;
-    }
+    /**
+     * The maximum number of times a failed request is sent again.
+     *
+     * Only failures listed in <code>retryStatuses</code>, and transport
+     * errors if <code>retryOnIOException</code> is set, are retried. The
+     * delay before each retry doubles from <code>retryInitialDelay</code> up
+     * to <code>retryMaxDelay</code>, with random jitter; a
+     * <code>Retry-After</code> header sent by the server is honored up to
+     * <code>retryMaxDelay</code>. Only enable retries for methods the
+     * service can safely receive twice.
+     *
+     * Defaults to <code>0</code>, no retries
+     */
+    @Parameter( defaultValue = "0", property = "maxRetries" )
+    private int maxRetries;
 
-    protected boolean validateOutputDir() throws MojoExecutionException
-    {
-        try
-        {
-            if ( null == getOutputDir() )
-            {
-                outputDir = new File( getProject().getBasedir(), "rest" );
-            }
+    /**
+     * Comma separated HTTP status codes, or status families such as
+     * <code>5xx</code>, that are retried.
+     *
+     * Defaults to <code>429,502,503,504</code>
+     */
+    @Parameter( defaultValue = "429,502,503,504", property = "retryStatuses" )
+    private String retryStatuses = "429,502,503,504";
 
-            if ( !outputDir.isDirectory() )
-            {
-                if ( outputDir.isFile() )
-                {
-                    getLog().error( String.format( "Error: [%s] is not a directory", outputDir.getCanonicalPath() ) );
-                }
-                else
-                {
-                    if ( !outputDir.mkdirs() )
-                    {
-                        getLog().error(
-                                String.format( "Error: Unable to create path[%s]", outputDir.getCanonicalPath() ) );
+    /**
+     * Retry requests that fail without a response, such as a refused or
+     * reset connection.
+     *
+     * Defaults to <code>true</code>
+     */
+    @Parameter( defaultValue = "true", property = "retryOnIOException" )
+    private boolean retryOnIOException = true;
 
-                    }
-                }
-            }
+    /**
+     * The delay in milliseconds before the first retry.
+     *
+     * Defaults to <code>500</code>
+     */
+    @Parameter( defaultValue = "500", property = "retryInitialDelay" )
+    private long retryInitialDelay = 500L;
+
+    /**
+     * The maximum delay in milliseconds before a retry.
+     *
+     * Defaults to <code>30000</code>
+     */
+    @Parameter( defaultValue = "30000", property = "retryMaxDelay" )
+    private long retryMaxDelay = 30000L;
+
+    /**
+     * The maximum number of retries of all requests of this execution, so
+     * that a failing endpoint cannot multiply the build time.
+     *
+     * Defaults to <code>100</code>
+     */
+    @Parameter( defaultValue = "100", property = "retryBudget" )
+    private int retryBudget = 100;
+
+    /**
+     * The number of consecutive failed requests (transport errors, 429 and
+     * 5xx responses) after which no more requests are sent.
+     *
+     * Once open, requests fail immediately until
+     * <code>circuitBreakerCooldown</code> milliseconds have passed; then one
+     * trial request is sent, and the next requests are sent again only if it
+     * succeeds.
+     *
+     * Defaults to <code>0</code>, never stop sending
+     */
+    @Parameter( defaultValue = "0", property = "circuitBreakerThreshold" )
+    private int circuitBreakerThreshold;
+
+    /**
+     * Milliseconds to wait before a trial request is sent after the circuit
+     * breaker opened.
+     *
+     * Defaults to <code>30000</code>
+     */
+    @Parameter( defaultValue = "30000", property = "circuitBreakerCooldown" )
+    private long circuitBreakerCooldown = 30000L;
+
+    /**
+     * The maximum number of requests per second sent to the endpoint.
+     *
+     * Requests, including retries, are spaced out evenly rather than sent in
+     * bursts. The limit is shared by all executions in the same Maven session
+     * that send to the same endpoints and <code>resource</code>; the limits of
+     * the first of them apply, with a warning if the others ask for
+     * different ones.
+     *
+     * Defaults to <code>0</code>, no limit
+     */
+    @Parameter( defaultValue = "0", property = "maxRequestsPerSecond" )
+    private double maxRequestsPerSecond;
+
+    /**
+     * The maximum number of file bytes per second uploaded to the endpoint,
+     * or downloaded from it as byte ranges, shared like
+     * <code>maxRequestsPerSecond</code>.
+     *
+     * Defaults to <code>0</code>, no limit
+     */
+    @Parameter( defaultValue = "0", property = "maxBytesPerSecond" )
+    private long maxBytesPerSecond;
+
+    /**
+     * Adjust the number of requests in flight to the observed capacity of
+     * the endpoint.
+     *
+     * The limit starts low and grows while responses come back with a
+     * steady latency. It is cut when the endpoint answers with 429 or 5xx,
+     * fails to answer, or when the round-trip time rises to more than twice
+     * the lowest of the recent requests. <code>concurrency</code> (or
+     * <code>maxInFlight</code> in <code>async</code> mode) is the upper bound
+     * of the limit. Changes of the limit are logged.
+     *
+     * Defaults to <code>false</code>
+     */
+    @Parameter( defaultValue = "false", property = "adaptiveConcurrency" )
+    private boolean adaptiveConcurrency;
+
+    /**
+     * Milliseconds to wait for a connection to the endpoint.
+     *
+     * Defaults to <code>0</code>, wait forever
+     */
+    @Parameter( defaultValue = "0", property = "connectTimeout" )
+    private int connectTimeout;
+
+    /**
+     * Milliseconds to wait for data from the endpoint, both for the start of
+     * the response and between packets.
+     *
+     * Defaults to <code>0</code>, wait forever
+     */
+    @Parameter( defaultValue = "0", property = "readTimeout" )
+    private int readTimeout;
+
+    /**
+     * Milliseconds the requests of this execution may take in total.
+     *
+     * When the deadline passes, requests in flight are cancelled, their
+     * connections closed and no further requests are sent. The build then
+     * fails with the number of files that were completed, and lists the
+     * files that failed or were not completed.
+     *
+     * Defaults to <code>0</code>, no deadline
+     */
+    @Parameter( defaultValue = "0", property = "deadline" )
+    private long deadline;
+
+    /**
+     * Record the timing, size and status of every request.
+     *
+     * A JSON report with latency percentiles and throughput is written to
+     * <code>${project.build.directory}/rest-metrics/&lt;executionId&gt;.json</code>
+     * and a short summary is logged at the end of the execution.
+     *
+     * Defaults to <code>true</code>
+     */
+    @Parameter( defaultValue = "true", property = "metrics" )
+    private boolean metrics = true;
+
+    /**
+     * Record or replay the responses of the service.
+     *
+     * <code>record</code> sends the requests through a local stub that
+     * stores the responses in <code>replayArchive</code>; <code>replay</code>
+     * serves them from the archive without calling the service, so builds
+     * can run offline. Requests are matched by a hash of the method, path,
+     * query, content headers and body. Only the first endpoint is used.
+     *
+     * Defaults to <code>off</code>
+     */
+    @Parameter( defaultValue = ReplayServer.OFF, property = "replayMode" )
+    private String replayMode = ReplayServer.OFF;
+
+    /**
+     * Directory of the recorded responses.
+     *
+     * Defaults to <code>${project.basedir}/src/test/rest-archive</code>
+     */
+    @Parameter( defaultValue = "${project.basedir}/src/test/rest-archive", property = "replayArchive" )
+    private File replayArchive;
+
+    /**
+     * Skip files whose output is already up to date.
+     *
+     * A fingerprint of every request (file contents, endpoint, resource,
+     * method, query parameters, headers and media types) is recorded under
+     * <code>${project.build.directory}/rest-fingerprints</code>. A file is not
+     * sent again if its fingerprint is unchanged and its output file still
+     * exists. In IDE incremental builds, files without a delta reported by
+     * the BuildContext are skipped as well, unless the configuration changed.
+     *
+     * Defaults to <code>false</code>, one REST request per file
+     */
+    @Parameter( defaultValue = "false", property = "incremental" )
+    private boolean incremental;
+
+    /**
+     * Reuse responses from a local cache shared between builds.
+     *
+     * Responses to file uploads are stored in <code>cacheDir</code>, keyed by
+     * a hash of the file contents, full target URI, method, headers and media
+     * types. When the same request is made again, from this or any other
+     * build on the machine, the cached response is copied into the
+     * <code>outputDir</code> instead of calling the service. Requests without
+     * a file (plain <code>GET</code>) are never cached.
+     *
+     * Defaults to <code>false</code>
+     */
+    @Parameter( defaultValue = "false", property = "cache" )
+    private boolean cache;
+
+    /**
+     * Directory of the response cache.
+     *
+     * Defaults to <code>${user.home}/.m2/rest-cache</code>
+     */
+    @Parameter( defaultValue = "${user.home}/.m2/rest-cache", property = "cacheDir" )
+    private File cacheDir;
+
+    /**
+     * Size limit of the response cache, in megabytes. The least recently used
+     * responses are evicted once the limit is reached.
+     *
+     * Defaults to <code>1024</code>
+     */
+    @Parameter( defaultValue = "1024", property = "cacheMaxSize" )
+    private long cacheMaxSize = 1024;
+
+    /**
+     * Send identical files only once.
+     *
+     * Files with the same contents make the same request, so only the first
+     * of them is sent. The output files of the others are hard linked to, or
+     * copied from, its response. This includes files sent at the same time by
+     * other executions of the build, such as a file shared by modules built
+     * in parallel. Only enable it for services whose response depends on
+     * nothing but the file contents, and that have no side effects: a
+     * <code>POST</code> or <code>PUT</code> that stores every upload is called
+     * once instead of once per file.
+     *
+     * Defaults to <code>false</code>
+     */
+    @Parameter( defaultValue = "false", property = "deduplicate" )
+    private boolean deduplicate;
+
+    /**
+     * Send only the files that an earlier, failed or interrupted build did
+     * not complete.
+     *
+     * When set, every completed or failed file is appended to a journal under
+     * <code>${project.build.directory}/rest-journal</code> as soon as it is
+     * done, together with the request fingerprint and a checksum of the
+     * output. Files that the journal lists as completed with the same
+     * request, and whose output is unchanged, are skipped; missing and failed
+     * files are sent again. The journal is deleted once a build completes
+     * every file.
+     *
+     * Defaults to <code>false</code>
+     */
+    @Parameter( defaultValue = "false", property = "resume" )
+    private boolean resume;
+
+    /**
+     * The Plexus BuildContext is used to identify files or directories modified
+     * since last build, implying functionality used to define if java
+     * generation must be performed again.
+     */
+    @Component( role = org.sonatype.plexus.build.incremental.BuildContext.class )
+    private BuildContext buildContext;
+
+    /**
+     * Note that the execution parameter will be injected ONLY if this plugin is
+     * executed as part of a maven standard lifecycle - as opposed to directly
+     * invoked with a direct invocation. When firing this mojo directly (i.e.
+     * {@code mvn rest:something} ), the {@code execution} object will not be
+     * injected.
+     */
+    @Parameter( defaultValue = "${mojoExecution}", readonly = true )
+    private MojoExecution execution;
+
+    private static final String GZIP = "gzip";
+
+    private FingerprintManifest manifest;
+
+    private CompletionJournal journal;
+
+    private ResponseCache responseCache;
+
+    private DuplicateRequests<ErrorInfo> duplicates;
+
+    private String configFingerprint;
+
+    private RetryPolicy retryPolicy;
+
+    private CircuitBreaker circuitBreaker;
+
+    private RequestLimits limits;
+
+    private Map<URI, WebTarget> targets;
+
+    private EndpointBalancer balancer;
+
+    /** Time to let requests fail after their connections were closed. */
+    private static final long DEADLINE_GRACE = 1000L;
+
+    private Deadline executionDeadline;
+
+    private Set<Future<Response>> pending;
+
+    /** Files taken from the scan that are not completed yet. */
+    private Set<File> unfinished;
+
+    private AtomicInteger completedCount;
+
+    /** The errors of the files of this execution. */
+    private List<ErrorInfo> failedFiles;
+
+    private final Object waitingLock = new Object();
+
+    /** Duplicates waiting for the response to an identical request. */
+    private int waitingDuplicates;
+
+    /** The number of files the scan may run ahead of the requests. */
+    private static final int FILE_QUEUE_CAPACITY = 1024;
+
+    private RequestMetrics requestMetrics;
+
+    /** The client of this execution, to follow the links of paginated results. */
+    private Client client;
+
+    /**
+     * One attempt at sending a request.
+     */
+    private interface Attempt
+    {
+        /**
+         * @return the error, or <code>null</code> on success
+         */
+        ErrorInfo send();
+    }
+
+    private <T> T getInjectedObject( final T objectOrNull, final String objectName )
+    {
+        if ( objectOrNull == null )
+        {
+            getLog().error(
+                    String.format( "Found null [%s]: Maven @Component injection was not done properly.", objectName ) );
+        }
+
+        return objectOrNull;
+    }
+
+    /**
+     * The Plexus BuildContext is used to identify files or directories modified
+     * since last build, implying functionality used to define if java
+     * generation must be performed again.
+     *
+     * @return the active Plexus BuildContext.
+     */
+    protected final BuildContext getBuildContext()
+    {
+        return getInjectedObject( buildContext, "buildContext" );
+    }
+
+    /**
+     * @return The active MavenProject.
+     */
+    protected final MavenProject getProject()
+    {
+        return getInjectedObject( project, "project" );
+    }
+
+    /**
+     * @return The active MojoExecution.
+     */
+    public MojoExecution getExecution()
+    {
+        return getInjectedObject( execution, "execution" );
+    }
+
+    /**
+     * @return the id of the active execution, or <code>default</code> when the
+     *         mojo is invoked directly
+     */
+    protected String getExecutionId()
+    {
+        return (null == execution) ? "default" : execution.getExecutionId();
+    }
+
+    protected List<File> getFilesToProcess() throws MojoExecutionException
+    {
+        // overlapping filesets list each file once
+        try
+        {
+            return createScanner().scan( getAllFilesets() );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( String.format( "Unable to get paths to filesets: [%s]",
+                    e.getMessage() ), e );
+        }
+    }
+
+    /**
+     * Start listing the files to process in the background. The scan runs
+     * ahead of the requests by a bounded number of files.
+     *
+     * @return the files, to be closed by the caller
+     * @throws MojoExecutionException
+     *             if a fileset directory does not exist
+     */
+    protected FileStream streamFilesToProcess() throws MojoExecutionException
+    {
+        try
+        {
+            return createScanner().stream( getAllFilesets(), FILE_QUEUE_CAPACITY );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( String.format( "Unable to get paths to filesets: [%s]",
+                    e.getMessage() ), e );
+        }
+    }
+
+    /**
+     * Directories of the filesets that cannot be read are logged and
+     * skipped.
+     */
+    private FileScanner createScanner()
+    {
+        return new FileScanner( new FileScanner.Listener()
+        {
+            @Override
+            public void skipped( File path, IOException ex )
+            {
+                getLog().warn( String.format( "Skipping unreadable [%s]: [%s]", path, ex.toString() ) );
+            }
+        } );
+    }
+
+    private List<FileSet> getAllFilesets()
+    {
+        List<FileSet> all = new ArrayList<>();
+        if ( null != getFilesets() )
+        {
+            all.addAll( getFilesets() );
+        }
+        if ( null != getFileset() )
+        {
+            all.add( getFileset() );
+        }
+        return all;
+    }
+
+    /**
+     * Take the next file of a scan.
+     *
+     * @return the file, or <code>null</code> once all files were taken
+     */
+    private File nextFile( FileStream files ) throws MojoExecutionException
+    {
+        try
+        {
+            File f = files.next();
+            if ( null != f )
+            {
+                unfinished.add( f );
+            }
+            return f;
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( String.format( "Unable to get paths to filesets: [%s]",
+                    e.getMessage() ), e );
+        }
+    }
+
+    protected String readStream( InputStream in ) throws MojoExecutionException
+    {
+        byte buf[] = new byte[1024];
+        int sz = 0;
+        StringBuilder result = new StringBuilder();
+        try
+        {
+            while ( sz != -1 )
+            {
+                sz = in.read( buf );
+                result.append( buf );
+            }
+            return result.toString();
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Unable to read result stream", e );
+        }
+
+    }
+
+    protected <T> String wrap( String prefix, String suffix, List<T> tokens )
+    {
+        StringBuilder str = new StringBuilder();
+        for ( T s : tokens )
+        {
+            str.append( prefix );
+            str.append( s.toString() );
+            str.append( suffix );
+        }
+        return str.toString();
+    }
+
+    protected <T> String join( String delim, List<T> tokens )
+    {
+        StringBuilder str = new StringBuilder();
+        for ( T s : tokens )
+        {
+            str.append( s.toString() );
+            str.append( delim );
+        }
+        return str.toString().substring( 0, -delim.length() );
+    }
+
+    /**
+     * Write a response stream to a file.
+     *
+     * The stream is transferred into a temporary file next to the output
+     * file, which is then moved into place. A failed transfer never leaves a
+     * truncated output file behind.
+     *
+     * @param stream
+     *            the response stream, closed on return
+     * @param outputFile
+     *            the file to create or replace
+     * @throws IOException
+     *             if the stream cannot be read or the file cannot be written
+     */
+    protected void pipeToFile( InputStream stream, File outputFile ) throws IOException
+    {
+        Validate.isTrue( getBufferSize() > 0, "bufferSize must be greater than 0" );
+        getLog().info( String.format( "Writing file [%s]", outputFile.getCanonicalPath() ) );
+        Path target = outputFile.getAbsoluteFile().toPath();
+        Files.createDirectories( target.getParent() );
+        Path tmp = Files.createTempFile( target.getParent(), "." + outputFile.getName(), ".part" );
+        try
+        {
+            try ( ReadableByteChannel in = Channels.newChannel( stream );
+                    FileChannel out = FileChannel.open( tmp, StandardOpenOption.WRITE ) )
+            {
+                long position = 0;
+                long count;
+                while ( (count = out.transferFrom( in, position, getBufferSize() )) > 0 )
+                {
+                    position += count;
+                }
+            }
+            moveIntoPlace( tmp, target );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( stream );
+            Files.deleteIfExists( tmp );
+        }
+    }
+
+    /**
+     * Replace a file with a completely written temporary file, atomically
+     * where the file system supports it.
+     */
+    protected void moveIntoPlace( Path tmp, Path target ) throws IOException
+    {
+        try
+        {
+            Files.move( tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( AtomicMoveNotSupportedException ex )
+        {
+            Files.move( tmp, target, StandardCopyOption.REPLACE_EXISTING );
+        }
+    }
+
+    protected String remapFilename( String filename )
+    {
+        String remappedName = filename;
+        if ( null != getFileMapper() )
+        {
+            return getFileMapper().getMappedFileName( filename );
+        }
+        else
+        { // iteratively modify the filename, apply all mappers in order
+            if ( null != getFileMappers() )
+            {
+                for ( FileMapper fm : getFileMappers() )
+                {
+                    if ( null != fm )
+                    {
+                        remappedName = fm.getMappedFileName( remappedName );
+                    }
+                }
+            }
+        }
+
+        return remappedName;
+    }
+
+    protected boolean validateOutputDir() throws MojoExecutionException
+    {
+        try
+        {
+            if ( null == getOutputDir() )
+            {
+                outputDir = new File( getProject().getBasedir(), "rest" );
+            }
+
+            if ( !outputDir.isDirectory() )
+            {
+                if ( outputDir.isFile() )
+                {
+                    getLog().error( String.format( "Error: [%s] is not a directory", outputDir.getCanonicalPath() ) );
+                }
+                else
+                {
+                    if ( !outputDir.mkdirs() )
+                    {
+                        getLog().error(
+                                String.format( "Error: Unable to create path[%s]", outputDir.getCanonicalPath() ) );
+
+                    }
+                }
+            }
+        }
+
+        catch ( IOException ex )
+        {
+            getLog().error( String.format( "IOException: [%s]", ex.toString() ) );
+            throw new MojoExecutionException(
+                    String.format( "Unable to create destination dir [%s]: [%s]", outputDir.toString(),
+                            ex.toString() ) );
+        }
+        return true;
+    }
+
+    @Override
+    public void execute() throws MojoExecutionException
+    {
+        validateOutputDir();
+        getLog().info( String.format( "Output dir [%s]", getOutputDir().toString() ) );
+
+        requestMetrics = isMetrics() ? new RequestMetrics() : null;
+        // the deadline closes the client, which must not be shared then
+        ClientPool clients = (isShareClient() && (getDeadline() <= 0) && (null != session))
+                ? SessionResources.shared( session, "clients", new ClientPool() ) : null;
+        Client client = (null == clients) ? createClient() : clients.lease( createClientFactory() );
+        Deadline deadline = startDeadline( client );
+        try
+        {
+            executeRequests( client );
+        }
+        finally
+        {
+            deadline.cancel();
+            if ( null == clients )
+            {
+                client.close();
+            }
+            else
+            {
+                // nothing is left to reuse the client after the last project
+                clients.release( client, isLastProject() ? 0 : getConnectionIdleTimeout() );
+            }
+            reportMetrics();
+        }
+    }
+
+    /**
+     * Log a summary of the request metrics and write the full report.
+     */
+    private void reportMetrics()
+    {
+        if ( (null == requestMetrics) || (requestMetrics.size() == 0) )
+        {
+            return;
+        }
+        requestMetrics.finish();
+        for ( String line : requestMetrics.summary() )
+        {
+            getLog().info( line );
+        }
+        File report = new File( getTarget(), "rest-metrics/" + getExecutionId() + ".json" );
+        Map<String, Object> context = new LinkedHashMap<>();
+        context.put( "execution", getExecutionId() );
+        context.put( "method", getMethod() );
+        context.put( "endpoint", String.valueOf( getEndpoint() ) );
+        context.put( "resource", getResource() );
+        context.put( "connector", getConnector() );
+        try
+        {
+            requestMetrics.write( report, context );
+            getLog().debug( String.format( "Metrics written to [%s]", report ) );
+        }
+        catch ( IOException ex )
+        {
+            getLog().warn( String.format( "Unable to write metrics [%s]: [%s]", report, ex.getMessage() ) );
+        }
+    }
+
+    /**
+     * @return a new client using the configured connector and pool settings
+     * @throws MojoExecutionException
+     *             if the connector is not known
+     */
+    protected Client createClient() throws MojoExecutionException
+    {
+        return createClientFactory().create();
+    }
+
+    /**
+     * @return <code>true</code> if the project is the last one of the session
+     */
+    private boolean isLastProject()
+    {
+        List<MavenProject> projects = session.getProjects();
+        return (null == projects) || projects.isEmpty() || (null == project)
+                || projects.get( projects.size() - 1 ).equals( project );
+    }
+
+    private ClientFactory createClientFactory()
+    {
+        ClientFactory factory = new ClientFactory();
+        factory.setConnector( getConnector() );
+        factory.setMaxConnections( getMaxConnections() );
+        factory.setMaxConnectionsPerRoute( getMaxConnectionsPerRoute() );
+        factory.setConnectionIdleTimeout( getConnectionIdleTimeout() );
+        factory.setRequestBufferingMode( getRequestBufferingMode() );
+        factory.setChunkSize( getChunkSize() );
+        factory.setCompression( isCompressRequest() || (null != getAcceptEncoding()) );
+        factory.setMultipart( isBatching() );
+        factory.setConnectTimeout( getConnectTimeout() );
+        factory.setReadTimeout( getReadTimeout() );
+        getLog().debug( String.format( "Connector [%s]", getConnector() ) );
+        return factory;
+    }
+
+    /**
+     * Start the execution deadline, which cancels the requests in flight and
+     * closes the client when it passes.
+     */
+    private Deadline startDeadline( final Client client ) throws MojoExecutionException
+    {
+        try
+        {
+            executionDeadline = new Deadline( getDeadline() );
+        }
+        catch ( IllegalArgumentException ex )
+        {
+            throw new MojoExecutionException( ex.getMessage(), ex );
+        }
+        pending = Collections.newSetFromMap( new ConcurrentHashMap<Future<Response>, Boolean>() );
+        executionDeadline.onExpiry( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                getLog().warn( String.format( "Deadline of [%d] ms passed, cancelling requests",
+                        executionDeadline.getTimeout() ) );
+                for ( Future<Response> future : pending )
+                {
+                    future.cancel( true );
+                }
+                // fails the requests still reading or writing, and frees their connections
+                client.close();
+            }
+        } );
+        executionDeadline.start();
+        return executionDeadline;
+    }
+
+    private void executeRequests( Client client ) throws MojoExecutionException
+    {
+        this.client = client;
+        List<URI> uris = new ArrayList<>();
+        if ( null != getEndpoint() )
+        {
+            uris.add( getEndpoint() );
+        }
+        if ( null != getEndpoints() )
+        {
+            for ( URI uri : getEndpoints() )
+            {
+                if ( !uris.contains( uri ) )
+                {
+                    uris.add( uri );
+                }
+            }
+        }
+        if ( uris.isEmpty() )
+        {
+            throw new MojoExecutionException( "No endpoint configured" );
+        }
+        // fingerprints identify the service, not the local replay stub
+        URI requestUri = createTarget( client, uris.get( 0 ) ).getUri();
+        List<URI> endpoints = new ArrayList<>( uris );
+        ReplayServer replayServer = startReplayServer( uris );
+
+        targets = new HashMap<>();
+        for ( URI uri : uris )
+        {
+            WebTarget target = createTarget( client, uri );
+            targets.put( uri, target );
+            getLog().info( String.format( "Endpoint: [%s %s]", getMethod(), target.getUri() ) );
+        }
+        if ( uris.size() > 1 )
+        {
+            balancer = new EndpointBalancer( uris, getEndpointFailureThreshold() );
+            balancer.startProbing( new EndpointBalancer.Probe()
+            {
+                @Override
+                public boolean isHealthy( URI uri )
+                {
+                    return probe( uri );
+                }
+            }, getEndpointProbeInterval() );
+        }
+        try
+        {
+            executeRequests( targets.get( uris.get( 0 ) ), requestUri, endpoints );
+        }
+        finally
+        {
+            if ( null != balancer )
+            {
+                balancer.close();
+            }
+            if ( null != replayServer )
+            {
+                replayServer.close();
+            }
+        }
+    }
+
+    /**
+     * Start the record or replay stub, and point the endpoint at it.
+     *
+     * @param uris
+     *            the endpoints, replaced by the stub
+     * @return the stub, or <code>null</code> if requests go to the service
+     */
+    private ReplayServer startReplayServer( List<URI> uris ) throws MojoExecutionException
+    {
+        String mode = (null == getReplayMode()) ? ReplayServer.OFF
+                : getReplayMode().trim().toLowerCase( Locale.ENGLISH );
+        if ( ReplayServer.OFF.equals( mode ) )
+        {
+            return null;
+        }
+        if ( !ReplayServer.RECORD.equals( mode ) && !ReplayServer.REPLAY.equals( mode ) )
+        {
+            throw new MojoExecutionException( String.format(
+                    "Unknown replayMode [%s], expected one of [%s, %s, %s]", getReplayMode(), ReplayServer.OFF,
+                    ReplayServer.RECORD, ReplayServer.REPLAY ) );
+        }
+        if ( uris.size() > 1 )
+        {
+            getLog().warn( String.format( "Only endpoint [%s] is used to %s", uris.get( 0 ), mode ) );
+        }
+        URI endpoint = uris.get( 0 );
+        ReplayServer server;
+        try
+        {
+            server = ReplayServer.RECORD.equals( mode ) ? ReplayServer.record( getReplayArchive(), endpoint )
+                    : ReplayServer.replay( getReplayArchive() );
+        }
+        catch ( IOException ex )
+        {
+            throw new MojoExecutionException( String.format( "Unable to start the %s stub: [%s]", mode,
+                    ex.getMessage() ), ex );
+        }
+        getLog().info( String.format( "%s responses of [%s] in [%s]",
+                ReplayServer.RECORD.equals( mode ) ? "Recording" : "Replaying", endpoint, getReplayArchive() ) );
+        uris.clear();
+        uris.add( server.getUri( endpoint ) );
+        return server;
+    }
+
+    private WebTarget createTarget( Client client, URI uri )
+    {
+        WebTarget target = client.target( uri );
+        if ( null != getResource() )
+        {
+            getLog().debug( String.format( "Setting resource [%s]", getResource() ) );
+            target = target.path( getResource() );
+        }
+        // Load up the query parameters if they exist
+        if ( null != getQueryParams() )
+        {
+            for ( String k : getQueryParams().keySet() )
+            {
+                String param = getQueryParams().get( k );
+                target = target.queryParam( k, param );
+                getLog().debug( String.format( "Param [%s:%s]", k, param ) );
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Check whether an ejected endpoint answers again. Any response below
+     * 500 shows that the service is up, even if it does not support
+     * <code>HEAD</code>.
+     */
+    private boolean probe( URI uri )
+    {
+        try
+        {
+            Response response = createBuilder( targets.get( uri ) ).head();
+            response.close();
+            if ( response.getStatus() < 500 )
+            {
+                getLog().info( String.format( "Endpoint [%s] is healthy again", uri ) );
+                return true;
+            }
+        }
+        catch ( ProcessingException ex )
+        {
+            getLog().debug( String.format( "Endpoint [%s] probe failed: [%s]", uri, ex.toString() ) );
+        }
+        return false;
+    }
+
+    /**
+     * Send the requests for all files.
+     *
+     * @param baseTarget
+     *            the resource at the first endpoint
+     * @param requestUri
+     *            the URI of the resource at the service, which identifies
+     *            the requests in fingerprints
+     * @param endpoints
+     *            the configured endpoints, which share their rate limits
+     *            with the other executions sending to them
+     */
+    private void executeRequests( WebTarget baseTarget, URI requestUri, List<URI> endpoints )
+        throws MojoExecutionException
+    {
+        RateLimiter limiter;
+        try
+        {
+            retryPolicy = new RetryPolicy( getMaxRetries(), getRetryStatuses(), isRetryOnIOException(),
+                    getRetryInitialDelay(), getRetryMaxDelay(), getRetryBudget() );
+            circuitBreaker = new CircuitBreaker( getCircuitBreakerThreshold(), getCircuitBreakerCooldown() );
+            limiter = new RateLimiter( getMaxRequestsPerSecond(), getMaxBytesPerSecond() );
+        }
+        catch ( IllegalArgumentException ex )
+        {
+            throw new MojoExecutionException( ex.getMessage(), ex );
+        }
+
+        if ( !limiter.isUnlimited() )
+        {
+            RateLimiter shared = SessionResources.shared( session, "rate-limiter:" + endpoints + "|" + getResource(),
+                    limiter );
+            if ( (shared.getRequestsPerSecond() != limiter.getRequestsPerSecond())
+                    || (shared.getBytesPerSecond() != limiter.getBytesPerSecond()) )
+            {
+                getLog().warn( String.format( "Rate limits of %s shared with an earlier execution: "
+                        + "maxRequestsPerSecond [%s] and maxBytesPerSecond [%d] apply", endpoints,
+                        shared.getRequestsPerSecond(), shared.getBytesPerSecond() ) );
+            }
+            limiter = shared;
+        }
+        limits = new RequestLimits( limiter, balancer, getLog() );
+
+        final List<ErrorInfo> errorFiles = Collections.synchronizedList( new ArrayList<ErrorInfo>() );
+        failedFiles = errorFiles;
+        unfinished = Collections.newSetFromMap( new ConcurrentHashMap<File, Boolean>() );
+        completedCount = new AtomicInteger();
+        FileStream files = streamFilesToProcess();
+        try
+        {
+            executeRequests( baseTarget, requestUri, files, errorFiles );
+        }
+        finally
+        {
+            files.close();
+        }
+    }
+
+    /**
+     * Send the requests for the files of a scan as they are found.
+     */
+    private void executeRequests( WebTarget baseTarget, URI requestUri, FileStream files,
+            final List<ErrorInfo> errorFiles ) throws MojoExecutionException
+    {
+        boolean noFiles;
+        try
+        {
+            noFiles = files.isEmpty();
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( String.format( "Unable to get paths to filesets: [%s]",
+                    e.getMessage() ), e );
+        }
+        configFingerprint = RequestFingerprint.configuration( getMethod(), requestUri, getHeaders(),
+                getRequestType(), getResponseType() );
+        if ( noFiles )
+        {
+            if ( !getMethod().equalsIgnoreCase( "GET" ) )
+            {
+                getLog().info( "No files to process" );
+                return;
+            }
+            else
+            {
+                getLog().debug( "GET request" );
+                String name = remapFilename( getOutputFilename().getName() );
+                Pagination pages = createPagination();
+                ErrorInfo result;
+                if ( null != pages )
+                {
+                    createConcurrencyLimit( 2 );
+                    result = processPages( baseTarget, pages, name );
+                }
+                else
+                {
+                    result = (getDownloadRanges() > 0) ? processRangedRequest( baseTarget, name )
+                            : processRequest( baseTarget, null, name );
+                }
+                if ( result != null )
+                {
+                    errorFiles.add( result );
+                }
+            }
+        }
+
+        if ( isIncremental() )
+        {
+            loadManifest();
+        }
+        journal = null;
+        if ( !noFiles && isResume() )
+        {
+            openJournal();
+        }
+        if ( isCache() )
+        {
+            getLog().debug( String.format( "Response cache [%s]", getCacheDir() ) );
+            responseCache = new ResponseCache( getCacheDir(), getCacheMaxSize() * 1024 * 1024 );
+        }
+        duplicates = null;
+        if ( isDeduplicate() )
+        {
+            duplicates = SessionResources.shared( session, "duplicate-requests", new DuplicateRequests<ErrorInfo>() );
+        }
+        try
+        {
+            if ( isBatching() )
+            {
+                if ( isAsync() )
+                {
+                    getLog().warn( "async is not used for multipart batches" );
+                }
+                createConcurrencyLimit( getConcurrency() );
+                RequestDispatcher dispatcher = new RequestDispatcher( getConcurrency(), getConcurrency() );
+                FileBatcher batcher = new FileBatcher( getBatchSize(), getBatchBytes() );
+                try
+                {
+                    for ( File f = nextFile( files ); null != f; f = nextFile( files ) )
+                    {
+                        if ( executionDeadline.isExpired() )
+                        {
+                            break;
+                        }
+                        FileRequest request;
+                        try
+                        {
+                            request = prepareFile( f, remapFilename( f.getName() ) );
+                        }
+                        catch ( IOException ex )
+                        {
+                            markCompleted( f );
+                            errorFiles.add( new FileErrorInfo( f.getPath(),
+                                    new ErrorInfo( String.format( "IOException: [%s]", ex.getMessage() ) ) ) );
+                            continue;
+                        }
+                        if ( null == request )
+                        {
+                            markCompleted( f );
+                        }
+                        else if ( !isDuplicate( request ) )
+                        {
+                            submitBatch( dispatcher, baseTarget, batcher.add( request ), errorFiles );
+                        }
+                    }
+                    submitBatch( dispatcher, baseTarget, batcher.flush(), errorFiles );
+                }
+                finally
+                {
+                    awaitRequests( dispatcher );
+                }
+            }
+            else if ( isAsync() )
+            {
+                int inFlight = getMaxInFlight();
+                if ( !ClientFactory.DEFAULT.equalsIgnoreCase( getConnector() )
+                        && (inFlight > getMaxConnectionsPerRoute()) )
+                {
+                    // every outstanding HTTP/1.1 request holds its own pooled connection
+                    getLog().warn( String.format( "maxInFlight [%d] limited to maxConnectionsPerRoute [%d]", inFlight,
+                            getMaxConnectionsPerRoute() ) );
+                    inFlight = getMaxConnectionsPerRoute();
+                }
+                getLog().debug( String.format( "Async requests, max in flight [%d]", inFlight ) );
+                createConcurrencyLimit( inFlight );
+                AsyncRequestDispatcher dispatcher = new AsyncRequestDispatcher( inFlight, getConcurrency() );
+                try
+                {
+                    for ( File f = nextFile( files ); null != f; f = nextFile( files ) )
+                    {
+                        if ( executionDeadline.isExpired() )
+                        {
+                            break;
+                        }
+                        submitFile( dispatcher, baseTarget, f, remapFilename( f.getName() ), errorFiles );
+                    }
+                }
+                finally
+                {
+                    awaitRequests( dispatcher );
+                }
+            }
+            else
+            {
+                createConcurrencyLimit( getConcurrency() );
+                RequestDispatcher dispatcher = new RequestDispatcher( getConcurrency(), getConcurrency() );
+                final WebTarget target = baseTarget;
+                try
+                {
+                    for ( File next = nextFile( files ); null != next; next = nextFile( files ) )
+                    {
+                        if ( executionDeadline.isExpired() )
+                        {
+                            break;
+                        }
+                        final File f = next;
+                        final long submitted = System.nanoTime();
+                        dispatcher.queue( new Runnable()
+                        {
+                            @Override
+                            public void run()
+                            {
+                                queued( f.getPath(), submitted );
+                                if ( executionDeadline.isExpired() )
+                                {
+                                    return;
+                                }
+                                try
+                                {
+                                    processFile( target, f, remapFilename( f.getName() ), errorFiles );
+                                }
+                                catch ( RuntimeException ex )
+                                {
+                                    recordCompletion( f, unexpected( ex ), errorFiles );
+                                }
+                            }
+                        } );
+                    }
+                }
+                finally
+                {
+                    awaitRequests( dispatcher );
+                }
+            }
+            releaseDuplicates();
+            awaitDuplicates();
+        }
+        finally
+        {
+            releaseDuplicates();
+            closeJournal();
+            saveManifest();
+            trimCache();
+            AdaptiveLimit concurrencyLimit = limits.getConcurrencyLimit();
+            if ( null != concurrencyLimit )
+            {
+                getLog().info( String.format( "Adaptive concurrency limit [%d], peak [%d]",
+                        concurrencyLimit.getLimit(), concurrencyLimit.getPeak() ) );
+            }
+        }
+
+        if ( executionDeadline.isExpired() )
+        {
+            List<ErrorInfo> report = new ArrayList<>( errorFiles );
+            for ( File f : unfinished )
+            {
+                report.add( new FileErrorInfo( f.getPath(), "Not completed before the deadline" ) );
+            }
+            throw new MojoExecutionException( String.format(
+                    "Deadline of [%d] ms passed, completed [%d] of [%d%s] files. Unable to process files:\n%s",
+                    executionDeadline.getTimeout(), completedCount.get(), files.getCount(),
+                    files.isComplete() ? "" : "+", wrap( "  ", "\n", report ) ) );
+        }
+        if ( errorFiles.size() > 0 )
+        {
+            throw new MojoExecutionException(
+                    String.format( "Unable to process files:\n%s", wrap( "  ", "\n", errorFiles ) ) );
+        }
+        deleteJournal();
+    }
+
+    /**
+     * Turn an exception that escaped the processing of a request into its
+     * error, so the file is reported instead of lost on a worker thread.
+     */
+    private ErrorInfo unexpected( RuntimeException ex )
+    {
+        getLog().warn( String.format( "Unexpected exception: [%s]", ex.toString() ) );
+        return new ErrorInfo( String.format( "%s: [%s]", ex.getClass().getSimpleName(), ex.getMessage() ) );
+    }
+
+    /**
+     * Record that a file is done. A file that failed once the deadline had
+     * passed was most likely cancelled, and is reported as not completed.
+     */
+    private void recordCompletion( File f, ErrorInfo result, List<ErrorInfo> errorFiles )
+    {
+        if ( null == result )
+        {
+            markCompleted( f );
+        }
+        else if ( !executionDeadline.isExpired() )
+        {
+            markCompleted( f );
+            errorFiles.add( new FileErrorInfo( f.getPath(), result ) );
+        }
+    }
+
+    private void markCompleted( File f )
+    {
+        if ( unfinished.remove( f ) )
+        {
+            completedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Wait for the requests in flight, at most until shortly after the
+     * deadline.
+     */
+    private void awaitRequests( AsyncRequestDispatcher dispatcher ) throws MojoExecutionException
+    {
+        if ( executionDeadline.isSet() )
+        {
+            dispatcher.await( executionDeadline.remaining( TimeUnit.MILLISECONDS ) + DEADLINE_GRACE,
+                    TimeUnit.MILLISECONDS );
+        }
+        else
+        {
+            dispatcher.await();
+        }
+    }
+
+    /**
+     * Wait for the queued requests, at most until shortly after the
+     * deadline.
+     */
+    private void awaitRequests( RequestDispatcher dispatcher ) throws MojoExecutionException
+    {
+        if ( executionDeadline.isSet() )
+        {
+            dispatcher.await( executionDeadline.remaining( TimeUnit.MILLISECONDS ) + DEADLINE_GRACE,
+                    TimeUnit.MILLISECONDS );
+        }
+        else
+        {
+            dispatcher.await();
+        }
+    }
+
+    private void createConcurrencyLimit( int maxLimit )
+    {
+        if ( isAdaptiveConcurrency() )
+        {
+            if ( maxLimit <= 1 )
+            {
+                getLog().warn( "adaptiveConcurrency needs a concurrency (or maxInFlight) greater than 1" );
+            }
+            limits.setConcurrencyLimit( new AdaptiveLimit( 1, Math.min( 4, maxLimit ), maxLimit ) );
+        }
+    }
+
+    private void loadManifest() throws MojoExecutionException
+    {
+        manifest = new FingerprintManifest(
+                new File( getTarget(), "rest-fingerprints/" + getExecutionId() + ".properties" ) );
+        try
+        {
+            manifest.load();
+        }
+        catch ( IOException ex )
+        {
+            throw new MojoExecutionException( String.format( "Unable to read fingerprints [%s]", ex.toString() ),
+                    ex );
+        }
+    }
+
+    private void openJournal() throws MojoExecutionException
+    {
+        journal = new CompletionJournal( new File( getTarget(), "rest-journal/" + getExecutionId() + ".journal" ) );
+        try
+        {
+            journal.open( true );
+        }
+        catch ( IOException ex )
+        {
+            throw new MojoExecutionException( String.format( "Unable to open journal [%s]", ex.toString() ), ex );
+        }
+        getLog().info( String.format( "Resuming from [%s], [%d] files completed", journal.getFile(),
+                journal.getCompletedCount() ) );
+    }
+
+    private void closeJournal()
+    {
+        if ( null != journal )
+        {
+            try
+            {
+                journal.close();
+            }
+            catch ( IOException ex )
+            {
+                getLog().warn( String.format( "Unable to close journal: [%s]", ex.toString() ) );
+            }
+        }
+    }
+
+    /**
+     * Forget the journal of a build that completed every file, so the next
+     * build sends them all again.
+     */
+    private void deleteJournal()
+    {
+        if ( null != journal )
+        {
+            try
+            {
+                journal.delete();
+            }
+            catch ( IOException ex )
+            {
+                getLog().warn( String.format( "Unable to delete journal: [%s]", ex.toString() ) );
+            }
+        }
+    }
+
+    private void saveManifest()
+    {
+        if ( null != manifest )
+        {
+            try
+            {
+                manifest.save();
+            }
+            catch ( IOException ex )
+            {
+                getLog().warn( String.format( "Unable to save fingerprints: [%s]", ex.toString() ) );
+            }
+        }
+    }
+
+    private void trimCache()
+    {
+        if ( null != responseCache )
+        {
+            try
+            {
+                responseCache.trim();
+            }
+            catch ( IOException ex )
+            {
+                getLog().warn( String.format( "Unable to trim response cache: [%s]", ex.toString() ) );
+            }
+        }
+    }
+
+    /**
+     * Send one file, unless its output is already up to date, its response
+     * is cached or an identical file was sent, and record the result.
+     */
+    private void processFile( WebTarget target, File f, String outputFilename, List<ErrorInfo> errorFiles )
+    {
+        FileRequest request;
+        try
+        {
+            request = prepareFile( f, outputFilename );
+        }
+        catch ( IOException ex )
+        {
+            recordCompletion( f, new ErrorInfo( String.format( "IOException: [%s]", ex.getMessage() ) ),
+                    errorFiles );
+            return;
+        }
+        if ( null == request )
+        {
+            recordCompletion( f, null, errorFiles );
+            return;
+        }
+        if ( isDuplicate( request ) )
+        {
+            return;
+        }
+        getLog().debug( String.format( "Submitting file [%s]", f.toString() ) );
+        recordCompletion( f, completeFile( request, processRequest( target, f, outputFilename ) ), errorFiles );
+    }
+
+    /**
+     * Send one file asynchronously, unless its output is already up to date
+     * or its response is cached. Blocks while the maximum number of requests
+     * are in flight.
+     */
+    private void submitFile( final AsyncRequestDispatcher dispatcher, final WebTarget target, final File f,
+            final String outputFilename, final List<ErrorInfo> errorFiles ) throws MojoExecutionException
+    {
+        final FileRequest request;
+        try
+        {
+            request = prepareFile( f, outputFilename );
+        }
+        catch ( IOException ex )
+        {
+            markCompleted( f );
+            errorFiles.add( new FileErrorInfo( f.getPath(),
+                    new ErrorInfo( String.format( "IOException: [%s]", ex.getMessage() ) ) ) );
+            return;
+        }
+        if ( null == request )
+        {
+            markCompleted( f );
+            return;
+        }
+        if ( isDuplicate( request ) )
+        {
+            return;
+        }
+
+        if ( !dispatcher.tryAcquire( executionDeadline.remaining( TimeUnit.MILLISECONDS ), TimeUnit.MILLISECONDS ) )
+        {
+            // the deadline passed
+            return;
+        }
+        if ( !circuitBreaker.allowRequest() )
+        {
+            dispatcher.release();
+            markCompleted( f );
+            errorFiles.add( new FileErrorInfo( f.getPath(), completeFile( request, circuitOpen() ) ) );
+            return;
+        }
+        try
+        {
+            sendAsync( dispatcher, target, request, errorFiles, 0 );
+        }
+        catch ( InterruptedException e )
+        {
+            dispatcher.release();
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while waiting to send REST request", e );
+        }
+    }
+
+    /**
+     * Send a file asynchronously. Its response is processed by the
+     * dispatcher, and a failed request is sent again after the retry delay.
+     * The dispatcher permit is held until the request is done.
+     *
+     * @param retries
+     *            the number of times the request has already been retried
+     * @throws InterruptedException
+     *             if interrupted before the request was sent, which leaves
+     *             the permit to the caller
+     */
+    private void sendAsync( final AsyncRequestDispatcher dispatcher, final WebTarget target,
+            final FileRequest request, final List<ErrorInfo> errorFiles, final int retries )
+        throws InterruptedException
+    {
+        final File f = request.getInput();
+        final String outputFilename = request.getOutputFilename();
+        final RequestLimits.Lease lease = limits.acquire( f.length() );
+        getLog().debug( String.format( "Submitting file [%s]", f.toString() ) );
+        final AtomicReference<Future<Response>> handle = new AtomicReference<>();
+        try
+        {
+            Future<Response> future = createBuilder( targetOf( lease, target ) ).async().method( getMethod(),
+                    createEntity( f ),
+                    new InvocationCallback<Response>()
+                    {
+                        @Override
+                        public void completed( final Response response )
+                        {
+                            complete( response, null );
+                        }
+
+                        @Override
+                        public void failed( Throwable t )
+                        {
+                            getLog().debug( String.format( "Request failed: [%s]", t.toString() ) );
+                            complete( null, transportError( t ) );
+                        }
+
+                        private void complete( final Response response, final ErrorInfo failure )
+                        {
+                            lease.responded();
+                            dispatcher.complete( new AsyncRequestDispatcher.Completion()
+                            {
+                                @Override
+                                public boolean process()
+                                {
+                                    Future<Response> done = handle.get();
+                                    if ( null != done )
+                                    {
+                                        pending.remove( done );
+                                    }
+                                    ErrorInfo result = failure;
+                                    try
+                                    {
+                                        long received = System.nanoTime();
+                                        if ( null != response )
+                                        {
+                                            result = processResponse( response, outputFilename );
+                                        }
+                                        recordSample( f.getPath(), lease.getQueue(), lease.getRtt(),
+                                                System.nanoTime() - received,
+                                                (null == response) ? -1 : response.getStatus(), f.length(),
+                                                (null == result) ? outputFilename : null );
+                                    }
+                                    catch ( RuntimeException ex )
+                                    {
+                                        result = unexpected( ex );
+                                    }
+                                    finally
+                                    {
+                                        lease.close( isEndpointFailure( result ) );
+                                    }
+                                    recordResult( result );
+                                    if ( (null != result)
+                                            && resendAsync( dispatcher, target, request, errorFiles, result, retries ) )
+                                    {
+                                        return false;
+                                    }
+                                    recordCompletion( f, completeFile( request, result ), errorFiles );
+                                    return true;
+                                }
+                            } );
+                        }
+                    } );
+            pending.add( future );
+            handle.set( future );
+            if ( future.isDone() )
+            {
+                pending.remove( future );
+            }
+        }
+        catch ( ProcessingException ex )
+        {
+            lease.close( false );
+            dispatcher.release();
+            markCompleted( f );
+            errorFiles.add( new FileErrorInfo( f.getPath(), completeFile( request,
+                    transportError( ex ) ) ) );
+        }
+    }
+
+    /**
+     * Schedule a failed asynchronous request to be sent again, if the retry
+     * policy allows. The completion thread does not wait for the retry.
+     *
+     * @param result
+     *            the error of the failed attempt
+     * @param retries
+     *            the number of times the request has already been retried
+     * @return <code>true</code> if the request will be sent again
+     */
+    private boolean resendAsync( final AsyncRequestDispatcher dispatcher, final WebTarget target,
+            final FileRequest request, final List<ErrorInfo> errorFiles, final ErrorInfo result, final int retries )
+    {
+        long delay = retryDelay( request.getInput().getPath(), result, retries );
+        if ( delay < 0 )
+        {
+            return false;
+        }
+        return dispatcher.resend( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if ( circuitBreaker.allowRequest() )
+                {
+                    try
+                    {
+                        sendAsync( dispatcher, target, request, errorFiles, retries + 1 );
+                        return;
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                dispatcher.release();
+                recordCompletion( request.getInput(), completeFile( request, result ), errorFiles );
+            }
+        }, delay, TimeUnit.MILLISECONDS );
+    }
+
+    private void submitBatch( RequestDispatcher dispatcher, final WebTarget target, final List<FileRequest> batch,
+            final List<ErrorInfo> errorFiles ) throws MojoExecutionException
+    {
+        if ( (null == batch) || batch.isEmpty() )
+        {
+            return;
+        }
+        final long submitted = System.nanoTime();
+        dispatcher.queue( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                queued( describe( batch ), submitted );
+                if ( executionDeadline.isExpired() )
+                {
+                    return;
+                }
+                List<ErrorInfo> results;
+                try
+                {
+                    results = processBatch( target, batch );
+                }
+                catch ( RuntimeException ex )
+                {
+                    results = Collections.nCopies( batch.size(), unexpected( ex ) );
+                }
+                for ( int i = 0; i < batch.size(); i++ )
+                {
+                    recordCompletion( batch.get( i ).getInput(), completeFile( batch.get( i ), results.get( i ) ),
+                            errorFiles );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Send a batch of files as one multipart request and store the results.
+     *
+     * @return the result of each file in the batch, <code>null</code> on
+     *         success
+     */
+    private List<ErrorInfo> processBatch( final WebTarget target, final List<FileRequest> batch )
+    {
+        getLog().debug( String.format( "Submitting batch of [%d] files", batch.size() ) );
+        final List<ErrorInfo> results = new ArrayList<>( Collections.nCopies( batch.size(), (ErrorInfo) null ) );
+        ErrorInfo error = sendWithRetry( String.format( "batch of [%d] files", batch.size() ), new Attempt()
+        {
+            @Override
+            public ErrorInfo send()
+            {
+                Collections.fill( results, null );
+                return sendBatch( target, batch, results );
+            }
+        } );
+        if ( null != error )
+        {
+            Collections.fill( results, error );
+        }
+        return results;
+    }
+
+    /**
+     * Send one multipart batch request.
+     *
+     * @param results
+     *            receives the result of each file of a multipart response
+     * @return the error of the request as a whole, or <code>null</code>
+     */
+    private ErrorInfo sendBatch( WebTarget target, List<FileRequest> batch, List<ErrorInfo> results )
+    {
+        long bytes = 0;
+        for ( FileRequest request : batch )
+        {
+            bytes += request.getInput().length();
+        }
+        RequestLimits.Lease lease;
+        try
+        {
+            lease = limits.acquire( bytes );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return interrupted();
+        }
+        FormDataMultiPart multiPart = new FormDataMultiPart();
+        int status = -1;
+        ErrorInfo error = null;
+        try
+        {
+            for ( FileRequest request : batch )
+            {
+                multiPart.bodyPart( new FileDataBodyPart( getBatchPartName(), request.getInput(), getRequestType() ) );
+            }
+            Response response = createBuilder( targetOf( lease, target ) ).method( getMethod(),
+                    Entity.entity( multiPart, multiPart.getMediaType() ) );
+            lease.responded();
+            status = response.getStatus();
+            MediaType type = response.getMediaType();
+            if ( (response.getStatusInfo().getFamily() == Family.SUCCESSFUL) && (null != type)
+                    && "multipart".equalsIgnoreCase( type.getType() ) )
+            {
+                splitResponse( response, batch, results );
+            }
+            else if ( batch.size() == 1 )
+            {
+                error = processResponse( response, batch.get( 0 ).getOutputFilename() );
+            }
+            else if ( response.getStatusInfo().getFamily() != Family.SUCCESSFUL )
+            {
+                error = errorResponse( response );
+            }
+            else
+            {
+                response.close();
+                error = new ErrorInfo( response.getStatus(), String.format(
+                        "Expected a multipart response for a batch of [%d] files, got [%s]", batch.size(), type ) );
+            }
+        }
+        catch ( ProcessingException ex )
+        {
+            getLog().debug( String.format( "ProcessingException: [%s]", ex.toString() ) );
+            error = transportError( ex );
+        }
+        finally
+        {
+            multiPart.cleanup();
+            recordBatchSample( batch, results, lease, status, bytes, error );
+            lease.close( isEndpointFailure( error ) );
+        }
+        return error;
+    }
+
+    /**
+     * Write each part of a multipart response to the output file of the
+     * matching input file.
+     */
+    private void splitResponse( Response response, List<FileRequest> batch, List<ErrorInfo> results )
+    {
+        boolean[] written = new boolean[batch.size()];
+        MultiPart parts = response.readEntity( MultiPart.class );
+        try
+        {
+            for ( BodyPart part : parts.getBodyParts() )
+            {
+                int idx = matchPart( part, batch, written );
+                if ( idx < 0 )
+                {
+                    getLog().warn( String.format( "Ignoring unmatched part [%s] in multipart response",
+                            partFilename( part ) ) );
+                    continue;
+                }
+                written[idx] = true;
+                File of = batch.get( idx ).getOutput();
+                try
+                {
+                    pipeToFile( part.getEntityAs( InputStream.class ), of );
+                    if ( null != buildContext )
+                    {
+                        buildContext.refresh( of );
+                    }
+                }
+                catch ( IOException ex )
+                {
+                    getLog().debug( String.format( "IOException: [%s]", ex.toString() ) );
+                    results.set( idx, new ErrorInfo( String.format( "IOException: [%s]", ex.getMessage() ) ) );
+                }
+            }
+        }
+        finally
+        {
+            parts.cleanup();
+        }
+        for ( int i = 0; i < written.length; i++ )
+        {
+            if ( !written[i] )
+            {
+                results.set( i, new ErrorInfo( "No matching part in multipart response" ) );
+            }
+        }
+    }
+
+    /**
+     * Find the input file a response part belongs to: the first file not yet
+     * written whose name or output name matches the part filename, or the
+     * first file not yet written if the part has no filename.
+     *
+     * @return the index of the file in the batch, or -1
+     */
+    private int matchPart( BodyPart part, List<FileRequest> batch, boolean[] written )
+    {
+        String filename = partFilename( part );
+        for ( int i = 0; i < batch.size(); i++ )
+        {
+            if ( written[i] )
+            {
+                continue;
+            }
+            if ( (null == filename) || filename.equals( batch.get( i ).getInput().getName() )
+                    || filename.equals( batch.get( i ).getOutputFilename() ) )
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String partFilename( BodyPart part )
+    {
+        try
+        {
+            if ( null != part.getContentDisposition() )
+            {
+                return part.getContentDisposition().getFileName();
+            }
+        }
+        catch ( IllegalArgumentException ex )
+        {
+            getLog().debug( String.format( "Invalid Content-Disposition: [%s]", ex.toString() ) );
+        }
+        return null;
+    }
+
+    /**
+     * Decide whether a file must be sent.
+     *
+     * @return the request to send, or <code>null</code> if the output is up
+     *         to date or was served from the response cache
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private FileRequest prepareFile( File f, String outputFilename ) throws IOException
+    {
+        File of = new File( getOutputDir(), outputFilename );
+        // without a delta the contents are unchanged, but the configuration may not be
+        if ( (null != manifest) && (null != buildContext) && buildContext.isIncremental()
+                && !buildContext.hasDelta( f ) && of.isFile()
+                && manifest.isConfiguredBy( f, configurationOf( outputFilename ) ) )
+        {
+            getLog().debug( String.format( "No delta for [%s]", f.toString() ) );
+            return null;
+        }
+
+        String contentHash = null;
+        String fingerprint = null;
+        if ( (null != manifest) || (null != journal) || (null != responseCache) || (null != duplicates) )
+        {
+            contentHash = RequestFingerprint.content( f );
+        }
+        if ( (null != manifest) || (null != journal) )
+        {
+            fingerprint = RequestFingerprint.combine( configFingerprint, contentHash, outputFilename );
+        }
+        if ( (null != manifest) && manifest.isUpToDate( f, fingerprint, of ) )
+        {
+            getLog().info( String.format( "Skipping up to date file [%s]", f.toString() ) );
+            return null;
+        }
+        if ( isResume() && (null != journal) && journal.isCompleted( f, fingerprint, of ) )
+        {
+            getLog().info( String.format( "Skipping file completed by an earlier build [%s]", f.toString() ) );
+            if ( null != manifest )
+            {
+                manifest.record( f, configurationOf( outputFilename ), fingerprint );
+            }
+            return null;
+        }
+
+        String cacheKey = null;
+        if ( (null != responseCache) || (null != duplicates) )
+        {
+            cacheKey = RequestFingerprint.combine( configFingerprint, contentHash );
+        }
+        if ( null != responseCache )
+        {
+            boolean cached = false;
+            try
+            {
+                cached = responseCache.retrieve( cacheKey, of );
+            }
+            catch ( IOException ex )
+            {
+                getLog().warn( String.format( "Unable to read response cache: [%s]", ex.toString() ) );
+            }
+            if ( cached )
+            {
+                getLog().info( String.format( "Using cached response for [%s]", f.toString() ) );
+                if ( null != buildContext )
+                {
+                    buildContext.refresh( of );
+                }
+                recordResult( new FileRequest( f, outputFilename, of, fingerprint, cacheKey ), null );
+                return null;
+            }
+        }
+        return new FileRequest( f, outputFilename, of, fingerprint, cacheKey );
+    }
+
+    /**
+     * The fingerprint of everything but the file contents that determines
+     * the output of a file.
+     */
+    private String configurationOf( String outputFilename )
+    {
+        return RequestFingerprint.combine( configFingerprint, outputFilename );
+    }
+
+    /**
+     * Record the result of a file request in the response cache, the
+     * fingerprint manifest and the journal.
+     *
+     * @return the result
+     */
+    private ErrorInfo completeFile( FileRequest request, ErrorInfo result )
+    {
+        if ( (null == result) && (null != responseCache) )
+        {
+            try
+            {
+                responseCache.store( request.getCacheKey(), request.getOutput() );
+            }
+            catch ( IOException ex )
+            {
+                getLog().warn( String.format( "Unable to store response in cache: [%s]", ex.toString() ) );
+            }
+        }
+        recordResult( request, result );
+        if ( null != duplicates )
+        {
+            duplicates.complete( request, result );
+        }
+        return result;
+    }
+
+    private void recordResult( FileRequest request, ErrorInfo result )
+    {
+        if ( null != manifest )
+        {
+            if ( null == result )
+            {
+                manifest.record( request.getInput(), configurationOf( request.getOutputFilename() ),
+                        request.getFingerprint() );
+            }
+            else
+            {
+                manifest.remove( request.getInput() );
+            }
+        }
+        if ( null != journal )
+        {
+            try
+            {
+                if ( null == result )
+                {
+                    journal.completed( request.getInput(), request.getFingerprint(), request.getOutput() );
+                }
+                else
+                {
+                    journal.failed( request.getInput(), request.getFingerprint() );
+                }
+            }
+            catch ( IOException ex )
+            {
+                getLog().warn( String.format( "Unable to write journal: [%s]", ex.toString() ) );
+            }
+        }
+    }
+
+    /**
+     * Check whether an identical file was sent before, by this or another
+     * execution. A duplicate is completed from the response to that file,
+     * now if it has arrived and otherwise as soon as it does.
+     *
+     * @return <code>true</code> if the request must not be sent
+     */
+    private boolean isDuplicate( final FileRequest request )
+    {
+        if ( null == duplicates )
+        {
+            return false;
+        }
+        DuplicateRequests.Source<ErrorInfo> source = duplicates.add( this, request );
+        if ( null == source )
+        {
+            return false;
+        }
+        getLog().debug( String.format( "File [%s] is identical to [%s]", request.getInput(),
+                source.getRequest().getInput() ) );
+        synchronized ( waitingLock )
+        {
+            waitingDuplicates++;
+        }
+        boolean waiting = source.attach( new DuplicateRequests.Waiter<ErrorInfo>()
+        {
+            @Override
+            public void completed( FileRequest sent, ErrorInfo result )
+            {
+                try
+                {
+                    completeDuplicate( sent, result, request );
+                }
+                finally
+                {
+                    stopWaiting();
+                }
+            }
+        } );
+        if ( !waiting )
+        {
+            try
+            {
+                completeDuplicate( source.getRequest(), source.getResult(), request );
+            }
+            finally
+            {
+                stopWaiting();
+            }
+        }
+        return true;
+    }
+
+    private void stopWaiting()
+    {
+        synchronized ( waitingLock )
+        {
+            waitingDuplicates--;
+            waitingLock.notifyAll();
+        }
+    }
+
+    /**
+     * Wait until the duplicates of this execution have been completed from
+     * the requests they wait for, which may be sent by other executions.
+     */
+    private void awaitDuplicates() throws MojoExecutionException
+    {
+        synchronized ( waitingLock )
+        {
+            while ( (waitingDuplicates > 0) && !executionDeadline.isExpired() )
+            {
+                getLog().debug( String.format( "Waiting for [%d] identical requests", waitingDuplicates ) );
+                try
+                {
+                    waitingLock.wait( Math.min( 1000L, executionDeadline.remaining( TimeUnit.MILLISECONDS ) ) );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException( "Interrupted while waiting for REST requests", e );
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop sharing the responses of this execution. Duplicates waiting for a
+     * request that was never completed fail.
+     */
+    private void releaseDuplicates()
+    {
+        if ( null != duplicates )
+        {
+            duplicates.release( this, new ErrorInfo( String.format(
+                    "The identical request of execution [%s] was not completed", getExecutionId() ) ) );
+        }
+    }
+
+    /**
+     * Give a duplicate the output, or the error, of the identical request.
+     */
+    private void completeDuplicate( FileRequest source, ErrorInfo result, FileRequest duplicate )
+    {
+        if ( null == result )
+        {
+            try
+            {
+                linkOutput( source.getOutput(), duplicate.getOutput() );
+                if ( null != buildContext )
+                {
+                    buildContext.refresh( duplicate.getOutput() );
+                }
+            }
+            catch ( IOException ex )
+            {
+                result = new ErrorInfo( String.format( "IOException: [%s]", ex.getMessage() ) );
+            }
+        }
+        recordResult( duplicate, result );
+        recordCompletion( duplicate.getInput(), result, failedFiles );
+    }
+
+    /**
+     * Hard link an output file to the output of an identical request, or
+     * copy it where the file system does not support links.
+     */
+    private void linkOutput( File source, File output ) throws IOException
+    {
+        Path target = output.getAbsoluteFile().toPath();
+        if ( target.equals( source.getAbsoluteFile().toPath() ) )
+        {
+            return;
+        }
+        getLog().info( String.format( "Writing file [%s]", output.getCanonicalPath() ) );
+        Files.createDirectories( target.getParent() );
+        Path tmp = Files.createTempFile( target.getParent(), "." + output.getName(), ".part" );
+        try
+        {
+            Files.delete( tmp );
+            try
+            {
+                Files.createLink( tmp, source.toPath() );
+            }
+            catch ( IOException | UnsupportedOperationException ex )
+            {
+                Files.copy( source.toPath(), tmp, StandardCopyOption.REPLACE_EXISTING );
+            }
+            moveIntoPlace( tmp, target );
+        }
+        finally
+        {
+            Files.deleteIfExists( tmp );
+        }
+    }
+
+    /**
+     * Build the request for a single invocation.
+     *
+     * A fresh builder is created for every request, since builders are not
+     * safe to share between worker threads.
+     */
+    private Invocation.Builder createBuilder( WebTarget target )
+    {
+        Invocation.Builder builder = target.request( getRequestType() ).accept( getResponseType() );
+        if ( null != getAcceptEncoding() )
+        {
+            builder = builder.header( HttpHeaders.ACCEPT_ENCODING, getAcceptEncoding() );
+        }
+        // load up the header info
+        if ( null != getHeaders() )
+        {
+            for ( String k : getHeaders().keySet() )
+            {
+                String hdr = getHeaders().get( k );
+                builder = builder.header( k, hdr );
+                getLog().debug( String.format( "Header [%s:%s]", k, hdr ) );
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * Wrap a file as the request body, gzip encoded if
+     * <code>compressRequest</code> is set.
+     */
+    private Entity<File> createEntity( File f )
+    {
+        if ( isCompressRequest() )
+        {
+            return Entity.entity( f, new Variant( getRequestType(), (Locale) null, GZIP ) );
+        }
+        return Entity.entity( f, getRequestType() );
+    }
+
+    /**
+     * Send one REST request, retrying it if it fails, and store the result.
+     *
+     * @param target
+     *            the resource to send the request to
+     * @param f
+     *            the file to upload, or <code>null</code> for a request
+     *            without a body
+     * @param outputFilename
+     *            the name of the result file in <code>outputDir</code>
+     * @return the error, or <code>null</code> on success
+     */
+    private ErrorInfo processRequest( final WebTarget target, final File f, final String outputFilename )
+    {
+        return sendWithRetry( (null == f) ? target.getUri().toString() : f.getPath(), new Attempt()
+        {
+            @Override
+            public ErrorInfo send()
+            {
+                return sendRequest( target, f, outputFilename );
+            }
+        } );
+    }
+
+    /**
+     * Send a request, retrying it while the retry policy allows.
+     *
+     * @param description
+     *            names the request in log messages
+     * @return the error of the last attempt, or <code>null</code> on success
+     */
+    private ErrorInfo sendWithRetry( String description, Attempt attempt )
+    {
+        return retry( description, attempt, null, 0 );
+    }
+
+    /**
+     * Continue sending a request until it succeeds, fails with an error that
+     * is not retried, or the circuit breaker opens.
+     *
+     * @param result
+     *            the result of the previous attempt, or <code>null</code> if
+     *            the request has not been sent yet
+     * @param retries
+     *            the number of times the request has already been retried
+     * @return the error of the last attempt, or <code>null</code> on success
+     */
+    private ErrorInfo retry( String description, Attempt attempt, ErrorInfo result, int retries )
+    {
+        ErrorInfo last = result;
+        int n = retries;
+        while ( true )
+        {
+            if ( null != last )
+            {
+                long delay = retryDelay( description, last, n );
+                if ( delay < 0 )
+                {
+                    return last;
+                }
+                n++;
+                try
+                {
+                    Thread.sleep( delay );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    return last;
+                }
+            }
+            if ( !circuitBreaker.allowRequest() )
+            {
+                return (null == last) ? circuitOpen() : last;
+            }
+            last = recordResult( attempt.send() );
+            if ( null == last )
+            {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Decide whether a failed request is sent again before the deadline.
+     *
+     * @param last
+     *            the error of the failed attempt
+     * @param retries
+     *            the number of times the request has already been retried
+     * @return the delay before the retry in milliseconds, or -1 if the
+     *         request is not retried
+     */
+    private long retryDelay( String description, ErrorInfo last, int retries )
+    {
+        // local errors, such as a full disk, would fail again
+        if ( ((last.errorCode < 0) && !last.transport) || !retryPolicy.shouldRetry( last.errorCode, retries ) )
+        {
+            return -1;
+        }
+        long delay = retryPolicy.delay( retries, last.retryAfter );
+        if ( delay >= executionDeadline.remaining( TimeUnit.MILLISECONDS ) )
+        {
+            return -1;
+        }
+        getLog().info( String.format( "Retry [%d] of [%s] in [%d] ms after%s", retries + 1, description, delay,
+                last ) );
+        return delay;
+    }
+
+    /**
+     * Count a request result towards the circuit breaker. Transport errors,
+     * 429 and 5xx responses are failures of the endpoint; any other result,
+     * including a local error, does not hold against it.
+     *
+     * @return the result
+     */
+    private ErrorInfo recordResult( ErrorInfo result )
+    {
+        if ( !isEndpointFailure( result ) )
+        {
+            circuitBreaker.recordSuccess();
+        }
+        else if ( circuitBreaker.recordFailure() )
+        {
+            getLog().warn( String.format( "Circuit breaker open after [%d] consecutive failures, pausing requests "
+                    + "for [%d] ms", getCircuitBreakerThreshold(), getCircuitBreakerCooldown() ) );
+        }
+        return result;
+    }
+
+    private boolean isEndpointFailure( ErrorInfo result )
+    {
+        return (null != result) && (result.transport || (result.errorCode >= 500) || (result.errorCode == 429));
+    }
+
+    /**
+     * A request that failed without a response, such as a refused or reset
+     * connection. Unlike local errors, for example an output file that cannot
+     * be written, it may be retried and counts against the endpoint.
+     */
+    private ErrorInfo transportError( Throwable ex )
+    {
+        return new ErrorInfo( -1, String.format( "%s: [%s]", ex.getClass().getSimpleName(), ex.getMessage() ), null,
+                true );
+    }
+
+    private WebTarget targetOf( RequestLimits.Lease lease, WebTarget target )
+    {
+        return (null == lease.getEndpoint()) ? target : targets.get( lease.getEndpoint() );
+    }
+
+    private ErrorInfo circuitOpen()
+    {
+        return new ErrorInfo( "Circuit breaker open, request not sent" );
+    }
+
+    private ErrorInfo interrupted()
+    {
+        return new ErrorInfo( "Interrupted before the request was sent" );
+    }
+
+    /**
+     * Send one REST request and store the result, without retries.
+     *
+     * @return the error, or <code>null</code> on success
+     */
+    private ErrorInfo sendRequest( WebTarget target, File f, String outputFilename )
+    {
+        RequestLimits.Lease lease;
+        try
+        {
+            lease = limits.acquire( (null == f) ? 0 : f.length() );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return interrupted();
+        }
+        int status = -1;
+        ErrorInfo result = null;
+        try
+        {
+            Invocation.Builder builder = createBuilder( targetOf( lease, target ) );
+            ResponseValidators validators = null;
+            if ( (null == f) && isConditionalGet() && "GET".equalsIgnoreCase( getMethod() ) )
+            {
+                validators = createValidators( outputFilename );
+                builder = addValidators( builder, validators );
+            }
+            Response response = (null == f) ? builder.method( getMethod() )
+                    : builder.method( getMethod(), createEntity( f ) );
+            lease.responded();
+            status = response.getStatus();
+            if ( (null != validators) && (status == Response.Status.NOT_MODIFIED.getStatusCode()) )
+            {
+                response.close();
+                getLog().info( String.format( "Not modified, keeping file [%s]", outputFilename ) );
+            }
+            else
+            {
+                result = processResponse( response, outputFilename );
+                if ( (null != validators) && (null == result) )
+                {
+                    saveValidators( validators, response );
+                }
+            }
+        }
+        catch ( ProcessingException ex )
+        {
+            getLog().debug( String.format( "ProcessingException: [%s]", ex.toString() ) );
+            result = transportError( ex );
+        }
+        finally
+        {
+            long elapsed = System.nanoTime() - lease.getStart();
+            long rtt = lease.getRtt();
+            recordSample( (null == f) ? String.valueOf( target.getUri() ) : f.getPath(), lease.getQueue(),
+                    (status < 0) ? elapsed : rtt, (status < 0) ? 0 : elapsed - rtt, status,
+                    (null == f) ? 0 : f.length(), (null == result) ? outputFilename : null );
+            lease.close( isEndpointFailure( result ) );
+        }
+        return result;
+    }
+
+    /**
+     * Download the result of a GET request as byte ranges fetched in
+     * parallel, resuming the ranges of an earlier download that failed. The
+     * resource is downloaded with a single request if it is too small or the
+     * service does not support ranges.
+     *
+     * @return the error, or <code>null</code> on success
+     */
+    private ErrorInfo processRangedRequest( final WebTarget target, String outputFilename )
+        throws MojoExecutionException
+    {
+        File of = new File( getOutputDir(), outputFilename );
+        ResponseValidators validators = isConditionalGet() ? createValidators( outputFilename ) : null;
+        Response head = null;
+        RequestLimits.Lease lease;
+        try
+        {
+            lease = limits.acquire( 0 );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return interrupted();
+        }
+        ErrorInfo probe = null;
+        try
+        {
+            Invocation.Builder builder = createBuilder( targetOf( lease, target ) );
+            head = (null == validators) ? builder.head() : addValidators( builder, validators ).head();
+            lease.responded();
+            head.close();
+            if ( head.getStatusInfo().getFamily() == Family.SERVER_ERROR )
+            {
+                probe = new ErrorInfo( head.getStatus(), "HEAD request failed" );
+            }
+        }
+        catch ( ProcessingException ex )
+        {
+            getLog().debug( String.format( "HEAD request failed: [%s]", ex.toString() ) );
+            probe = transportError( ex );
+        }
+        finally
+        {
+            lease.close( isEndpointFailure( probe ) );
+        }
+        if ( null == head )
+        {
+            return processRequest( target, null, outputFilename );
+        }
+        if ( (null != validators) && (head.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode()) )
+        {
+            getLog().info( String.format( "Not modified, keeping file [%s]", outputFilename ) );
+            return null;
+        }
+        long length = head.getLength();
+        if ( (head.getStatusInfo().getFamily() != Family.SUCCESSFUL)
+                || !"bytes".equalsIgnoreCase( head.getHeaderString( "Accept-Ranges" ) )
+                || (length < 2 * getDownloadRangeSize()) || (null != getAcceptEncoding()) )
+        {
+            getLog().debug( String.format( "Downloading [%s] with a single request, length [%d], Accept-Ranges [%s]",
+                    outputFilename, length, head.getHeaderString( "Accept-Ranges" ) ) );
+            return processRequest( target, null, outputFilename );
+        }
+
+        // a weak ETag does not identify the bytes, If-Range needs a strong one
+        String etag = head.getHeaderString( HttpHeaders.ETAG );
+        final String validator = ((null != etag) && !etag.startsWith( "W/" )) ? etag
+                : head.getHeaderString( HttpHeaders.LAST_MODIFIED );
+        final RangedDownload download;
+        List<Integer> missing;
+        try
+        {
+            download = new RangedDownload( of, length, getDownloadRangeSize(), validator );
+            missing = download.open();
+        }
+        catch ( IOException | IllegalArgumentException ex )
+        {
+            return new ErrorInfo( String.format( "IOException: [%s]", ex.getMessage() ) );
+        }
+        getLog().info( String.format( "%s [%s], [%d] of [%d] ranges of [%d] bytes",
+                (missing.size() < download.getRangeCount()) ? "Resuming download of" : "Downloading",
+                of, missing.size(), download.getRangeCount(), getDownloadRangeSize() ) );
+
+        final List<ErrorInfo> errors = Collections.synchronizedList( new ArrayList<ErrorInfo>() );
+        final AtomicReference<ErrorInfo> changed = new AtomicReference<>();
+        RequestDispatcher dispatcher = new RequestDispatcher( getDownloadRanges() );
+        try
+        {
+            for ( final Integer range : missing )
+            {
+                dispatcher.submit( new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        if ( executionDeadline.isExpired() || !errors.isEmpty() )
+                        {
+                            return;
+                        }
+                        String description = String.format( "%s bytes %d-%d", target.getUri(),
+                                download.getStart( range ), download.getEnd( range ) );
+                        ErrorInfo result;
+                        try
+                        {
+                            result = sendWithRetry( description, new Attempt()
+                            {
+                                @Override
+                                public ErrorInfo send()
+                                {
+                                    return sendRange( target, download, range, validator, changed );
+                                }
+                            } );
+                        }
+                        catch ( RuntimeException ex )
+                        {
+                            result = unexpected( ex );
+                        }
+                        if ( null != result )
+                        {
+                            errors.add( result );
+                        }
+                    }
+                } );
+            }
+        }
+        finally
+        {
+            awaitRequests( dispatcher );
+        }
+
+        try
+        {
+            if ( null != changed.get() )
+            {
+                // the ranges fetched so far belong to the old version, or are not the ones requested
+                download.discard();
+                getLog().info( String.format( "Downloading [%s] again with a single request: [%s]", of,
+                        changed.get().message ) );
+                return processRequest( target, null, outputFilename );
+            }
+            if ( !errors.isEmpty() || !download.isComplete() )
+            {
+                download.close();
+                return errors.isEmpty() ? new ErrorInfo( "Download incomplete" ) : errors.get( 0 );
+            }
+            download.finish();
+        }
+        catch ( IOException ex )
+        {
+            return new ErrorInfo( String.format( "IOException: [%s]", ex.getMessage() ) );
+        }
+        getLog().info( String.format( "Writing file [%s]", of ) );
+        if ( null != buildContext )
+        {
+            buildContext.refresh( of );
+        }
+        if ( null != validators )
+        {
+            saveValidators( validators, head );
+        }
+        return null;
+    }
+
+    private Pagination createPagination() throws MojoExecutionException
+    {
+        if ( (null == getPagination()) || Pagination.OFF.equalsIgnoreCase( getPagination().trim() ) )
+        {
+            return null;
+        }
+        try
+        {
+            return new Pagination( getPagination(), getPageCursorField(), getPageCursorParameter() );
+        }
+        catch ( IllegalArgumentException ex )
+        {
+            throw new MojoExecutionException( ex.getMessage(), ex );
+        }
+    }
+
+    /**
+     * Download the pages of a paginated GET request. Every page is written as
+     * it arrives, and the next page is requested as soon as its link is
+     * known. The concatenated output is moved into place only once all the
+     * pages were written. A page that was already downloaded fails the
+     * request, as the pages would be read forever.
+     *
+     * @return the error, or <code>null</code> on success
+     */
+    private ErrorInfo processPages( final WebTarget target, final Pagination pages, String outputFilename )
+    {
+        File of = new File( getOutputDir(), outputFilename );
+        final AtomicReference<Prefetch> prefetched = new AtomicReference<>();
+        final AtomicReference<URI> next = new AtomicReference<>();
+        Set<URI> visited = new HashSet<>();
+        Path tmp = null;
+        FileChannel out = null;
+        int count = 0;
+        try
+        {
+            if ( !isPageFiles() )
+            {
+                getLog().info( String.format( "Writing file [%s]", of.getCanonicalPath() ) );
+                Path path = of.getAbsoluteFile().toPath();
+                Files.createDirectories( path.getParent() );
+                tmp = Files.createTempFile( path.getParent(), "." + of.getName(), ".part" );
+                out = FileChannel.open( tmp, StandardOpenOption.WRITE );
+            }
+            for ( URI uri = target.getUri(); null != uri; uri = next.get() )
+            {
+                if ( !visited.add( uri ) )
+                {
+                    return new ErrorInfo( String.format( "Page [%d] links back to an earlier page [%s]", count, uri ) );
+                }
+                count++;
+                final URI current = uri;
+                final File pageFile = isPageFiles()
+                        ? new File( getOutputDir(), Pagination.pageFilename( outputFilename, count ) ) : null;
+                final FileChannel channel = out;
+                final long position = (null == out) ? 0 : out.size();
+                ErrorInfo result = sendWithRetry( String.format( "%s page %d", current, count ), new Attempt()
+                {
+                    @Override
+                    public ErrorInfo send()
+                    {
+                        return sendPage( target, current, pages, pageFile, channel, position, next, prefetched );
+                    }
+                } );
+                if ( null != result )
+                {
+                    return result;
+                }
+            }
+            if ( null != out )
+            {
+                out.close();
+                moveIntoPlace( tmp, of.getAbsoluteFile().toPath() );
+                if ( null != buildContext )
+                {
+                    buildContext.refresh( of );
+                }
+            }
+            else
+            {
+                deleteStalePages( outputFilename, count + 1 );
+            }
+            getLog().info( String.format( "Read [%d] pages of [%s]", count, target.getUri() ) );
+            return null;
         }
-
         catch ( IOException ex )
         {
-            getLog().error( String.format( "IOException: [%s]", ex.toString() ) );
-            throw new MojoExecutionException(
-                    String.format( "Unable to create destination dir [%s]: [%s]", outputDir.toString(),
-                            ex.toString() ) );
+            getLog().debug( String.format( "IOException: [%s]", ex.toString() ) );
+            return new ErrorInfo( String.format( "IOException: [%s]", ex.getMessage() ) );
+        }
+        finally
+        {
+            discardPrefetch( prefetched );
+            IOUtils.closeQuietly( out );
+            if ( null != tmp )
+            {
+                try
+                {
+                    Files.deleteIfExists( tmp );
+                }
+                catch ( IOException ex )
+                {
+                    getLog().debug( String.format( "Unable to delete [%s]: [%s]", tmp, ex.toString() ) );
+                }
+            }
         }
-        return true;
     }
 
-    @Override
-    public void execute() throws MojoExecutionException
+    /**
+     * A page requested ahead of its turn. It holds its endpoint and its slot
+     * of the adaptive concurrency limit until it is used or discarded.
+     */
+    private static final class Prefetch
     {
-        validateOutputDir();
-        getLog().info( String.format( "Output dir [%s]", getOutputDir().toString() ) );
+        private final Future<Response> future;
 
-        Client client = ClientBuilder.newClient();
+        private final RequestLimits.Lease lease;
 
-        WebTarget baseTarget = client.target( getEndpoint() );
-        if ( null != getResource() )
+        private Prefetch( Future<Response> future, RequestLimits.Lease lease )
         {
-            getLog().debug( String.format( "Setting resource [%s]", getResource() ) );
-            baseTarget = baseTarget.path( getResource() );
+            this.future = future;
+            this.lease = lease;
         }
-        // Load up the query parameters if they exist
-        if ( null != getQueryParams() )
+    }
+
+    /**
+     * Fetch one page, using the prefetched response if there is one, and
+     * write it either at <code>position</code> of the concatenated output or
+     * to its own file. The next page is prefetched as soon as it is known.
+     * Like any other request, a page waits for the rate limits and a slot of
+     * the adaptive concurrency limit, and goes to the endpoint chosen by the
+     * balancer. The slot is released once the response arrived, so the next
+     * page can be requested while this one is written.
+     *
+     * @param next
+     *            set to the URI of the next page, or <code>null</code> after
+     *            the last page
+     * @return the error, or <code>null</code> on success
+     */
+    private ErrorInfo sendPage( WebTarget target, URI uri, Pagination pages, File pageFile, FileChannel out,
+            long position, final AtomicReference<URI> next, final AtomicReference<Prefetch> prefetched )
+    {
+        next.set( null );
+        Prefetch prefetch = prefetched.getAndSet( null );
+        RequestLimits.Lease lease = null;
+        long start = System.nanoTime();
+        int status = -1;
+        long bytes = 0;
+        ErrorInfo result = null;
+        try
         {
-            for ( String k : getQueryParams().keySet() )
+            Response response;
+            if ( null == prefetch )
             {
-                String param = getQueryParams().get( k );
-                baseTarget = baseTarget.queryParam( k, param );
-                getLog().debug( String.format( "Param [%s:%s]", k, param ) );
+                lease = limits.acquire( 0 );
+                start = lease.getStart();
+                response = createBuilder( pageTarget( target, lease, uri ) ).get();
+            }
+            else
+            {
+                lease = prefetch.lease;
+                start = lease.getStart();
+                try
+                {
+                    response = prefetch.future.get();
+                }
+                catch ( ExecutionException ex )
+                {
+                    throw new ProcessingException( ex.getCause().getMessage(), ex.getCause() );
+                }
+                finally
+                {
+                    pending.remove( prefetch.future );
+                }
+            }
+            lease.responded();
+            status = response.getStatus();
+            if ( response.getStatusInfo().getFamily() != Family.SUCCESSFUL )
+            {
+                result = errorResponse( response );
+            }
+            lease.releaseSlot( isEndpointFailure( result ) );
+            if ( null == result )
+            {
+                URI link = pages.nextLink( response, uri );
+                if ( null != link )
+                {
+                    next.set( link );
+                    prefetch( target, link, prefetched );
+                }
+                InputStream in = response.readEntity( InputStream.class );
+                try
+                {
+                    bytes = writePage( in, target, uri, pages, pageFile, out, position, next, prefetched );
+                }
+                finally
+                {
+                    IOUtils.closeQuietly( in );
+                }
+            }
+        }
+        catch ( ProcessingException ex )
+        {
+            getLog().debug( String.format( "ProcessingException: [%s]", ex.toString() ) );
+            result = transportError( ex );
+        }
+        catch ( IOException ex )
+        {
+            getLog().debug( String.format( "IOException: [%s]", ex.toString() ) );
+            result = new ErrorInfo( String.format( "IOException: [%s]", ex.getMessage() ) );
+        }
+        catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+            result = interrupted();
+        }
+        finally
+        {
+            long rtt = 0;
+            if ( null != lease )
+            {
+                rtt = lease.getRtt();
+                lease.close( isEndpointFailure( result ) );
+            }
+            if ( null != result )
+            {
+                // the page is sent again, and finds its own next page
+                discardPrefetch( prefetched );
+                next.set( null );
+            }
+            if ( null != requestMetrics )
+            {
+                long elapsed = System.nanoTime() - start;
+                requestMetrics.record( new RequestMetrics.Sample( uri.toString() )
+                        .response( (status < 0) ? elapsed : rtt, status ).transfer( (status < 0) ? 0 : elapsed - rtt )
+                        .bytes( 0, bytes ) );
             }
         }
+        return result;
+    }
 
-        Invocation.Builder builder = baseTarget.request( getRequestType() ).accept( getResponseType() );
-        // load up the header info
-        if ( null != getHeaders() )
+    /**
+     * Target a page at the endpoint chosen by the balancer. The pages are
+     * identified by their URI at the first endpoint, and a page below it is
+     * moved below the chosen endpoint; links elsewhere are followed as they
+     * are.
+     */
+    private WebTarget pageTarget( WebTarget target, RequestLimits.Lease lease, URI uri )
+    {
+        WebTarget routed = targetOf( lease, target );
+        String page = uri.toString();
+        String base = UriBuilder.fromUri( target.getUri() ).replaceQuery( null ).build().toString();
+        if ( (routed != target) && page.startsWith( base ) )
         {
-            for ( String k : getHeaders().keySet() )
+            String moved = UriBuilder.fromUri( routed.getUri() ).replaceQuery( null ).build().toString();
+            return client.target( URI.create( moved + page.substring( base.length() ) ) );
+        }
+        return client.target( uri );
+    }
+
+    /**
+     * Write the body of a page, replacing what an earlier attempt at the
+     * same page wrote.
+     *
+     * @return the number of bytes written
+     */
+    private long writePage( InputStream in, final WebTarget target, URI uri, Pagination pages, File pageFile,
+            FileChannel out, long position, final AtomicReference<URI> next,
+            final AtomicReference<Prefetch> prefetched )
+        throws IOException
+    {
+        Pagination.Listener listener = new Pagination.Listener()
+        {
+            @Override
+            public void next( URI link )
             {
-                String hdr = getHeaders().get( k );
-                builder = builder.header( k, hdr );
-                getLog().debug( String.format( "Header [%s:%s]", k, hdr ) );
+                next.set( link );
+                prefetch( target, link, prefetched );
+            }
+        };
+        if ( null != out )
+        {
+            out.truncate( position );
+            out.position( position );
+            pages.copy( in, Channels.newOutputStream( out ), uri, getBufferSize(), listener );
+            return out.size() - position;
+        }
+        getLog().info( String.format( "Writing file [%s]", pageFile.getCanonicalPath() ) );
+        Path path = pageFile.getAbsoluteFile().toPath();
+        Files.createDirectories( path.getParent() );
+        Path tmp = Files.createTempFile( path.getParent(), "." + pageFile.getName(), ".part" );
+        try
+        {
+            try ( OutputStream page = Files.newOutputStream( tmp ) )
+            {
+                pages.copy( in, page, uri, getBufferSize(), listener );
             }
+            moveIntoPlace( tmp, path );
+        }
+        finally
+        {
+            Files.deleteIfExists( tmp );
+        }
+        if ( null != buildContext )
+        {
+            buildContext.refresh( pageFile );
         }
-        getLog().info( String.format( "Endpoint: [%s %s]", getMethod(), baseTarget.getUri() ) );
+        return pageFile.length();
+    }
 
-        List<ErrorInfo> errorFiles = new ArrayList<>();
-        List<File> files = getFilesToProcess();
-        if ( (null == files) || (files.size() <= 0) )
+    /**
+     * Request the next page without waiting for the response. The request
+     * waits for the rate limits and a slot of the adaptive concurrency limit
+     * like any other.
+     */
+    private void prefetch( WebTarget target, URI uri, AtomicReference<Prefetch> prefetched )
+    {
+        RequestLimits.Lease lease;
+        try
         {
-            if ( !getMethod().equalsIgnoreCase( "GET" ) )
+            lease = limits.acquire( 0 );
+        }
+        catch ( InterruptedException ex )
+        {
+            // the page is requested again when it is its turn
+            Thread.currentThread().interrupt();
+            return;
+        }
+        getLog().debug( String.format( "Prefetching [%s]", uri ) );
+        Future<Response> future;
+        try
+        {
+            future = createBuilder( pageTarget( target, lease, uri ) ).async().get();
+        }
+        catch ( IllegalStateException | ProcessingException ex )
+        {
+            getLog().debug( String.format( "Unable to prefetch [%s]: [%s]", uri, ex.toString() ) );
+            lease.close( false );
+            return;
+        }
+        pending.add( future );
+        discard( prefetched.getAndSet( new Prefetch( future, lease ) ) );
+    }
+
+    private void discardPrefetch( AtomicReference<Prefetch> prefetched )
+    {
+        discard( prefetched.getAndSet( null ) );
+    }
+
+    /**
+     * Cancel a prefetched page that is not used, release its connection if
+     * the response already arrived, and give back its slot and endpoint.
+     */
+    private void discard( Prefetch prefetch )
+    {
+        if ( null == prefetch )
+        {
+            return;
+        }
+        Future<Response> future = prefetch.future;
+        pending.remove( future );
+        try
+        {
+            if ( !future.cancel( true ) && !future.isCancelled() )
+            {
+                future.get().close();
+            }
+        }
+        catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch ( ExecutionException | ProcessingException ex )
+        {
+            getLog().debug( String.format( "Prefetched page failed: [%s]", ex.toString() ) );
+        }
+        finally
+        {
+            prefetch.lease.close( false );
+        }
+    }
+
+    /**
+     * Delete the numbered page files left by an earlier download with more
+     * pages.
+     */
+    private void deleteStalePages( String outputFilename, int first ) throws IOException
+    {
+        for ( int page = first;; page++ )
+        {
+            File stale = new File( getOutputDir(), Pagination.pageFilename( outputFilename, page ) );
+            if ( !stale.isFile() )
             {
-                getLog().info( "No files to process" );
                 return;
             }
-            else
+            getLog().debug( String.format( "Deleting stale page [%s]", stale ) );
+            Files.delete( stale.toPath() );
+        }
+    }
+
+    /**
+     * Fetch one range of a ranged download and write it in place.
+     *
+     * @param changed
+     *            set if the service sent the whole resource, or another
+     *            range, instead of the range requested
+     * @return the error, or <code>null</code> on success
+     */
+    private ErrorInfo sendRange( WebTarget target, RangedDownload download, int range, String validator,
+            AtomicReference<ErrorInfo> changed )
+    {
+        long size = download.getEnd( range ) - download.getStart( range ) + 1;
+        RequestLimits.Lease lease;
+        try
+        {
+            lease = limits.acquire( size );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return interrupted();
+        }
+        Invocation.Builder builder = createBuilder( targetOf( lease, target ) ).header( "Range",
+                String.format( "bytes=%d-%d", download.getStart( range ), download.getEnd( range ) ) );
+        if ( null != validator )
+        {
+            builder = builder.header( "If-Range", validator );
+        }
+        int status = -1;
+        ErrorInfo result = null;
+        try
+        {
+            Response response = builder.get();
+            lease.responded();
+            status = response.getStatus();
+            if ( (status == Response.Status.PARTIAL_CONTENT.getStatusCode())
+                    && isSameResource( response, validator ) )
             {
-                getLog().debug( "GET request" );
-                ErrorInfo result = processResponse( builder.method( getMethod() ),
-                        remapFilename( getOutputFilename().getName() ) );
-                if ( result != null )
+                String contentRange = response.getHeaderString( "Content-Range" );
+                if ( download.isContentRange( range, contentRange ) )
                 {
-                    errorFiles.add( result );
+                    download.write( range, response.readEntity( InputStream.class ), getBufferSize() );
+                    download.completed( range );
+                }
+                else
+                {
+                    response.close();
+                    result = new ErrorInfo( status, String.format( "Content-Range [%s] instead of bytes %d-%d/%d",
+                            contentRange, download.getStart( range ), download.getEnd( range ),
+                            download.getLength() ) );
+                    changed.compareAndSet( null, result );
                 }
             }
+            else if ( response.getStatusInfo().getFamily() == Family.SUCCESSFUL )
+            {
+                response.close();
+                result = new ErrorInfo( status, "The resource changed during the download" );
+                changed.compareAndSet( null, result );
+            }
+            else
+            {
+                result = errorResponse( response );
+            }
         }
-
-        for ( File f : files )
+        catch ( ProcessingException ex )
         {
-            getLog().debug( String.format( "Submitting file [%s]", f.toString() ) );
-            ErrorInfo result = processResponse( builder.method( getMethod(), Entity.entity( f, getRequestType() ) ),
-                    remapFilename( f.getName() ) );
-            if ( result != null )
+            getLog().debug( String.format( "ProcessingException: [%s]", ex.toString() ) );
+            result = transportError( ex );
+        }
+        catch ( IOException ex )
+        {
+            getLog().debug( String.format( "IOException: [%s]", ex.toString() ) );
+            result = new ErrorInfo( String.format( "IOException: [%s]", ex.getMessage() ) );
+        }
+        finally
+        {
+            lease.close( isEndpointFailure( result ) );
+            if ( null != requestMetrics )
             {
-                errorFiles.add( new FileErrorInfo( f.getPath(), result ) );
+                long elapsed = System.nanoTime() - lease.getStart();
+                long rtt = lease.getRtt();
+                requestMetrics.record( new RequestMetrics.Sample( String.format( "%s bytes %d-%d", target.getUri(),
+                        download.getStart( range ), download.getEnd( range ) ) ).queue( lease.getQueue() )
+                        .response( (status < 0) ? elapsed : rtt, status )
+                        .transfer( (status < 0) ? 0 : elapsed - rtt ).bytes( 0, (null == result) ? size : 0 ) );
             }
         }
+        return result;
+    }
 
-        if ( errorFiles.size() > 0 )
+    /**
+     * Check that a range belongs to the version of the resource being
+     * downloaded, for services that ignore <code>If-Range</code>.
+     */
+    private boolean isSameResource( Response response, String validator )
+    {
+        String etag = response.getHeaderString( HttpHeaders.ETAG );
+        return (null == validator) || (null == etag) || !validator.startsWith( "\"" ) || validator.equals( etag );
+    }
+
+    /**
+     * The validators of an output file are kept with the other state of the
+     * execution, so the output directory only holds the responses.
+     */
+    private ResponseValidators createValidators( String outputFilename )
+    {
+        File file = new File( getTarget(),
+                "rest-validators/" + getExecutionId() + "/" + outputFilename + ".validators" );
+        return new ResponseValidators( file, new File( getOutputDir(), outputFilename ), configFingerprint );
+    }
+
+    /**
+     * Make a GET request conditional on the validators of the previous
+     * download.
+     */
+    private Invocation.Builder addValidators( Invocation.Builder builder, ResponseValidators validators )
+    {
+        Map<String, String> headers;
+        try
         {
-            throw new MojoExecutionException(
-                    String.format( "Unable to process files:\n%s", wrap( "  ", "\n", errorFiles ) ) );
+            headers = validators.getRequestHeaders();
+        }
+        catch ( IOException ex )
+        {
+            getLog().warn( String.format( "Unable to read [%s]: [%s]", validators.getFile(), ex.toString() ) );
+            return builder;
+        }
+        for ( Map.Entry<String, String> header : headers.entrySet() )
+        {
+            getLog().debug( String.format( "Header [%s:%s]", header.getKey(), header.getValue() ) );
+            builder = builder.header( header.getKey(), header.getValue() );
+        }
+        return builder;
+    }
+
+    private void saveValidators( ResponseValidators validators, Response response )
+    {
+        try
+        {
+            validators.save( response );
+        }
+        catch ( IOException ex )
+        {
+            getLog().warn( String.format( "Unable to write [%s]: [%s]", validators.getFile(), ex.toString() ) );
+        }
+    }
+
+    /**
+     * Remember how long a request waited for a worker thread.
+     */
+    private void queued( String request, long submitted )
+    {
+        if ( null != requestMetrics )
+        {
+            requestMetrics.queued( request, System.nanoTime() - submitted );
+        }
+    }
+
+    /**
+     * Record the metrics of one request.
+     *
+     * @param ttfb
+     *            nanoseconds until the response headers were received
+     * @param transfer
+     *            nanoseconds spent writing the response body
+     * @param output
+     *            the output file name, or <code>null</code> if nothing was
+     *            written
+     */
+    private void recordSample( String request, long queue, long ttfb, long transfer, int status, long requestBytes,
+            String output )
+    {
+        if ( null != requestMetrics )
+        {
+            long responseBytes = (null == output) ? 0 : new File( getOutputDir(), output ).length();
+            requestMetrics.record( new RequestMetrics.Sample( request ).queue( queue ).response( ttfb, status )
+                    .transfer( transfer ).bytes( requestBytes, responseBytes ) );
+        }
+    }
+
+    private void recordBatchSample( List<FileRequest> batch, List<ErrorInfo> results, RequestLimits.Lease lease,
+            int status, long requestBytes, ErrorInfo error )
+    {
+        if ( null != requestMetrics )
+        {
+            long elapsed = System.nanoTime() - lease.getStart();
+            long rtt = lease.getRtt();
+            long responseBytes = 0;
+            for ( int i = 0; (null == error) && (i < batch.size()); i++ )
+            {
+                if ( null == results.get( i ) )
+                {
+                    responseBytes += new File( getOutputDir(), batch.get( i ).getOutputFilename() ).length();
+                }
+            }
+            requestMetrics.record( new RequestMetrics.Sample( describe( batch ) ).queue( lease.getQueue() )
+                    .response( (status < 0) ? elapsed : rtt, status ).transfer( (status < 0) ? 0 : elapsed - rtt )
+                    .bytes( requestBytes, responseBytes ) );
         }
     }
 
+    private static String describe( List<FileRequest> batch )
+    {
+        return String.format( "%s (batch of %d)", batch.get( 0 ).getInput().getPath(), batch.size() );
+    }
+
     private ErrorInfo processResponse( Response response, String outputFilename )
     {
         if ( response.getStatusInfo().getFamily() == Family.SUCCESSFUL )
@@ -672,21 +3915,50 @@ public class Plugin extends AbstractMojo
             {
                 File of = new File( getOutputDir(), outputFilename );
                 pipeToFile( in, of );
+                if ( null != buildContext )
+                {
+                    buildContext.refresh( of );
+                }
             }
             catch ( IOException ex )
             {
                 getLog().debug( String.format( "IOException: [%s]", ex.toString() ) );
                 return new ErrorInfo( String.format( "IOException: [%s]", ex.getMessage() ) );
             }
-
+
+        }
+        else
+        {
+            return errorResponse( response );
+        }
+        return null;
+    }
+
+    /**
+     * Turn an unsuccessful response into an error, and release its
+     * connection.
+     */
+    private ErrorInfo errorResponse( Response response )
+    {
+        getLog().warn( String.format( "Error code: [%d]", response.getStatus() ) );
+        String message = response.getStatusInfo().getReasonPhrase();
+        try
+        {
+            if ( response.hasEntity() )
+            {
+                message = response.readEntity( String.class );
+            }
         }
-        else
+        catch ( ProcessingException | IllegalStateException ex )
         {
-            getLog().warn( String.format( "Error code: [%d]", response.getStatus() ) );
-            getLog().debug( response.getEntity().toString() );
-            return new ErrorInfo( response.getStatus(), response.getEntity().toString() );
+            getLog().debug( String.format( "Unable to read error response: [%s]", ex.toString() ) );
         }
-        return null;
+        finally
+        {
+            response.close();
+        }
+        getLog().debug( String.valueOf( message ) );
+        return new ErrorInfo( response.getStatus(), message, response.getHeaderString( "Retry-After" ) );
     }
 
     /**
@@ -697,6 +3969,30 @@ public class Plugin extends AbstractMojo
         return endpoint;
     }
 
+    /**
+     * @return the endpoints
+     */
+    public List<URI> getEndpoints()
+    {
+        return endpoints;
+    }
+
+    /**
+     * @return the endpointFailureThreshold
+     */
+    public int getEndpointFailureThreshold()
+    {
+        return endpointFailureThreshold;
+    }
+
+    /**
+     * @return the endpointProbeInterval
+     */
+    public long getEndpointProbeInterval()
+    {
+        return endpointProbeInterval;
+    }
+
     /**
      * @return the resource
      */
@@ -809,6 +4105,382 @@ public class Plugin extends AbstractMojo
         return projectHelper;
     }
 
+    /**
+     * @return the concurrency
+     */
+    public int getConcurrency()
+    {
+        return concurrency;
+    }
+
+    /**
+     * @return the async
+     */
+    public boolean isAsync()
+    {
+        return async;
+    }
+
+    /**
+     * @return the maxInFlight
+     */
+    public int getMaxInFlight()
+    {
+        return maxInFlight;
+    }
+
+    /**
+     * @return the bufferSize
+     */
+    public int getBufferSize()
+    {
+        return bufferSize;
+    }
+
+    /**
+     * @return the connector
+     */
+    public String getConnector()
+    {
+        return connector;
+    }
+
+    /**
+     * @return the maxConnections
+     */
+    public int getMaxConnections()
+    {
+        return maxConnections;
+    }
+
+    /**
+     * @return the maxConnectionsPerRoute
+     */
+    public int getMaxConnectionsPerRoute()
+    {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * @return the connectionIdleTimeout
+     */
+    public long getConnectionIdleTimeout()
+    {
+        return connectionIdleTimeout;
+    }
+
+    /**
+     * @return the shareClient
+     */
+    public boolean isShareClient()
+    {
+        return shareClient;
+    }
+
+    /**
+     * @return the incremental
+     */
+    public boolean isIncremental()
+    {
+        return incremental;
+    }
+
+    /**
+     * @return the cache
+     */
+    public boolean isCache()
+    {
+        return cache;
+    }
+
+    /**
+     * @return the cacheDir
+     */
+    public File getCacheDir()
+    {
+        return cacheDir;
+    }
+
+    /**
+     * @return the cacheMaxSize
+     */
+    public long getCacheMaxSize()
+    {
+        return cacheMaxSize;
+    }
+
+    /**
+     * @return the requestBufferingMode
+     */
+    public String getRequestBufferingMode()
+    {
+        return requestBufferingMode;
+    }
+
+    /**
+     * @return the chunkSize
+     */
+    public int getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    /**
+     * @return the compressRequest
+     */
+    public boolean isCompressRequest()
+    {
+        return compressRequest;
+    }
+
+    /**
+     * @return the acceptEncoding
+     */
+    public String getAcceptEncoding()
+    {
+        return acceptEncoding;
+    }
+
+    /**
+     * @return <code>true</code> if files are sent in multipart batches
+     */
+    public boolean isBatching()
+    {
+        return (getBatchSize() > 1) || (getBatchBytes() > 0);
+    }
+
+    /**
+     * @return the batchSize
+     */
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    /**
+     * @return the batchBytes
+     */
+    public long getBatchBytes()
+    {
+        return batchBytes;
+    }
+
+    /**
+     * @return the batchPartName
+     */
+    public String getBatchPartName()
+    {
+        return batchPartName;
+    }
+
+    /**
+     * @return the maxRetries
+     */
+    public int getMaxRetries()
+    {
+        return maxRetries;
+    }
+
+    /**
+     * @return the retryStatuses
+     */
+    public String getRetryStatuses()
+    {
+        return retryStatuses;
+    }
+
+    /**
+     * @return the retryOnIOException
+     */
+    public boolean isRetryOnIOException()
+    {
+        return retryOnIOException;
+    }
+
+    /**
+     * @return the retryInitialDelay
+     */
+    public long getRetryInitialDelay()
+    {
+        return retryInitialDelay;
+    }
+
+    /**
+     * @return the retryMaxDelay
+     */
+    public long getRetryMaxDelay()
+    {
+        return retryMaxDelay;
+    }
+
+    /**
+     * @return the retryBudget
+     */
+    public int getRetryBudget()
+    {
+        return retryBudget;
+    }
+
+    /**
+     * @return the circuitBreakerThreshold
+     */
+    public int getCircuitBreakerThreshold()
+    {
+        return circuitBreakerThreshold;
+    }
+
+    /**
+     * @return the circuitBreakerCooldown
+     */
+    public long getCircuitBreakerCooldown()
+    {
+        return circuitBreakerCooldown;
+    }
+
+    /**
+     * @return the maxRequestsPerSecond
+     */
+    public double getMaxRequestsPerSecond()
+    {
+        return maxRequestsPerSecond;
+    }
+
+    /**
+     * @return the maxBytesPerSecond
+     */
+    public long getMaxBytesPerSecond()
+    {
+        return maxBytesPerSecond;
+    }
+
+    /**
+     * @return the adaptiveConcurrency
+     */
+    public boolean isAdaptiveConcurrency()
+    {
+        return adaptiveConcurrency;
+    }
+
+    /**
+     * @return the connectTimeout
+     */
+    public int getConnectTimeout()
+    {
+        return connectTimeout;
+    }
+
+    /**
+     * @return the readTimeout
+     */
+    public int getReadTimeout()
+    {
+        return readTimeout;
+    }
+
+    /**
+     * @return the deadline
+     */
+    public long getDeadline()
+    {
+        return deadline;
+    }
+
+    /**
+     * @return the metrics
+     */
+    public boolean isMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * @return the replayMode
+     */
+    public String getReplayMode()
+    {
+        return replayMode;
+    }
+
+    /**
+     * @return the replayArchive
+     */
+    public File getReplayArchive()
+    {
+        return replayArchive;
+    }
+
+    /**
+     * @return the deduplicate
+     */
+    public boolean isDeduplicate()
+    {
+        return deduplicate;
+    }
+
+    /**
+     * @return the conditionalGet
+     */
+    public boolean isConditionalGet()
+    {
+        return conditionalGet;
+    }
+
+    /**
+     * @return the downloadRanges
+     */
+    public int getDownloadRanges()
+    {
+        return downloadRanges;
+    }
+
+    /**
+     * @return the downloadRangeSize
+     */
+    public long getDownloadRangeSize()
+    {
+        return downloadRangeSize;
+    }
+
+    /**
+     * @return the pagination
+     */
+    public String getPagination()
+    {
+        return pagination;
+    }
+
+    /**
+     * @return the pageCursorField
+     */
+    public String getPageCursorField()
+    {
+        return pageCursorField;
+    }
+
+    /**
+     * @return the pageCursorParameter
+     */
+    public String getPageCursorParameter()
+    {
+        return pageCursorParameter;
+    }
+
+    /**
+     * @return the pageFiles
+     */
+    public boolean isPageFiles()
+    {
+        return pageFiles;
+    }
+
+    /**
+     * @return the resume
+     */
+    public boolean isResume()
+    {
+        return resume;
+    }
+
     /**
      * @return the method
      */
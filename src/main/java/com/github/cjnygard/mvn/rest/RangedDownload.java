@@ -0,0 +1,384 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A download split into byte ranges that are fetched concurrently and
+ * written in place into a preallocated part file.
+ *
+ * The ranges that are completely written are recorded in a sidecar next to
+ * the output file, after the data has been forced to disk. A download that
+ * fails or is killed keeps its part file and sidecar, and is resumed on the
+ * next build with only the missing ranges, as long as the resource has the
+ * same length and validator.
+ */
+public class RangedDownload implements Closeable
+{
+
+    private static final String LENGTH = "length";
+
+    private static final String RANGE_SIZE = "rangeSize";
+
+    private static final String VALIDATOR = "validator";
+
+    private static final String DONE = "done";
+
+    private final File output;
+
+    private final long length;
+
+    private final long rangeSize;
+
+    private final String validator;
+
+    private final BitSet done = new BitSet();
+
+    private FileChannel channel;
+
+    /**
+     * @param output
+     *            the file to create
+     * @param length
+     *            the length of the resource
+     * @param rangeSize
+     *            the size of each range
+     * @param validator
+     *            identifies the version of the resource, or <code>null</code>
+     *            if a partial download cannot be resumed
+     */
+    public RangedDownload( File output, long length, long rangeSize, String validator )
+    {
+        Validate.isTrue( rangeSize > 0, "rangeSize must be greater than 0" );
+        this.output = output.getAbsoluteFile();
+        this.length = length;
+        this.rangeSize = rangeSize;
+        this.validator = validator;
+    }
+
+    /**
+     * @return the file the ranges are written to
+     */
+    public File getPartFile()
+    {
+        return new File( output.getParentFile(), "." + output.getName() + ".part" );
+    }
+
+    /**
+     * @return the sidecar recording the completed ranges
+     */
+    public File getStateFile()
+    {
+        return new File( output.getParentFile(), "." + output.getName() + ".ranges" );
+    }
+
+    /**
+     * @return the length of the resource
+     */
+    public long getLength()
+    {
+        return length;
+    }
+
+    /**
+     * @return the number of ranges
+     */
+    public int getRangeCount()
+    {
+        return (int) ((length + rangeSize - 1) / rangeSize);
+    }
+
+    /**
+     * @param range
+     *            the index of the range
+     * @return the first byte of the range
+     */
+    public long getStart( int range )
+    {
+        return range * rangeSize;
+    }
+
+    /**
+     * @param range
+     *            the index of the range
+     * @return the last byte of the range, inclusive
+     */
+    public long getEnd( int range )
+    {
+        return Math.min( length, getStart( range ) + rangeSize ) - 1;
+    }
+
+    /**
+     * Open the part file, resuming a previous download of the same resource.
+     *
+     * @return the indexes of the ranges still to fetch
+     * @throws IOException
+     *             if the part file cannot be created
+     */
+    public List<Integer> open() throws IOException
+    {
+        Files.createDirectories( output.getParentFile().toPath() );
+        if ( !resume() )
+        {
+            done.clear();
+            Files.deleteIfExists( getStateFile().toPath() );
+            Files.deleteIfExists( getPartFile().toPath() );
+        }
+        try ( RandomAccessFile file = new RandomAccessFile( getPartFile(), "rw" ) )
+        {
+            file.setLength( length );
+        }
+        channel = FileChannel.open( getPartFile().toPath(), StandardOpenOption.WRITE );
+        List<Integer> missing = new ArrayList<>();
+        for ( int i = done.nextClearBit( 0 ); i < getRangeCount(); i = done.nextClearBit( i + 1 ) )
+        {
+            missing.add( i );
+        }
+        return missing;
+    }
+
+    private boolean resume() throws IOException
+    {
+        File state = getStateFile();
+        if ( (null == validator) || !state.isFile() || !getPartFile().isFile() )
+        {
+            return false;
+        }
+        Properties properties = new Properties();
+        try ( InputStream in = Files.newInputStream( state.toPath() ) )
+        {
+            properties.load( in );
+        }
+        if ( !String.valueOf( length ).equals( properties.getProperty( LENGTH ) )
+                || !String.valueOf( rangeSize ).equals( properties.getProperty( RANGE_SIZE ) )
+                || !validator.equals( properties.getProperty( VALIDATOR ) )
+                || (getPartFile().length() != length) )
+        {
+            return false;
+        }
+        for ( String index : properties.getProperty( DONE, "" ).split( "," ) )
+        {
+            if ( !index.isEmpty() )
+            {
+                done.set( Integer.parseInt( index ) );
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write the body of a range response into its place in the part file.
+     *
+     * @param range
+     *            the index of the range
+     * @param body
+     *            the response body, closed on return
+     * @param bufferSize
+     *            the size of the transfer buffer
+     * @throws IOException
+     *             if the body is shorter or longer than the range, or cannot
+     *             be written
+     */
+    public void write( int range, InputStream body, int bufferSize ) throws IOException
+    {
+        long position = getStart( range );
+        long end = getEnd( range ) + 1;
+        ByteBuffer buffer = ByteBuffer.allocate( bufferSize );
+        try ( ReadableByteChannel in = Channels.newChannel( body ) )
+        {
+            while ( in.read( buffer ) >= 0 )
+            {
+                buffer.flip();
+                if ( position + buffer.remaining() > end )
+                {
+                    throw new IOException( String.format( "Range [%d-%d] is longer than requested", getStart( range ),
+                            end - 1 ) );
+                }
+                while ( buffer.hasRemaining() )
+                {
+                    position += channel.write( buffer, position );
+                }
+                buffer.clear();
+            }
+        }
+        if ( position != end )
+        {
+            throw new IOException( String.format( "Range [%d-%d] ended after [%d] bytes", getStart( range ), end - 1,
+                    position - getStart( range ) ) );
+        }
+    }
+
+    /**
+     * Check that a range response holds the range that was requested, so
+     * it is not written at the wrong place.
+     *
+     * @param range
+     *            the index of the range
+     * @param contentRange
+     *            the <code>Content-Range</code> header of the response,
+     *            <code>bytes &lt;start&gt;-&lt;end&gt;/&lt;length&gt;</code>
+     * @return <code>true</code> if the response starts and ends where the
+     *         range does and the resource has the expected length
+     */
+    public boolean isContentRange( int range, String contentRange )
+    {
+        if ( (null == contentRange) || !contentRange.regionMatches( true, 0, "bytes ", 0, 6 ) )
+        {
+            return false;
+        }
+        String value = contentRange.substring( 6 ).trim();
+        int dash = value.indexOf( '-' );
+        int slash = value.indexOf( '/' );
+        if ( (dash < 0) || (slash < dash) )
+        {
+            return false;
+        }
+        String total = value.substring( slash + 1 ).trim();
+        try
+        {
+            return (Long.parseLong( value.substring( 0, dash ).trim() ) == getStart( range ))
+                    && (Long.parseLong( value.substring( dash + 1, slash ).trim() ) == getEnd( range ))
+                    && ("*".equals( total ) || (Long.parseLong( total ) == length));
+        }
+        catch ( NumberFormatException ex )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Record a range whose data was written.
+     *
+     * @param range
+     *            the index of the range
+     * @throws IOException
+     *             if the sidecar cannot be written
+     */
+    public synchronized void completed( int range ) throws IOException
+    {
+        channel.force( false );
+        done.set( range );
+        if ( null == validator )
+        {
+            return;
+        }
+        StringBuilder indexes = new StringBuilder();
+        for ( int i = done.nextSetBit( 0 ); i >= 0; i = done.nextSetBit( i + 1 ) )
+        {
+            indexes.append( (indexes.length() > 0) ? "," : "" ).append( i );
+        }
+        Properties properties = new Properties();
+        properties.setProperty( LENGTH, String.valueOf( length ) );
+        properties.setProperty( RANGE_SIZE, String.valueOf( rangeSize ) );
+        properties.setProperty( VALIDATOR, validator );
+        properties.setProperty( DONE, indexes.toString() );
+        File state = getStateFile();
+        File tmp = File.createTempFile( state.getName(), ".tmp", state.getParentFile() );
+        try
+        {
+            try ( OutputStream out = Files.newOutputStream( tmp.toPath() ) )
+            {
+                properties.store( out, "rest-maven-plugin ranged download" );
+            }
+            Files.move( tmp.toPath(), state.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE );
+        }
+        finally
+        {
+            Files.deleteIfExists( tmp.toPath() );
+        }
+    }
+
+    /**
+     * @return <code>true</code> once every range was written
+     */
+    public synchronized boolean isComplete()
+    {
+        return done.cardinality() == getRangeCount();
+    }
+
+    /**
+     * Move the completed part file into place as the output file.
+     *
+     * @throws IOException
+     *             if a range is missing or the file cannot be moved
+     */
+    public void finish() throws IOException
+    {
+        if ( !isComplete() )
+        {
+            throw new IOException( String.format( "Download of [%s] is incomplete", output ) );
+        }
+        close();
+        try
+        {
+            Files.move( getPartFile().toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( AtomicMoveNotSupportedException ex )
+        {
+            Files.move( getPartFile().toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        }
+        Files.deleteIfExists( getStateFile().toPath() );
+    }
+
+    /**
+     * Forget the partial download, so the next build starts over.
+     *
+     * @throws IOException
+     *             if the files cannot be deleted
+     */
+    public void discard() throws IOException
+    {
+        close();
+        Files.deleteIfExists( getStateFile().toPath() );
+        Files.deleteIfExists( getPartFile().toPath() );
+    }
+
+    /**
+     * Close the part file, keeping it for a later resume.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if ( null != channel )
+        {
+            channel.close();
+            channel = null;
+        }
+    }
+}
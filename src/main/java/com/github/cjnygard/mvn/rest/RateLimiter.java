@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces REST requests out to stay under a request rate and a byte rate.
+ *
+ * Each call to {@link #acquire(long)} reserves the next free slot of both
+ * rates and sleeps until it is reached. Slots are evenly spaced, so requests
+ * go out at a steady pace rather than in bursts. A request is charged for
+ * its bytes when it starts; a large file delays the requests after it.
+ */
+public class RateLimiter
+{
+
+    private final double requestsPerSecond;
+
+    private final long bytesPerSecond;
+
+    private final long nanosPerRequest;
+
+    private final double nanosPerByte;
+
+    private long nextRequest;
+
+    private long nextByte;
+
+    /**
+     * @param requestsPerSecond
+     *            the maximum number of requests per second, or 0 for no limit
+     * @param bytesPerSecond
+     *            the maximum number of uploaded bytes per second, or 0 for no
+     *            limit
+     */
+    public RateLimiter( double requestsPerSecond, long bytesPerSecond )
+    {
+        Validate.isTrue( requestsPerSecond >= 0, "maxRequestsPerSecond must not be negative" );
+        Validate.isTrue( bytesPerSecond >= 0, "maxBytesPerSecond must not be negative" );
+        this.requestsPerSecond = requestsPerSecond;
+        this.bytesPerSecond = bytesPerSecond;
+        this.nanosPerRequest = (requestsPerSecond > 0) ? (long) (TimeUnit.SECONDS.toNanos( 1 ) / requestsPerSecond)
+                : 0;
+        this.nanosPerByte = (bytesPerSecond > 0) ? ((double) TimeUnit.SECONDS.toNanos( 1 ) / bytesPerSecond) : 0;
+        this.nextRequest = this.nextByte = System.nanoTime();
+    }
+
+    /**
+     * @return the maximum number of requests per second, or 0 for no limit
+     */
+    public double getRequestsPerSecond()
+    {
+        return requestsPerSecond;
+    }
+
+    /**
+     * @return the maximum number of uploaded bytes per second, or 0 for no
+     *         limit
+     */
+    public long getBytesPerSecond()
+    {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @return <code>true</code> if this limiter never waits
+     */
+    public boolean isUnlimited()
+    {
+        return (nanosPerRequest == 0) && (nanosPerByte == 0);
+    }
+
+    /**
+     * Wait until a request of the given size may be sent.
+     *
+     * @param bytes
+     *            the size of the request body
+     * @return the time waited in milliseconds
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public long acquire( long bytes ) throws InterruptedException
+    {
+        if ( isUnlimited() )
+        {
+            return 0;
+        }
+        long wait;
+        synchronized ( this )
+        {
+            long now = System.nanoTime();
+            long start = now;
+            if ( nanosPerRequest > 0 )
+            {
+                // idle time is not saved up, so there is never a burst
+                long slot = Math.max( now, nextRequest );
+                nextRequest = slot + nanosPerRequest;
+                start = Math.max( start, slot );
+            }
+            if ( nanosPerByte > 0 )
+            {
+                long slot = Math.max( now, nextByte );
+                nextByte = slot + (long) (bytes * nanosPerByte);
+                start = Math.max( start, slot );
+            }
+            wait = start - now;
+        }
+        if ( wait > 0 )
+        {
+            TimeUnit.NANOSECONDS.sleep( wait );
+        }
+        return TimeUnit.NANOSECONDS.toMillis( wait );
+    }
+}
@@ -0,0 +1,517 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An in-process HTTP stub on localhost that records or replays the
+ * responses of a REST service.
+ *
+ * In <code>record</code> mode every request is forwarded to the real
+ * service, and responses below 500 (other than 429) are stored in the
+ * archive directory. Links to the service in <code>Location</code> and
+ * <code>Link</code> headers are made relative, so that the client follows
+ * them through the stub. In <code>replay</code> mode responses are served
+ * from the archive only; a request that was not recorded gets a 404.
+ *
+ * Requests are matched by a SHA-256 hash of the method, path and query,
+ * the <code>Content-Type</code>, <code>Content-Encoding</code>,
+ * <code>Accept</code>, <code>Accept-Encoding</code>, <code>Range</code> and
+ * <code>If-Range</code> headers and the body.
+ * Multipart boundaries are random, so they are replaced by a constant
+ * before hashing. Each response is stored as <code>&lt;hash&gt;.json</code>
+ * (method, URI, status and headers) and <code>&lt;hash&gt;.body</code>.
+ */
+public class ReplayServer implements Closeable
+{
+
+    /** Send requests to the service. */
+    public static final String OFF = "off";
+
+    /** Send requests to the service and record the responses. */
+    public static final String RECORD = "record";
+
+    /** Serve recorded responses only. */
+    public static final String REPLAY = "replay";
+
+    private static final List<String> MATCHED_HEADERS = Arrays.asList( "content-type", "content-encoding",
+            "accept", "accept-encoding", "range", "if-range" );
+
+    private static final Set<String> HOP_HEADERS = new HashSet<>( Arrays.asList( "connection", "keep-alive",
+            "transfer-encoding", "content-length", "host", "expect", "date", "upgrade" ) );
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private final File archive;
+
+    private final URI upstream;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /** Forwards requests to the service in <code>record</code> mode. */
+    private final CloseableHttpClient httpClient;
+
+    /**
+     * @param archive
+     *            the directory of recorded responses
+     * @param upstream
+     *            the service to record, or <code>null</code> to replay
+     */
+    private ReplayServer( File archive, URI upstream ) throws IOException
+    {
+        this.archive = archive;
+        this.upstream = upstream;
+        // responses are recorded as sent, neither decompressed nor redirected
+        httpClient = (null == upstream) ? null : HttpClients.custom().disableContentCompression()
+                .disableRedirectHandling().disableAutomaticRetries().disableCookieManagement()
+                .setMaxConnTotal( 64 ).setMaxConnPerRoute( 64 ).build();
+        server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), 0 );
+        executor = Executors.newCachedThreadPool( new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable r )
+            {
+                Thread t = new Thread( r, "rest-replay-" + THREADS.incrementAndGet() );
+                t.setDaemon( true );
+                return t;
+            }
+        } );
+        server.setExecutor( executor );
+        server.createContext( "/", new HttpHandler()
+        {
+            @Override
+            public void handle( HttpExchange exchange ) throws IOException
+            {
+                try
+                {
+                    serve( exchange );
+                }
+                finally
+                {
+                    exchange.close();
+                }
+            }
+        } );
+        server.start();
+    }
+
+    /**
+     * Start a stub that forwards requests to a service and records the
+     * responses.
+     *
+     * @param archive
+     *            the directory to store the responses in
+     * @param upstream
+     *            the service; only its scheme, host and port are used
+     * @return the running stub
+     * @throws IOException
+     *             if the archive cannot be created or the stub cannot be
+     *             started
+     */
+    public static ReplayServer record( File archive, URI upstream ) throws IOException
+    {
+        Files.createDirectories( archive.toPath() );
+        return new ReplayServer( archive, upstream );
+    }
+
+    /**
+     * Start a stub that serves recorded responses.
+     *
+     * @param archive
+     *            the directory of recorded responses
+     * @return the running stub
+     * @throws IOException
+     *             if the archive does not exist or the stub cannot be
+     *             started
+     */
+    public static ReplayServer replay( File archive ) throws IOException
+    {
+        if ( !archive.isDirectory() )
+        {
+            throw new IOException( String.format( "Replay archive [%s] does not exist", archive ) );
+        }
+        return new ReplayServer( archive, null );
+    }
+
+    /**
+     * @param endpoint
+     *            an endpoint of the service
+     * @return the same endpoint on the stub
+     */
+    public URI getUri( URI endpoint )
+    {
+        StringBuilder uri = new StringBuilder( "http://" );
+        uri.append( server.getAddress().getAddress().getHostAddress() ).append( ':' )
+                .append( server.getAddress().getPort() );
+        uri.append( (null == endpoint.getRawPath()) ? "" : endpoint.getRawPath() );
+        if ( null != endpoint.getRawQuery() )
+        {
+            uri.append( '?' ).append( endpoint.getRawQuery() );
+        }
+        return URI.create( uri.toString() );
+    }
+
+    /**
+     * Stop the stub.
+     */
+    @Override
+    public void close()
+    {
+        server.stop( 0 );
+        executor.shutdownNow();
+        if ( null != httpClient )
+        {
+            IOUtils.closeQuietly( httpClient );
+        }
+    }
+
+    private void serve( HttpExchange exchange ) throws IOException
+    {
+        String boundary = boundary( exchange.getRequestHeaders().getFirst( "Content-Type" ) );
+        Path body = null;
+        try
+        {
+            String bodyHash;
+            if ( null != boundary )
+            {
+                byte[] bytes = readFully( exchange.getRequestBody() );
+                body = Files.createTempFile( "rest-request", ".tmp" );
+                Files.write( body, bytes );
+                bodyHash = RequestFingerprint.content( normalize( bytes, boundary ) );
+            }
+            else if ( null != upstream )
+            {
+                body = Files.createTempFile( "rest-request", ".tmp" );
+                Files.copy( exchange.getRequestBody(), body, StandardCopyOption.REPLACE_EXISTING );
+                bodyHash = RequestFingerprint.content( body.toFile() );
+            }
+            else
+            {
+                bodyHash = RequestFingerprint.content( exchange.getRequestBody() );
+            }
+            String hash = hash( exchange, boundary, bodyHash );
+
+            if ( null == upstream )
+            {
+                replay( exchange, hash );
+            }
+            else
+            {
+                record( exchange, hash, body );
+            }
+        }
+        catch ( IOException ex )
+        {
+            send( exchange, 502, String.format( "Unable to %s [%s %s]: [%s]", (null == upstream) ? "replay"
+                    : "record", exchange.getRequestMethod(), exchange.getRequestURI(), ex ) );
+        }
+        finally
+        {
+            if ( null != body )
+            {
+                Files.deleteIfExists( body );
+            }
+        }
+    }
+
+    private String hash( HttpExchange exchange, String boundary, String bodyHash )
+    {
+        String[] parts = new String[MATCHED_HEADERS.size() + 3];
+        parts[0] = exchange.getRequestMethod().toUpperCase( Locale.ENGLISH );
+        parts[1] = exchange.getRequestURI().getRawPath() + "?" + exchange.getRequestURI().getRawQuery();
+        for ( int i = 0; i < MATCHED_HEADERS.size(); i++ )
+        {
+            String value = exchange.getRequestHeaders().getFirst( MATCHED_HEADERS.get( i ) );
+            parts[i + 2] = ((null == value) || (null == boundary)) ? value : value.replace( boundary, "boundary" );
+        }
+        parts[parts.length - 1] = bodyHash;
+        return RequestFingerprint.combine( parts );
+    }
+
+    private void replay( HttpExchange exchange, String hash ) throws IOException
+    {
+        File meta = new File( archive, hash + ".json" );
+        if ( !meta.isFile() )
+        {
+            send( exchange, 404, String.format( "No recorded response for [%s %s] in [%s], request hash [%s]",
+                    exchange.getRequestMethod(), exchange.getRequestURI(), archive, hash ) );
+            return;
+        }
+        @SuppressWarnings( "unchecked" )
+        Map<String, Object> entry = mapper.readValue( meta, Map.class );
+        @SuppressWarnings( "unchecked" )
+        Map<String, List<String>> headers = (Map<String, List<String>>) entry.get( "headers" );
+        respond( exchange, ((Number) entry.get( "status" )).intValue(), headers, new File( archive, hash + ".body" ) );
+    }
+
+    private void record( HttpExchange exchange, String hash, Path body ) throws IOException
+    {
+        URI uri = exchange.getRequestURI();
+        RequestBuilder request = RequestBuilder.create( exchange.getRequestMethod() ).setUri( origin()
+                + uri.getRawPath() + ((null == uri.getRawQuery()) ? "" : "?" + uri.getRawQuery()) );
+        for ( Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet() )
+        {
+            if ( !HOP_HEADERS.contains( header.getKey().toLowerCase( Locale.ENGLISH ) ) )
+            {
+                for ( String value : header.getValue() )
+                {
+                    request.addHeader( header.getKey(), value );
+                }
+            }
+        }
+        if ( Files.size( body ) > 0 )
+        {
+            request.setEntity( new FileEntity( body.toFile() ) );
+        }
+
+        try ( CloseableHttpResponse forwarded = httpClient.execute( request.build() ) )
+        {
+            record( exchange, hash, forwarded );
+        }
+    }
+
+    private void record( HttpExchange exchange, String hash, CloseableHttpResponse forwarded ) throws IOException
+    {
+        URI uri = exchange.getRequestURI();
+        int status = forwarded.getStatusLine().getStatusCode();
+        Map<String, List<String>> headers = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+        for ( Header header : forwarded.getAllHeaders() )
+        {
+            if ( !HOP_HEADERS.contains( header.getName().toLowerCase( Locale.ENGLISH ) ) )
+            {
+                if ( !headers.containsKey( header.getName() ) )
+                {
+                    headers.put( header.getName(), new ArrayList<String>() );
+                }
+                headers.get( header.getName() ).add( relativize( header.getName(), header.getValue() ) );
+            }
+        }
+        Path response = Files.createTempFile( "rest-response", ".tmp" );
+        try
+        {
+            if ( null != forwarded.getEntity() )
+            {
+                try ( InputStream in = forwarded.getEntity().getContent() )
+                {
+                    Files.copy( in, response, StandardCopyOption.REPLACE_EXISTING );
+                }
+            }
+            if ( (status < 500) && (status != 429) )
+            {
+                // the body goes first, the metadata marks a complete entry
+                Path stored = Files.createTempFile( archive.toPath(), hash, ".tmp" );
+                Files.copy( response, stored, StandardCopyOption.REPLACE_EXISTING );
+                Files.move( stored, new File( archive, hash + ".body" ).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put( "method", exchange.getRequestMethod() );
+                entry.put( "uri", uri.toString() );
+                entry.put( "status", status );
+                entry.put( "headers", headers );
+                Path meta = Files.createTempFile( archive.toPath(), hash, ".tmp" );
+                mapper.writerWithDefaultPrettyPrinter().writeValue( meta.toFile(), entry );
+                Files.move( meta, new File( archive, hash + ".json" ).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            }
+            respond( exchange, status, headers, response.toFile() );
+        }
+        finally
+        {
+            Files.deleteIfExists( response );
+        }
+    }
+
+    private String origin()
+    {
+        return upstream.getScheme() + "://" + upstream.getRawAuthority();
+    }
+
+    /**
+     * Make the links to the service in a <code>Location</code> or
+     * <code>Link</code> header relative, so they lead back to the stub
+     * rather than to the service, in this run and when replayed.
+     */
+    String relativize( String name, String value )
+    {
+        String origin = origin();
+        if ( "location".equalsIgnoreCase( name ) )
+        {
+            return value.startsWith( origin + "/" ) ? value.substring( origin.length() ) : value;
+        }
+        if ( "link".equalsIgnoreCase( name ) )
+        {
+            return value.replace( "<" + origin + "/", "</" );
+        }
+        return value;
+    }
+
+    private void respond( HttpExchange exchange, int status, Map<String, List<String>> headers, File body )
+        throws IOException
+    {
+        if ( null != headers )
+        {
+            for ( Map.Entry<String, List<String>> header : headers.entrySet() )
+            {
+                exchange.getResponseHeaders().put( header.getKey(), header.getValue() );
+            }
+        }
+        long length = body.isFile() ? body.length() : 0;
+        boolean empty = (length == 0) || "HEAD".equalsIgnoreCase( exchange.getRequestMethod() )
+                || (status == 204) || (status == 304);
+        exchange.sendResponseHeaders( status, empty ? -1 : length );
+        if ( !empty )
+        {
+            try ( OutputStream out = exchange.getResponseBody() )
+            {
+                Files.copy( body.toPath(), out );
+            }
+        }
+    }
+
+    private static void send( HttpExchange exchange, int status, String message ) throws IOException
+    {
+        byte[] bytes = message.getBytes( StandardCharsets.UTF_8 );
+        exchange.getResponseHeaders().set( "Content-Type", "text/plain; charset=UTF-8" );
+        exchange.sendResponseHeaders( status, bytes.length );
+        try ( OutputStream out = exchange.getResponseBody() )
+        {
+            out.write( bytes );
+        }
+    }
+
+    /**
+     * @return the multipart boundary of a content type, or <code>null</code>
+     */
+    static String boundary( String contentType )
+    {
+        if ( (null == contentType) || !contentType.toLowerCase( Locale.ENGLISH ).startsWith( "multipart/" ) )
+        {
+            return null;
+        }
+        for ( String param : contentType.split( ";" ) )
+        {
+            String p = param.trim();
+            if ( p.toLowerCase( Locale.ENGLISH ).startsWith( "boundary=" ) )
+            {
+                String value = p.substring( "boundary=".length() ).trim();
+                if ( value.startsWith( "\"" ) && value.endsWith( "\"" ) && (value.length() > 1) )
+                {
+                    value = value.substring( 1, value.length() - 1 );
+                }
+                return value.isEmpty() ? null : value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replace every occurrence of the boundary in a multipart body.
+     */
+    static byte[] normalize( byte[] body, String boundary )
+    {
+        byte[] from = boundary.getBytes( StandardCharsets.ISO_8859_1 );
+        byte[] to = "boundary".getBytes( StandardCharsets.ISO_8859_1 );
+        ByteArrayOutputStream out = new ByteArrayOutputStream( body.length );
+        int i = 0;
+        while ( i < body.length )
+        {
+            if ( matches( body, i, from ) )
+            {
+                out.write( to, 0, to.length );
+                i += from.length;
+            }
+            else
+            {
+                out.write( body[i++] );
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean matches( byte[] body, int offset, byte[] pattern )
+    {
+        if ( offset + pattern.length > body.length )
+        {
+            return false;
+        }
+        for ( int j = 0; j < pattern.length; j++ )
+        {
+            if ( body[offset + j] != pattern[j] )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] readFully( InputStream in ) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[64 * 1024];
+        int n;
+        while ( (n = in.read( buf )) != -1 )
+        {
+            out.write( buf, 0, n );
+        }
+        return out.toByteArray();
+    }
+}
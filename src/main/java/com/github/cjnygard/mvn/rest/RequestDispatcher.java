@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Runs REST request tasks on a bounded pool of worker threads.
+ *
+ * Tasks are queued in submission order and executed by at most
+ * <code>concurrency</code> threads. A concurrency of 1 reproduces the
+ * original one-file-at-a-time behavior. With a bounded queue,
+ * {@link #queue(Runnable)} blocks the producer until a worker catches up.
+ * An exception escaping a task fails the {@link #await()} of the
+ * dispatcher, so a task that could not record its result is not lost.
+ */
+public class RequestDispatcher
+{
+
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+    private final ExecutorService executor;
+
+    private final Semaphore slots;
+
+    /** The first exception that escaped a task. */
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * @param concurrency
+     *            the maximum number of requests in flight at one time
+     */
+    public RequestDispatcher( int concurrency )
+    {
+        this( concurrency, 0 );
+    }
+
+    /**
+     * @param concurrency
+     *            the maximum number of requests in flight at one time
+     * @param maxQueued
+     *            the maximum number of tasks waiting for a thread, or 0 for
+     *            no limit
+     */
+    public RequestDispatcher( int concurrency, int maxQueued )
+    {
+        Validate.isTrue( concurrency > 0, "concurrency must be greater than 0" );
+        Validate.isTrue( maxQueued >= 0, "maxQueued must not be negative" );
+        slots = (maxQueued > 0) ? new Semaphore( concurrency + maxQueued ) : null;
+        final int pool = POOL_COUNT.incrementAndGet();
+        executor = new ThreadPoolExecutor( concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+                {
+                    private final AtomicInteger threadCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread( Runnable r )
+                    {
+                        Thread t = new Thread( r, String.format( "rest-request-%d-%d", pool,
+                                threadCount.incrementAndGet() ) );
+                        t.setDaemon( true );
+                        return t;
+                    }
+                } );
+    }
+
+    /**
+     * Queue a task for execution.
+     *
+     * The task is responsible for recording its own result; an exception
+     * escaping the task is reported by {@link #await()}.
+     *
+     * @param task
+     *            the request task
+     */
+    public void submit( final Runnable task )
+    {
+        executor.execute( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    task.run();
+                }
+                catch ( RuntimeException | Error ex )
+                {
+                    failure.compareAndSet( null, ex );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Queue a task for execution, waiting while the queue is full.
+     *
+     * @param task
+     *            the request task
+     * @throws MojoExecutionException
+     *             if interrupted while waiting
+     */
+    public void queue( final Runnable task ) throws MojoExecutionException
+    {
+        if ( null == slots )
+        {
+            submit( task );
+            return;
+        }
+        try
+        {
+            slots.acquire();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while waiting to queue REST request", e );
+        }
+        submit( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    task.run();
+                }
+                finally
+                {
+                    slots.release();
+                }
+            }
+        } );
+    }
+
+    /**
+     * Wait for all submitted tasks to complete and release the worker
+     * threads.
+     *
+     * @throws MojoExecutionException
+     *             if interrupted while waiting, or if a task failed with an
+     *             exception
+     */
+    public void await() throws MojoExecutionException
+    {
+        executor.shutdown();
+        try
+        {
+            while ( !executor.awaitTermination( 1, TimeUnit.SECONDS ) )
+            {
+                // wait for the remaining requests
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while waiting for REST requests", e );
+        }
+        checkFailure();
+    }
+
+    /**
+     * Wait a limited time for all submitted tasks to complete. Tasks that
+     * have not completed by then are interrupted, and queued tasks are
+     * dropped.
+     *
+     * @param timeout
+     *            the maximum time to wait
+     * @param unit
+     *            the unit of the timeout
+     * @return <code>true</code> if all tasks completed
+     * @throws MojoExecutionException
+     *             if interrupted while waiting, or if a task failed with an
+     *             exception
+     */
+    public boolean await( long timeout, TimeUnit unit ) throws MojoExecutionException
+    {
+        executor.shutdown();
+        boolean done;
+        try
+        {
+            done = executor.awaitTermination( timeout, unit );
+            if ( !done )
+            {
+                executor.shutdownNow();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while waiting for REST requests", e );
+        }
+        checkFailure();
+        return done;
+    }
+
+    private void checkFailure() throws MojoExecutionException
+    {
+        Throwable ex = failure.get();
+        if ( null != ex )
+        {
+            throw new MojoExecutionException( String.format( "REST request task failed: [%s]", ex.toString() ), ex );
+        }
+    }
+}
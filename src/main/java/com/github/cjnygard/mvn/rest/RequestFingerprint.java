@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Computes stable SHA-256 fingerprints of REST requests.
+ *
+ * A request fingerprint is made of the digest of the request configuration
+ * (method, full target URI, headers and media types) and the digest of the
+ * uploaded content. Identical fingerprints imply identical requests.
+ */
+public final class RequestFingerprint
+{
+
+    private static final String ALGORITHM = "SHA-256";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Hide constructor for utility classes.
+     */
+    private RequestFingerprint()
+    {
+    }
+
+    /**
+     * Digest the parts of a request that do not depend on the uploaded file.
+     *
+     * Headers are sorted by name so that map ordering does not change the
+     * result.
+     *
+     * @param method
+     *            the HTTP method
+     * @param uri
+     *            the full target URI, including query parameters
+     * @param headers
+     *            the request headers, may be <code>null</code>
+     * @param requestType
+     *            the request media type, may be <code>null</code>
+     * @param responseType
+     *            the accepted response media type, may be <code>null</code>
+     * @return the hex encoded digest
+     */
+    public static String configuration( String method, URI uri, Map<String, String> headers,
+            MediaType requestType, MediaType responseType )
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append( method.toUpperCase() ).append( '\n' );
+        sb.append( uri ).append( '\n' );
+        if ( null != headers )
+        {
+            for ( Map.Entry<String, String> e : new TreeMap<>( headers ).entrySet() )
+            {
+                sb.append( e.getKey().toLowerCase() ).append( ':' ).append( e.getValue() ).append( '\n' );
+            }
+        }
+        sb.append( requestType ).append( '\n' );
+        sb.append( responseType ).append( '\n' );
+        return combine( sb.toString() );
+    }
+
+    /**
+     * Digest the contents of a file.
+     *
+     * @param file
+     *            the file to read
+     * @return the hex encoded digest
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static String content( File file ) throws IOException
+    {
+        MessageDigest md = newDigest();
+        ByteBuffer buf = ByteBuffer.allocate( 64 * 1024 );
+        try ( FileChannel ch = FileChannel.open( file.toPath(), StandardOpenOption.READ ) )
+        {
+            while ( ch.read( buf ) != -1 )
+            {
+                buf.flip();
+                md.update( buf );
+                buf.clear();
+            }
+        }
+        return toHex( md.digest() );
+    }
+
+    /**
+     * Digest the contents of a stream, reading it to the end.
+     *
+     * @param in
+     *            the stream to read, left open
+     * @return the hex encoded digest
+     * @throws IOException
+     *             if the stream cannot be read
+     */
+    public static String content( InputStream in ) throws IOException
+    {
+        MessageDigest md = newDigest();
+        byte[] buf = new byte[64 * 1024];
+        int n;
+        while ( (n = in.read( buf )) != -1 )
+        {
+            md.update( buf, 0, n );
+        }
+        return toHex( md.digest() );
+    }
+
+    /**
+     * Digest a byte array.
+     *
+     * @param bytes
+     *            the bytes to digest
+     * @return the hex encoded digest
+     */
+    public static String content( byte[] bytes )
+    {
+        return toHex( newDigest().digest( bytes ) );
+    }
+
+    /**
+     * Digest a sequence of strings into one fingerprint.
+     *
+     * @param parts
+     *            the strings to combine, <code>null</code> entries are allowed
+     * @return the hex encoded digest
+     */
+    public static String combine( String... parts )
+    {
+        MessageDigest md = newDigest();
+        for ( String part : parts )
+        {
+            md.update( String.valueOf( part ).getBytes( StandardCharsets.UTF_8 ) );
+            md.update( (byte) 0 );
+        }
+        return toHex( md.digest() );
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance( ALGORITHM );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            // every JRE is required to support SHA-256
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private static String toHex( byte[] bytes )
+    {
+        char[] out = new char[bytes.length * 2];
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            out[i * 2] = HEX[(bytes[i] >> 4) & 0x0f];
+            out[i * 2 + 1] = HEX[bytes[i] & 0x0f];
+        }
+        return new String( out );
+    }
+}
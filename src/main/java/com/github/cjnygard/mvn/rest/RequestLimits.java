@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.net.URI;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * The limits every REST request passes before it is sent: the rate limits,
+ * a slot of the adaptive concurrency limit if there is one, and the endpoint
+ * chosen by the balancer if there are several.
+ *
+ * A request takes a {@link Lease} with {@link #acquire(long)} and closes it
+ * once it is done. The lease gives back the slot and the endpoint exactly
+ * once, and reports the round trip and whether the endpoint failed to both,
+ * so every kind of request is accounted for in the same way.
+ */
+public class RequestLimits
+{
+
+    /**
+     * The slot and endpoint of one request.
+     */
+    public final class Lease
+    {
+
+        private final long queued;
+
+        private final long start;
+
+        private final AdaptiveLimit limit;
+
+        private final EndpointBalancer.Replica replica;
+
+        private long rtt;
+
+        private boolean slotHeld;
+
+        private boolean routed;
+
+        private Lease( long queued, AdaptiveLimit limit, EndpointBalancer.Replica replica )
+        {
+            this.queued = queued;
+            this.limit = limit;
+            this.slotHeld = null != limit;
+            this.replica = replica;
+            this.routed = null != replica;
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * @return the endpoint to send the request to, or <code>null</code>
+         *         if there is only one
+         */
+        public URI getEndpoint()
+        {
+            return (null == replica) ? null : replica.getUri();
+        }
+
+        /**
+         * @return the time the request waited for the limits in nanoseconds
+         */
+        public long getQueue()
+        {
+            return start - queued;
+        }
+
+        /**
+         * @return the {@link System#nanoTime()} the request was let through
+         */
+        public long getStart()
+        {
+            return start;
+        }
+
+        /**
+         * @return the time until the response arrived in nanoseconds, or 0
+         *         if there was no response
+         */
+        public synchronized long getRtt()
+        {
+            return rtt;
+        }
+
+        /**
+         * Note that the response arrived.
+         *
+         * @return the round trip time in nanoseconds
+         */
+        public synchronized long responded()
+        {
+            rtt = System.nanoTime() - start;
+            return rtt;
+        }
+
+        /**
+         * Report the round trip to the adaptive concurrency limit and give
+         * back the slot, so another request can be sent while the response
+         * is still read. Does nothing if the slot was already released.
+         *
+         * @param failure
+         *            <code>true</code> if the endpoint failed the request
+         */
+        public synchronized void releaseSlot( boolean failure )
+        {
+            if ( slotHeld )
+            {
+                slotHeld = false;
+                int change = limit.sample( rtt, failure );
+                limit.release();
+                if ( change < 0 )
+                {
+                    log.info( String.format( "Concurrency limit reduced to [%d]", limit.getLimit() ) );
+                }
+                else if ( change > 0 )
+                {
+                    log.debug( String.format( "Concurrency limit raised to [%d]", limit.getLimit() ) );
+                }
+            }
+        }
+
+        /**
+         * Release the slot if it is still held, and give back the endpoint.
+         * Further calls do nothing.
+         *
+         * @param failure
+         *            <code>true</code> if the endpoint failed the request
+         */
+        public synchronized void close( boolean failure )
+        {
+            releaseSlot( failure );
+            if ( routed )
+            {
+                routed = false;
+                if ( balancer.release( replica, failure ) )
+                {
+                    log.warn( String.format( "Endpoint [%s] ejected after [%d] consecutive failures",
+                            replica.getUri(), balancer.getThreshold() ) );
+                }
+            }
+        }
+    }
+
+    private final RateLimiter rateLimiter;
+
+    private final EndpointBalancer balancer;
+
+    private final Log log;
+
+    private volatile AdaptiveLimit concurrencyLimit;
+
+    /**
+     * @param rateLimiter
+     *            the rate limits
+     * @param balancer
+     *            the endpoints, or <code>null</code> if there is only one
+     * @param log
+     *            receives the changes of the limits
+     */
+    public RequestLimits( RateLimiter rateLimiter, EndpointBalancer balancer, Log log )
+    {
+        this.rateLimiter = rateLimiter;
+        this.balancer = balancer;
+        this.log = log;
+    }
+
+    /**
+     * Wait until the rate limits allow another request and a slot is free,
+     * then choose the endpoint.
+     *
+     * @param bytes
+     *            the size of the request body, or of the range requested
+     * @return the lease, which the caller closes
+     * @throws InterruptedException
+     *             if interrupted while waiting, holding nothing
+     */
+    public Lease acquire( long bytes ) throws InterruptedException
+    {
+        long queued = System.nanoTime();
+        long waited = rateLimiter.acquire( bytes );
+        if ( waited > 0 )
+        {
+            log.debug( String.format( "Rate limited for [%d] ms", waited ) );
+        }
+        AdaptiveLimit limit = concurrencyLimit;
+        if ( null != limit )
+        {
+            limit.acquire();
+        }
+        return new Lease( queued, limit, (null == balancer) ? null : balancer.acquire() );
+    }
+
+    /**
+     * @return the adaptive concurrency limit, or <code>null</code>
+     */
+    public AdaptiveLimit getConcurrencyLimit()
+    {
+        return concurrencyLimit;
+    }
+
+    /**
+     * @param concurrencyLimit
+     *            the adaptive concurrency limit, or <code>null</code> for
+     *            none; set before requests are sent
+     */
+    public void setConcurrencyLimit( AdaptiveLimit concurrencyLimit )
+    {
+        this.concurrencyLimit = concurrencyLimit;
+    }
+}
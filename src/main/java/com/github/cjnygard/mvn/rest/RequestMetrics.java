@@ -0,0 +1,342 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Collects the timings of the REST requests of an execution.
+ *
+ * Every HTTP exchange, including retries, is one {@link Sample}. The time
+ * to the response headers includes connecting and uploading the request
+ * body; JAX-RS does not expose the connect time separately.
+ */
+public class RequestMetrics
+{
+
+    /** The timing of a single HTTP exchange. */
+    public static final class Sample
+    {
+
+        private final String request;
+
+        private long queue;
+
+        private long ttfb;
+
+        private long transfer;
+
+        private int status = -1;
+
+        private long requestBytes;
+
+        private long responseBytes;
+
+        /**
+         * @param request
+         *            names the request, usually the uploaded file
+         */
+        public Sample( String request )
+        {
+            this.request = request;
+        }
+
+        /**
+         * @param queue
+         *            nanoseconds spent waiting before the request was sent
+         * @return this sample
+         */
+        public Sample queue( long queue )
+        {
+            this.queue = queue;
+            return this;
+        }
+
+        /**
+         * @param ttfb
+         *            nanoseconds from sending the request to the response
+         *            headers
+         * @param status
+         *            the response status, or -1 if there was no response
+         * @return this sample
+         */
+        public Sample response( long ttfb, int status )
+        {
+            this.ttfb = ttfb;
+            this.status = status;
+            return this;
+        }
+
+        /**
+         * @param transfer
+         *            nanoseconds spent reading the response body to disk
+         * @return this sample
+         */
+        public Sample transfer( long transfer )
+        {
+            this.transfer = transfer;
+            return this;
+        }
+
+        /**
+         * @param requestBytes
+         *            the size of the uploaded file
+         * @param responseBytes
+         *            the size of the written output
+         * @return this sample
+         */
+        public Sample bytes( long requestBytes, long responseBytes )
+        {
+            this.requestBytes = requestBytes;
+            this.responseBytes = responseBytes;
+            return this;
+        }
+
+        long total()
+        {
+            return queue + ttfb + transfer;
+        }
+    }
+
+    private final List<Sample> samples = new ArrayList<>();
+
+    private final Map<String, Long> queued = new ConcurrentHashMap<>();
+
+    private final long started = System.nanoTime();
+
+    private long finished;
+
+    /**
+     * Remember how long a request waited in a queue before it was picked
+     * up; the time is added to its first sample.
+     *
+     * @param request
+     *            names the request
+     * @param nanos
+     *            the time in the queue
+     */
+    public void queued( String request, long nanos )
+    {
+        queued.put( request, nanos );
+    }
+
+    /**
+     * @param sample
+     *            the timing of an exchange
+     */
+    public void record( Sample sample )
+    {
+        Long wait = queued.remove( sample.request );
+        if ( null != wait )
+        {
+            sample.queue += wait;
+        }
+        synchronized ( samples )
+        {
+            samples.add( sample );
+        }
+    }
+
+    /**
+     * Stop the wall clock of the execution.
+     */
+    public void finish()
+    {
+        finished = System.nanoTime();
+    }
+
+    /**
+     * @return the number of recorded exchanges
+     */
+    public int size()
+    {
+        synchronized ( samples )
+        {
+            return samples.size();
+        }
+    }
+
+    private List<Sample> snapshot()
+    {
+        synchronized ( samples )
+        {
+            return new ArrayList<>( samples );
+        }
+    }
+
+    private long wallTime()
+    {
+        return ((0 == finished) ? System.nanoTime() : finished) - started;
+    }
+
+    /**
+     * @return the report as a tree of maps, lists and numbers
+     */
+    public Map<String, Object> report()
+    {
+        List<Sample> all = snapshot();
+        long[] queue = new long[all.size()];
+        long[] ttfb = new long[all.size()];
+        long[] transfer = new long[all.size()];
+        long[] total = new long[all.size()];
+        long sent = 0;
+        long received = 0;
+        Map<String, Integer> status = new TreeMap<>();
+        List<Map<String, Object>> requests = new ArrayList<>();
+        for ( int i = 0; i < all.size(); i++ )
+        {
+            Sample s = all.get( i );
+            queue[i] = s.queue;
+            ttfb[i] = s.ttfb;
+            transfer[i] = s.transfer;
+            total[i] = s.total();
+            sent += s.requestBytes;
+            received += s.responseBytes;
+            String code = (s.status < 0) ? "error" : String.valueOf( s.status );
+            status.put( code, status.containsKey( code ) ? status.get( code ) + 1 : 1 );
+
+            Map<String, Object> request = new LinkedHashMap<>();
+            request.put( "request", s.request );
+            request.put( "status", s.status );
+            request.put( "queueMs", millis( s.queue ) );
+            request.put( "ttfbMs", millis( s.ttfb ) );
+            request.put( "transferMs", millis( s.transfer ) );
+            request.put( "totalMs", millis( s.total() ) );
+            request.put( "requestBytes", s.requestBytes );
+            request.put( "responseBytes", s.responseBytes );
+            requests.add( request );
+        }
+        double seconds = wallTime() / 1e9;
+
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put( "queue", histogram( queue ) );
+        latency.put( "ttfb", histogram( ttfb ) );
+        latency.put( "transfer", histogram( transfer ) );
+        latency.put( "total", histogram( total ) );
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put( "wallTimeMs", millis( wallTime() ) );
+        report.put( "requests", all.size() );
+        report.put( "requestsPerSecond", rate( all.size(), seconds ) );
+        report.put( "requestBytes", sent );
+        report.put( "responseBytes", received );
+        report.put( "bytesPerSecond", rate( sent + received, seconds ) );
+        report.put( "status", status );
+        report.put( "latencyMs", latency );
+        report.put( "samples", requests );
+        return report;
+    }
+
+    /**
+     * @return a few lines for the console
+     */
+    @SuppressWarnings( "unchecked" )
+    public List<String> summary()
+    {
+        Map<String, Object> report = report();
+        List<String> lines = new ArrayList<>();
+        lines.add( String.format( "Requests: [%d] in [%.1f] s, [%.1f] req/s, [%.1f] MB sent, [%.1f] MB received",
+                report.get( "requests" ), ((Double) report.get( "wallTimeMs" )) / 1000,
+                report.get( "requestsPerSecond" ), ((Long) report.get( "requestBytes" )) / 1e6,
+                ((Long) report.get( "responseBytes" )) / 1e6 ) );
+        Map<String, Object> latency = (Map<String, Object>) report.get( "latencyMs" );
+        for ( Map.Entry<String, Object> e : latency.entrySet() )
+        {
+            Map<String, Object> h = (Map<String, Object>) e.getValue();
+            lines.add( String.format( "Latency %-8s p50 [%.1f] p90 [%.1f] p99 [%.1f] max [%.1f] ms", e.getKey(),
+                    h.get( "p50" ), h.get( "p90" ), h.get( "p99" ), h.get( "max" ) ) );
+        }
+        lines.add( String.format( "Status: %s", report.get( "status" ) ) );
+        return lines;
+    }
+
+    /**
+     * Write the report as JSON.
+     *
+     * @param file
+     *            the report file
+     * @param context
+     *            entries added at the top of the report
+     * @throws IOException
+     *             if the report cannot be written
+     */
+    public void write( File file, Map<String, Object> context ) throws IOException
+    {
+        Map<String, Object> json = new LinkedHashMap<>( context );
+        json.putAll( report() );
+        Files.createDirectories( file.getParentFile().toPath() );
+        File tmp = new File( file.getParentFile(), file.getName() + ".tmp" );
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue( tmp, json );
+        Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+    }
+
+    static Map<String, Object> histogram( long[] nanos )
+    {
+        long[] sorted = Arrays.copyOf( nanos, nanos.length );
+        Arrays.sort( sorted );
+        Map<String, Object> h = new LinkedHashMap<>();
+        h.put( "p50", millis( percentile( sorted, 50 ) ) );
+        h.put( "p90", millis( percentile( sorted, 90 ) ) );
+        h.put( "p99", millis( percentile( sorted, 99 ) ) );
+        h.put( "max", millis( (sorted.length == 0) ? 0 : sorted[sorted.length - 1] ) );
+        long sum = 0;
+        for ( long n : sorted )
+        {
+            sum += n;
+        }
+        h.put( "mean", millis( (sorted.length == 0) ? 0 : (sum / sorted.length) ) );
+        return h;
+    }
+
+    /**
+     * Nearest-rank percentile of sorted values.
+     */
+    static long percentile( long[] sorted, int p )
+    {
+        if ( sorted.length == 0 )
+        {
+            return 0;
+        }
+        int rank = (int) Math.ceil( (p / 100.0) * sorted.length );
+        return sorted[Math.max( 0, rank - 1 )];
+    }
+
+    private static double millis( long nanos )
+    {
+        return Math.round( nanos / (double) TimeUnit.MILLISECONDS.toNanos( 1 ) * 1000 ) / 1000.0;
+    }
+
+    private static double rate( long count, double seconds )
+    {
+        return (seconds > 0) ? Math.round( count / seconds * 1000 ) / 1000.0 : 0;
+    }
+}
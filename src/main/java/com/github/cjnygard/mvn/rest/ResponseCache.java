@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A content addressed, on-disk cache of REST response bodies.
+ *
+ * Entries are stored under <code>dir/xx/key</code>, where <code>key</code> is
+ * the request fingerprint and <code>xx</code> its first two characters. New
+ * entries are written to a temporary file and moved into place atomically, so
+ * several builds may share the same cache directory. The modification time of
+ * an entry is updated on every hit and is used to evict the least recently
+ * used entries once the cache grows past its size limit.
+ */
+public class ResponseCache
+{
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static final long STALE_TMP_AGE = 24L * 60 * 60 * 1000;
+
+    private final File dir;
+
+    private final long maxSize;
+
+    private final AtomicLong size = new AtomicLong( -1 );
+
+    /**
+     * @param dir
+     *            the cache directory, shared between builds
+     * @param maxSize
+     *            the size limit of the cache in bytes
+     */
+    public ResponseCache( File dir, long maxSize )
+    {
+        this.dir = dir;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Copy a cached response body to an output file.
+     *
+     * The entry is copied to a temporary file next to the output, which then
+     * replaces the output atomically. The output is never linked to the
+     * entry, so writing to the output later cannot change the response
+     * cached for other builds, and an existing output stays in place until
+     * the copy is complete.
+     *
+     * @param key
+     *            the request fingerprint
+     * @param output
+     *            the file to create
+     * @return <code>true</code> on a cache hit, <code>false</code> if the
+     *         entry does not exist
+     * @throws IOException
+     *             if the output cannot be written
+     */
+    public boolean retrieve( String key, File output ) throws IOException
+    {
+        Path entry = entry( key );
+        Path target = output.getAbsoluteFile().toPath();
+        Path tmp = null;
+        try
+        {
+            Files.setLastModifiedTime( entry, FileTime.fromMillis( System.currentTimeMillis() ) );
+            Files.createDirectories( target.getParent() );
+            tmp = Files.createTempFile( target.getParent(), "." + output.getName(), ".part" );
+            Files.copy( entry, tmp, StandardCopyOption.REPLACE_EXISTING );
+            try
+            {
+                Files.move( tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            }
+            catch ( AtomicMoveNotSupportedException ex )
+            {
+                Files.move( tmp, target, StandardCopyOption.REPLACE_EXISTING );
+            }
+            return true;
+        }
+        catch ( NoSuchFileException ex )
+        {
+            // not cached, or evicted by another build
+            return false;
+        }
+        finally
+        {
+            if ( null != tmp )
+            {
+                Files.deleteIfExists( tmp );
+            }
+        }
+    }
+
+    /**
+     * Add a response body to the cache.
+     *
+     * @param key
+     *            the request fingerprint
+     * @param body
+     *            the file holding the response body
+     * @throws IOException
+     *             if the entry cannot be written
+     */
+    public void store( String key, File body ) throws IOException
+    {
+        Path entry = entry( key );
+        Files.createDirectories( entry.getParent() );
+        Path tmp = Files.createTempFile( entry.getParent(), key, TMP_SUFFIX );
+        try
+        {
+            Files.copy( body.toPath(), tmp, StandardCopyOption.REPLACE_EXISTING );
+            Files.move( tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        finally
+        {
+            Files.deleteIfExists( tmp );
+        }
+        if ( size.get() < 0 )
+        {
+            trim();
+        }
+        else if ( size.addAndGet( body.length() ) > maxSize )
+        {
+            trim();
+        }
+    }
+
+    /**
+     * Evict the least recently used entries until the cache is within its
+     * size limit.
+     *
+     * @throws IOException
+     *             if the cache directory cannot be read
+     */
+    public synchronized void trim() throws IOException
+    {
+        if ( !dir.isDirectory() )
+        {
+            size.set( 0 );
+            return;
+        }
+        final List<Path> entries = new ArrayList<>();
+        final List<BasicFileAttributes> attributes = new ArrayList<>();
+        final long staleBefore = System.currentTimeMillis() - STALE_TMP_AGE;
+        Files.walkFileTree( dir.toPath(), new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile( Path file, BasicFileAttributes attrs )
+            {
+                if ( !file.getFileName().toString().endsWith( TMP_SUFFIX ) )
+                {
+                    entries.add( file );
+                    attributes.add( attrs );
+                }
+                else if ( attrs.lastModifiedTime().toMillis() < staleBefore )
+                {
+                    // left behind by a build that was killed while storing
+                    file.toFile().delete();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed( Path file, IOException exc )
+            {
+                // removed by a concurrent build
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+
+        long total = 0;
+        List<Integer> order = new ArrayList<>();
+        for ( int i = 0; i < entries.size(); i++ )
+        {
+            total += attributes.get( i ).size();
+            order.add( i );
+        }
+        Collections.sort( order, new Comparator<Integer>()
+        {
+            @Override
+            public int compare( Integer a, Integer b )
+            {
+                return attributes.get( a ).lastModifiedTime().compareTo( attributes.get( b ).lastModifiedTime() );
+            }
+        } );
+        for ( int i = 0; (i < order.size()) && (total > maxSize); i++ )
+        {
+            int idx = order.get( i );
+            Files.deleteIfExists( entries.get( idx ) );
+            total -= attributes.get( idx ).size();
+        }
+        size.set( total );
+    }
+
+    private Path entry( String key )
+    {
+        return new File( new File( dir, key.substring( 0, 2 ) ), key ).toPath();
+    }
+}
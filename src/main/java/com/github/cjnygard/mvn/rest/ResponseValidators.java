@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+/**
+ * The <code>ETag</code> and <code>Last-Modified</code> validators of a
+ * downloaded response, kept in a file of their own outside the output
+ * directory.
+ *
+ * On the next download the validators are sent as
+ * <code>If-None-Match</code> and <code>If-Modified-Since</code>, so the
+ * service can answer <code>304 Not Modified</code> and the output is kept
+ * without transferring it again. The validators are only used while the
+ * output file exists and the request configuration is unchanged.
+ */
+public class ResponseValidators
+{
+
+    private static final String ETAG = "etag";
+
+    private static final String LAST_MODIFIED = "lastModified";
+
+    private static final String FINGERPRINT = "fingerprint";
+
+    private final File file;
+
+    private final File output;
+
+    private final String fingerprint;
+
+    /**
+     * @param file
+     *            the file holding the validators
+     * @param output
+     *            the output file of the download
+     * @param fingerprint
+     *            the fingerprint of the request configuration
+     */
+    public ResponseValidators( File file, File output, String fingerprint )
+    {
+        this.file = file;
+        this.output = output;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @return the file holding the validators
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Read the validators of the previous download.
+     *
+     * @return the conditional request headers, empty if the output must be
+     *         downloaded unconditionally
+     * @throws IOException
+     *             if the validators exist but cannot be read
+     */
+    public Map<String, String> getRequestHeaders() throws IOException
+    {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if ( !output.isFile() || !file.isFile() )
+        {
+            return headers;
+        }
+        Properties properties = new Properties();
+        try ( InputStream in = Files.newInputStream( file.toPath() ) )
+        {
+            properties.load( in );
+        }
+        if ( !fingerprint.equals( properties.getProperty( FINGERPRINT ) ) )
+        {
+            return headers;
+        }
+        if ( null != properties.getProperty( ETAG ) )
+        {
+            headers.put( HttpHeaders.IF_NONE_MATCH, properties.getProperty( ETAG ) );
+        }
+        if ( null != properties.getProperty( LAST_MODIFIED ) )
+        {
+            headers.put( HttpHeaders.IF_MODIFIED_SINCE, properties.getProperty( LAST_MODIFIED ) );
+        }
+        return headers;
+    }
+
+    /**
+     * Store the validators of a response that was written to the output
+     * file, or remove them if the response has none.
+     *
+     * @param response
+     *            the response
+     * @throws IOException
+     *             if the validators cannot be written
+     */
+    public void save( Response response ) throws IOException
+    {
+        String etag = response.getHeaderString( HttpHeaders.ETAG );
+        String lastModified = response.getHeaderString( HttpHeaders.LAST_MODIFIED );
+        if ( (null == etag) && (null == lastModified) )
+        {
+            Files.deleteIfExists( file.toPath() );
+            return;
+        }
+        Properties properties = new Properties();
+        properties.setProperty( FINGERPRINT, fingerprint );
+        if ( null != etag )
+        {
+            properties.setProperty( ETAG, etag );
+        }
+        if ( null != lastModified )
+        {
+            properties.setProperty( LAST_MODIFIED, lastModified );
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        if ( !dir.isDirectory() && !dir.mkdirs() )
+        {
+            throw new IOException( String.format( "Unable to create path [%s]", dir ) );
+        }
+        File tmp = File.createTempFile( file.getName(), ".tmp", dir );
+        try
+        {
+            try ( OutputStream out = Files.newOutputStream( tmp.toPath() ) )
+            {
+                properties.store( out, "rest-maven-plugin response validators" );
+            }
+            Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE );
+        }
+        finally
+        {
+            Files.deleteIfExists( tmp.toPath() );
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides whether a failed REST request is sent again, and how long to wait
+ * before it is.
+ *
+ * Retryable failures are the configured HTTP status codes and, optionally,
+ * transport errors (reported with status -1). The delay grows exponentially
+ * from <code>initialDelay</code> up to <code>maxDelay</code> with full
+ * jitter, so that many failed requests do not all come back at the same
+ * moment. A <code>Retry-After</code> header sent by the server is honored
+ * up to <code>maxDelay</code>. The total number of retries of a build is
+ * limited by a shared budget.
+ */
+public class RetryPolicy
+{
+
+    private final int maxRetries;
+
+    private final Set<Integer> statuses = new HashSet<>();
+
+    private final Set<Integer> families = new HashSet<>();
+
+    private final boolean retryTransportErrors;
+
+    private final long initialDelay;
+
+    private final long maxDelay;
+
+    private final AtomicInteger budget;
+
+    /**
+     * @param maxRetries
+     *            the maximum number of retries of a single request
+     * @param statuses
+     *            comma separated status codes, or families such as
+     *            <code>5xx</code>, that are retried
+     * @param retryTransportErrors
+     *            <code>true</code> to retry requests that failed without a
+     *            response
+     * @param initialDelay
+     *            the delay in milliseconds before the first retry
+     * @param maxDelay
+     *            the maximum delay in milliseconds before a retry
+     * @param budget
+     *            the maximum number of retries of all requests
+     */
+    public RetryPolicy( int maxRetries, String statuses, boolean retryTransportErrors, long initialDelay,
+            long maxDelay, int budget )
+    {
+        Validate.isTrue( maxRetries >= 0, "maxRetries must not be negative" );
+        Validate.isTrue( initialDelay >= 0, "retryInitialDelay must not be negative" );
+        Validate.isTrue( maxDelay >= initialDelay, "retryMaxDelay must not be less than retryInitialDelay" );
+        this.maxRetries = maxRetries;
+        this.retryTransportErrors = retryTransportErrors;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.budget = new AtomicInteger( budget );
+        if ( null != statuses )
+        {
+            for ( String s : statuses.split( "," ) )
+            {
+                String status = s.trim().toLowerCase( Locale.ENGLISH );
+                if ( status.isEmpty() )
+                {
+                    continue;
+                }
+                try
+                {
+                    if ( status.matches( "[1-5]xx" ) )
+                    {
+                        families.add( status.charAt( 0 ) - '0' );
+                    }
+                    else
+                    {
+                        this.statuses.add( Integer.valueOf( status ) );
+                    }
+                }
+                catch ( NumberFormatException ex )
+                {
+                    throw new IllegalArgumentException( String.format( "Invalid retry status [%s]", s ), ex );
+                }
+            }
+        }
+    }
+
+    /**
+     * @param status
+     *            the HTTP status, or -1 if the request failed without a
+     *            response
+     * @return <code>true</code> if a failure with this status may be retried
+     */
+    public boolean isRetryable( int status )
+    {
+        if ( status < 0 )
+        {
+            return retryTransportErrors;
+        }
+        return statuses.contains( status ) || families.contains( status / 100 );
+    }
+
+    /**
+     * Decide whether a failed request is retried, and take a retry from the
+     * budget if it is.
+     *
+     * @param status
+     *            the HTTP status, or -1 if the request failed without a
+     *            response
+     * @param retries
+     *            the number of times the request has already been retried
+     * @return <code>true</code> if the request should be sent again
+     */
+    public boolean shouldRetry( int status, int retries )
+    {
+        if ( (retries >= maxRetries) || !isRetryable( status ) )
+        {
+            return false;
+        }
+        while ( true )
+        {
+            int left = budget.get();
+            if ( left <= 0 )
+            {
+                return false;
+            }
+            if ( budget.compareAndSet( left, left - 1 ) )
+            {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return the number of retries left in the budget
+     */
+    public int getRemainingBudget()
+    {
+        return Math.max( 0, budget.get() );
+    }
+
+    /**
+     * @param retries
+     *            the number of times the request has already been retried
+     * @param retryAfter
+     *            the <code>Retry-After</code> header of the failed response,
+     *            or <code>null</code>
+     * @return the delay in milliseconds before the request is sent again
+     */
+    public long delay( int retries, String retryAfter )
+    {
+        long backoff = initialDelay << Math.min( retries, 30 );
+        if ( (backoff <= 0) || (backoff > maxDelay) )
+        {
+            backoff = maxDelay;
+        }
+        long delay = (backoff > 0) ? ThreadLocalRandom.current().nextLong( backoff + 1 ) : 0;
+        long requested = parseRetryAfter( retryAfter );
+        if ( requested > delay )
+        {
+            delay = Math.min( requested, maxDelay );
+        }
+        return delay;
+    }
+
+    /**
+     * @param retryAfter
+     *            delay seconds or an HTTP date
+     * @return the requested delay in milliseconds, or -1 if there is none
+     */
+    static long parseRetryAfter( String retryAfter )
+    {
+        if ( (null == retryAfter) || retryAfter.trim().isEmpty() )
+        {
+            return -1;
+        }
+        String value = retryAfter.trim();
+        try
+        {
+            return Math.max( 0, Long.parseLong( value ) * 1000 );
+        }
+        catch ( NumberFormatException ex )
+        {
+            SimpleDateFormat format = new SimpleDateFormat( "EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US );
+            try
+            {
+                return Math.max( 0, format.parse( value ).getTime() - System.currentTimeMillis() );
+            }
+            catch ( ParseException pe )
+            {
+                return -1;
+            }
+        }
+    }
+}
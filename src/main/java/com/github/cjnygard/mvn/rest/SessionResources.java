@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cjnygard.mvn.rest;
+
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
+
+/**
+ * Shares objects between all executions of the plugin in one Maven session.
+ *
+ * The objects are kept in the session data of the repository session, which
+ * lives as long as the build and is visible to every module, including
+ * modules built in parallel.
+ */
+public final class SessionResources
+{
+
+    private static final String PREFIX = SessionResources.class.getName() + ":";
+
+    /**
+     * Hide constructor for utility classes.
+     */
+    private SessionResources()
+    {
+    }
+
+    /**
+     * Get the object shared under a key, registering a candidate if there is
+     * none yet.
+     *
+     * @param session
+     *            the Maven session, or <code>null</code> if the mojo runs
+     *            outside a build
+     * @param key
+     *            identifies the object within the session
+     * @param candidate
+     *            the object to share if there is none yet
+     * @param <T>
+     *            the type of the object
+     * @return the shared object, or the candidate if it was registered or
+     *         nothing can be shared
+     */
+    @SuppressWarnings( "unchecked" )
+    public static <T> T shared( MavenSession session, String key, T candidate )
+    {
+        RepositorySystemSession repositorySession = (null == session) ? null : session.getRepositorySession();
+        if ( (null == repositorySession) || (null == repositorySession.getData()) )
+        {
+            return candidate;
+        }
+        SessionData data = repositorySession.getData();
+        String name = PREFIX + key;
+        while ( true )
+        {
+            Object existing = data.get( name );
+            if ( null != existing )
+            {
+                return (T) existing;
+            }
+            if ( data.set( name, null, candidate ) )
+            {
+                return candidate;
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.cjnygard.mvn.rest;
+
+import junit.framework.TestCase;
+
+public class AdaptiveLimitTest
+        extends TestCase {
+
+    private static final long RTT = 60L * 1000 * 1000 * 1000;
+
+    /**
+     * @throws Exception if any
+     */
+    public void testGrowsWhileBusyUpToMaximum()
+            throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit(1, 2, 10);
+        int inFlight = 0;
+        for (int i = 0; i < 50; i++) {
+            for (; inFlight < limit.getLimit(); inFlight++) {
+                limit.acquire();
+            }
+            limit.sample(RTT, false);
+        }
+        assertEquals(10, limit.getLimit());
+        assertEquals(10, limit.getPeak());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testIdleDoesNotGrow()
+            throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit(1, 4, 10);
+        limit.acquire();
+        limit.sample(RTT, false);
+        limit.release();
+        assertEquals(4, limit.getLimit());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testCutOnceOnOverload()
+            throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit(2, 8, 10);
+        assertTrue(limit.sample(RTT, true) < 0);
+        assertEquals(6, limit.getLimit());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("Once per round trip", 0, limit.sample(RTT, true));
+        }
+        assertEquals(6, limit.getLimit());
+
+        limit = new AdaptiveLimit(2, 8, 10);
+        for (int i = 0; i < 10; i++) {
+            limit.sample(0, true);
+        }
+        assertEquals("Never below the minimum", 2, limit.getLimit());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testRisingLatencyCutsLimit()
+            throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit(1, 10, 10);
+        limit.sample(1000, false);
+        for (int i = 0; i < 20; i++) {
+            limit.sample(10000, false);
+        }
+        assertTrue(String.valueOf(limit.getLimit()), limit.getLimit() < 10);
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testLowestLatencyExpires()
+            throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit(1, 2, 10);
+        // a single fast response makes the usual latency look like queueing
+        limit.sample(1, false);
+        int inFlight = 0;
+        for (int i = 0; i < 3 * AdaptiveLimit.MIN_RTT_WINDOW; i++) {
+            for (; inFlight < limit.getLimit(); inFlight++) {
+                limit.acquire();
+            }
+            limit.sample(RTT, false);
+        }
+        assertEquals("Grows again once the fast response is forgotten", 10, limit.getLimit());
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.cjnygard.mvn.rest;
+
+import junit.framework.TestCase;
+
+public class CircuitBreakerTest
+        extends TestCase {
+
+    /**
+     * @throws Exception if any
+     */
+    public void testOpensAfterConsecutiveFailures()
+            throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(3, 60000);
+        assertFalse(breaker.recordFailure());
+        assertFalse(breaker.recordFailure());
+        breaker.recordSuccess();
+        assertFalse(breaker.recordFailure());
+        assertFalse(breaker.recordFailure());
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.recordFailure());
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowRequest());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testTrialRequestAfterCooldown()
+            throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0);
+        assertTrue(breaker.recordFailure());
+        assertTrue("Trial request", breaker.allowRequest());
+        assertFalse("Only one trial request", breaker.allowRequest());
+        breaker.recordFailure();
+        assertTrue(breaker.isOpen());
+        assertTrue(breaker.allowRequest());
+        breaker.recordSuccess();
+        assertFalse(breaker.isOpen());
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testDisabled()
+            throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(0, 0);
+        for (int i = 0; i < 100; i++) {
+            assertFalse(breaker.recordFailure());
+        }
+        assertTrue(breaker.allowRequest());
+    }
+}
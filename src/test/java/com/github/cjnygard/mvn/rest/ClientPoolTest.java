@@ -0,0 +1,108 @@
+package com.github.cjnygard.mvn.rest;
+
+import javax.ws.rs.client.Client;
+
+import junit.framework.TestCase;
+
+public class ClientPoolTest
+        extends TestCase {
+
+    private static ClientFactory factory(String connector) {
+        ClientFactory factory = new ClientFactory();
+        factory.setConnector(connector);
+        return factory;
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testSameSettingsShareAClient()
+            throws Exception {
+        ClientPool pool = new ClientPool();
+        Client first = pool.lease(factory(ClientFactory.DEFAULT));
+        Client second = pool.lease(factory(ClientFactory.DEFAULT));
+        Client other = pool.lease(factory(ClientFactory.APACHE));
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertEquals(2, pool.size());
+
+        pool.release(first, 0);
+        assertEquals("Still leased once", 2, pool.size());
+        pool.release(second, 0);
+        pool.release(other, 0);
+        assertEquals(0, pool.size());
+        assertNotSame(first, pool.lease(factory(ClientFactory.DEFAULT)));
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testReleasedClientLingers()
+            throws Exception {
+        ClientPool pool = new ClientPool();
+        Client first = pool.lease(factory(ClientFactory.DEFAULT));
+        pool.release(first, 60000);
+        Client second = pool.lease(factory(ClientFactory.DEFAULT));
+        assertSame("Reused while lingering", first, second);
+
+        pool.release(second, 50);
+        long end = System.currentTimeMillis() + 5000;
+        while ((pool.size() > 0) && (System.currentTimeMillis() < end)) {
+            Thread.sleep(10);
+        }
+        assertEquals("Closed once idle", 0, pool.size());
+    }
+
+    private static boolean closerRunning()
+            throws Exception {
+        long end = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < end) {
+            boolean running = false;
+            for (Thread t : Thread.getAllStackTraces().keySet()) {
+                running |= t.isAlive() && "rest-client-closer".equals(t.getName());
+            }
+            if (!running) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testCloseReleasesEverything()
+            throws Exception {
+        ClientPool pool = new ClientPool();
+        Client leased = pool.lease(factory(ClientFactory.DEFAULT));
+        Client lingering = pool.lease(factory(ClientFactory.APACHE));
+        pool.release(lingering, 60000);
+        assertEquals(2, pool.size());
+
+        pool.close();
+        assertEquals(0, pool.size());
+        try {
+            leased.target("http://localhost/");
+            fail("Client left open");
+        } catch (IllegalStateException ex) {
+            // closed
+        }
+        assertFalse("Closer thread left running", closerRunning());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testCloserStopsOnceEmpty()
+            throws Exception {
+        ClientPool pool = new ClientPool();
+        pool.release(pool.lease(factory(ClientFactory.DEFAULT)), 20);
+        long end = System.currentTimeMillis() + 5000;
+        while ((pool.size() > 0) && (System.currentTimeMillis() < end)) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, pool.size());
+        assertFalse("Closer thread left running", closerRunning());
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.cjnygard.mvn.rest;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class CompletionJournalTest
+        extends TestCase {
+
+    private File dir;
+
+    private File journalFile;
+
+    @Override
+    protected void setUp()
+            throws Exception {
+        super.setUp();
+        dir = Files.createTempDirectory("journal").toFile();
+        journalFile = new File(dir, "journal/default.journal");
+    }
+
+    @Override
+    protected void tearDown()
+            throws Exception {
+        FileUtils.deleteDirectory(dir);
+        super.tearDown();
+    }
+
+    private File file(String name, String content)
+            throws Exception {
+        File f = new File(dir, name);
+        Files.write(f.toPath(), content.getBytes());
+        return f;
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testResumeSkipsOnlyCompletedFiles()
+            throws Exception {
+        File a = file("a.json", "a");
+        File b = file("b.json", "b");
+        File c = file("c.json", "c");
+        File aOut = file("a.out", "A");
+        File bOut = file("b.out", "B");
+        File cOut = file("c.out", "C");
+
+        CompletionJournal journal = new CompletionJournal(journalFile);
+        journal.open(false);
+        journal.failed(a, "fa");
+        journal.completed(a, "fa", aOut);
+        journal.failed(b, "fb");
+        journal.completed(c, "fc", cOut);
+        journal.close();
+
+        CompletionJournal resumed = new CompletionJournal(journalFile);
+        resumed.open(true);
+        assertEquals(2, resumed.getCompletedCount());
+        assertTrue(resumed.isCompleted(a, "fa", aOut));
+        assertFalse("Failed files are sent again", resumed.isCompleted(b, "fb", bOut));
+        assertFalse("Changed requests are sent again", resumed.isCompleted(c, "changed", cOut));
+        Files.write(cOut.toPath(), "modified".getBytes());
+        assertFalse("Modified outputs are written again", resumed.isCompleted(c, "fc", cOut));
+        resumed.close();
+        assertEquals("Superseded entries are compacted", 3, Files.readAllLines(journalFile.toPath()).size());
+
+        CompletionJournal restarted = new CompletionJournal(journalFile);
+        restarted.open(false);
+        assertEquals(0, restarted.getCompletedCount());
+        assertFalse(restarted.isCompleted(a, "fa", aOut));
+        restarted.close();
+        assertEquals(0, journalFile.length());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testEntriesSurviveWithoutClose()
+            throws Exception {
+        File a = file("a.json", "a");
+        File aOut = file("a.out", "A");
+        CompletionJournal journal = new CompletionJournal(journalFile);
+        journal.open(false);
+        journal.completed(a, "fa", aOut);
+        // a build killed while writing the next entry
+        Files.write(journalFile.toPath(), "done\tf".getBytes(), StandardOpenOption.APPEND);
+
+        CompletionJournal resumed = new CompletionJournal(journalFile);
+        resumed.open(true);
+        assertTrue(resumed.isCompleted(a, "fa", aOut));
+        assertEquals(1, resumed.getCompletedCount());
+        resumed.close();
+        journal.close();
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testDeleteStartsOver()
+            throws Exception {
+        File a = file("a.json", "a");
+        File aOut = file("a.out", "A");
+        CompletionJournal journal = new CompletionJournal(journalFile);
+        journal.open(true);
+        journal.completed(a, "fa", aOut);
+        journal.delete();
+        assertFalse(journalFile.exists());
+
+        CompletionJournal resumed = new CompletionJournal(journalFile);
+        resumed.open(true);
+        assertEquals(0, resumed.getCompletedCount());
+        assertFalse(resumed.isCompleted(a, "fa", aOut));
+        resumed.close();
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.cjnygard.mvn.rest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class DeadlineTest
+        extends TestCase {
+
+    /**
+     * @throws Exception if any
+     */
+    public void testNoDeadline()
+            throws Exception {
+        Deadline deadline = new Deadline(0);
+        deadline.start();
+        assertFalse(deadline.isSet());
+        assertFalse(deadline.isExpired());
+        assertEquals(Long.MAX_VALUE, deadline.remaining(TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testExpiryTasksRun()
+            throws Exception {
+        final CountDownLatch expired = new CountDownLatch(1);
+        Deadline deadline = new Deadline(50);
+        deadline.onExpiry(new Runnable() {
+            @Override
+            public void run() {
+                expired.countDown();
+            }
+        });
+        deadline.start();
+        try {
+            assertTrue(deadline.remaining(TimeUnit.MILLISECONDS) <= 50);
+            assertTrue(expired.await(5, TimeUnit.SECONDS));
+            assertTrue(deadline.isExpired());
+            assertEquals(0, deadline.remaining(TimeUnit.MILLISECONDS));
+        } finally {
+            deadline.cancel();
+        }
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testDispatcherStopsWaiting()
+            throws Exception {
+        RequestDispatcher dispatcher = new RequestDispatcher(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        dispatcher.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        });
+        assertFalse(dispatcher.await(50, TimeUnit.MILLISECONDS));
+        assertTrue("Unfinished tasks are interrupted", interrupted.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.cjnygard.mvn.rest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class DuplicateRequestsTest
+        extends TestCase {
+
+    private final List<String> completed = new ArrayList<>();
+
+    private static FileRequest request(String name, String key) {
+        return new FileRequest(new File(name), name, new File(name + ".out"), null, key);
+    }
+
+    private DuplicateRequests.Waiter<String> waiter(final FileRequest duplicate) {
+        return new DuplicateRequests.Waiter<String>() {
+            @Override
+            public void completed(FileRequest source, String result) {
+                completed.add(duplicate.getOutputFilename() + "<" + source.getOutputFilename() + ":" + result);
+            }
+        };
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testDuplicatesWaitForTheFirstRequest()
+            throws Exception {
+        DuplicateRequests<String> duplicates = new DuplicateRequests<String>();
+        Object owner = new Object();
+        FileRequest a = request("a", "k1");
+        FileRequest b = request("b", "k1");
+        FileRequest c = request("c", "k2");
+        assertNull(duplicates.add(owner, a));
+        assertNull(duplicates.add(owner, c));
+        DuplicateRequests.Source<String> source = duplicates.add(owner, b);
+        assertSame(a, source.getRequest());
+        assertTrue(source.attach(waiter(b)));
+        assertEquals(2, duplicates.size());
+
+        duplicates.complete(b, null);
+        assertTrue("Only the first request completes its duplicates", completed.isEmpty());
+        duplicates.complete(a, null);
+        assertEquals("[b<a:null]", completed.toString());
+        duplicates.complete(a, "again");
+        assertEquals(1, completed.size());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testLateDuplicateUsesTheResult()
+            throws Exception {
+        DuplicateRequests<String> duplicates = new DuplicateRequests<String>();
+        Object owner = new Object();
+        FileRequest a = request("a", "k1");
+        assertNull(duplicates.add(owner, a));
+        duplicates.complete(a, "failed");
+
+        FileRequest b = request("b", "k1");
+        DuplicateRequests.Source<String> source = duplicates.add(new Object(), b);
+        assertFalse(source.attach(waiter(b)));
+        assertEquals("failed", source.getResult());
+        assertTrue(completed.isEmpty());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testReleaseAbandonsUnsentRequests()
+            throws Exception {
+        DuplicateRequests<String> duplicates = new DuplicateRequests<String>();
+        Object first = new Object();
+        Object second = new Object();
+        FileRequest a = request("a", "k1");
+        FileRequest b = request("b", "k1");
+        FileRequest c = request("c", "k2");
+        assertNull(duplicates.add(first, a));
+        assertNull(duplicates.add(second, c));
+        assertTrue(duplicates.add(second, b).attach(waiter(b)));
+
+        duplicates.release(first, "abandoned");
+        assertEquals("[b<a:abandoned]", completed.toString());
+        assertEquals(1, duplicates.size());
+        assertNull("The request is sent again once its owner is gone", duplicates.add(second, request("d", "k1")));
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.cjnygard.mvn.rest;
+
+import java.net.URI;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class EndpointBalancerTest
+        extends TestCase {
+
+    private static final URI A = URI.create("http://a:3001/");
+
+    private static final URI B = URI.create("http://b:3001/");
+
+    /**
+     * @throws Exception if any
+     */
+    public void testLeastOutstanding()
+            throws Exception {
+        EndpointBalancer balancer = new EndpointBalancer(Arrays.asList(A, B), 3);
+        EndpointBalancer.Replica first = balancer.acquire();
+        EndpointBalancer.Replica second = balancer.acquire();
+        assertFalse(first.getUri().equals(second.getUri()));
+        balancer.release(first, false);
+        assertEquals(first.getUri(), balancer.acquire().getUri());
+        assertEquals(Arrays.asList(1, 1), balancer.getOutstanding());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testEjectAfterConsecutiveFailures()
+            throws Exception {
+        EndpointBalancer balancer = new EndpointBalancer(Arrays.asList(A, B), 2);
+        EndpointBalancer.Replica a = acquire(balancer, A);
+        assertFalse(balancer.release(a, true));
+        a = acquire(balancer, A);
+        assertTrue(balancer.release(a, true));
+        assertEquals(Arrays.asList(A), balancer.getEjected());
+        for (int i = 0; i < 5; i++) {
+            EndpointBalancer.Replica r = balancer.acquire();
+            assertEquals(B, r.getUri());
+            balancer.release(r, false);
+        }
+
+        EndpointBalancer.Replica b = balancer.acquire();
+        balancer.release(b, true);
+        b = balancer.acquire();
+        balancer.release(b, true);
+        assertEquals("Requests still go out when all endpoints are ejected",
+                2, balancer.getEjected().size());
+        EndpointBalancer.Replica any = balancer.acquire();
+        balancer.release(any, false);
+        assertEquals("A success reinstates", 1, balancer.getEjected().size());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testProbeReinstates()
+            throws Exception {
+        EndpointBalancer balancer = new EndpointBalancer(Arrays.asList(A, B), 1);
+        balancer.release(acquire(balancer, A), true);
+        assertEquals(Arrays.asList(A), balancer.getEjected());
+        balancer.startProbing(new EndpointBalancer.Probe() {
+            @Override
+            public boolean isHealthy(URI uri) {
+                return true;
+            }
+        }, 10);
+        try {
+            for (int i = 0; (i < 500) && !balancer.getEjected().isEmpty(); i++) {
+                Thread.sleep(10);
+            }
+            assertTrue(balancer.getEjected().isEmpty());
+        } finally {
+            balancer.close();
+        }
+    }
+
+    private EndpointBalancer.Replica acquire(EndpointBalancer balancer, URI uri) {
+        while (true) {
+            EndpointBalancer.Replica r = balancer.acquire();
+            if (r.getUri().equals(uri)) {
+                return r;
+            }
+            balancer.release(r, false);
+        }
+    }
+}
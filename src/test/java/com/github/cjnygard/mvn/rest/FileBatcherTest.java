@@ -0,0 +1,65 @@
+package com.github.cjnygard.mvn.rest;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class FileBatcherTest
+        extends TestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp()
+            throws Exception {
+        super.setUp();
+        dir = Files.createTempDirectory("batches").toFile();
+    }
+
+    @Override
+    protected void tearDown()
+            throws Exception {
+        FileUtils.deleteDirectory(dir);
+        super.tearDown();
+    }
+
+    private FileRequest request(String name, int size)
+            throws Exception {
+        File input = new File(dir, name);
+        Files.write(input.toPath(), new byte[size]);
+        return new FileRequest(input, name, new File(dir, name + ".out"), null, null);
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testBatchSize()
+            throws Exception {
+        FileBatcher batcher = new FileBatcher(2, 0);
+        assertNull(batcher.add(request("a", 1)));
+        assertNull(batcher.add(request("b", 1)));
+        List<FileRequest> full = batcher.add(request("c", 1));
+        assertEquals(2, full.size());
+        assertEquals("a", full.get(0).getOutputFilename());
+        assertEquals(1, batcher.flush().size());
+        assertTrue(batcher.flush().isEmpty());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testBatchBytes()
+            throws Exception {
+        FileBatcher batcher = new FileBatcher(0, 100);
+        assertNull(batcher.add(request("a", 60)));
+        assertEquals(1, batcher.add(request("b", 60)).size());
+        assertEquals("An oversized file gets a batch of its own",
+                1, batcher.add(request("c", 500)).size());
+        assertEquals(1, batcher.add(request("d", 1)).size());
+        assertEquals(1, batcher.flush().size());
+    }
+}
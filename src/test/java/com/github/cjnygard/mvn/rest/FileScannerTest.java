@@ -0,0 +1,239 @@
+package com.github.cjnygard.mvn.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.model.FileSet;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.StringUtils;
+
+import junit.framework.TestCase;
+
+public class FileScannerTest
+        extends TestCase {
+
+    private Path root;
+
+    @Override
+    protected void setUp()
+            throws Exception {
+        root = Files.createTempDirectory("rest-scan");
+        for (String name : new String[] {"x.md", "y.txt", "a/x.md", "a/b/z.md", "a/b/c/w.txt", "CVS/r.md",
+                "docs/p.md", "docs/q.MD"}) {
+            Path file = root.resolve(name);
+            Files.createDirectories(file.getParent());
+            Files.write(file, name.getBytes("UTF-8"));
+        }
+    }
+
+    @Override
+    protected void tearDown()
+            throws Exception {
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    private FileSet fileset(String directory, String includes, String excludes) {
+        FileSet fs = new FileSet();
+        fs.setDirectory(directory);
+        fs.setIncludes(Arrays.asList(StringUtils.split(includes, ",")));
+        fs.setExcludes(Arrays.asList(StringUtils.split(excludes, ",")));
+        return fs;
+    }
+
+    private List<File> scan(FileSet... filesets)
+            throws IOException {
+        return new FileScanner(4).scan(Arrays.asList(filesets));
+    }
+
+    private static List<String> sorted(List<File> files) {
+        List<String> names = new ArrayList<>();
+        for (File f : files) {
+            names.add(f.getPath());
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private static String withDefaultExcludes(String excludes) {
+        return excludes.isEmpty() ? FileUtils.getDefaultExcludesAsString()
+                : excludes + "," + FileUtils.getDefaultExcludesAsString();
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testSameFilesAsDirectoryScanner()
+            throws Exception {
+        String[][] patterns = {
+            {"**", ""},
+            {"**/*.md", ""},
+            {"*.md", ""},
+            {"**/*.md", "a/**"},
+            {"**/*.md", "**/CVS/**, docs/"},
+            {"a/", "**/c/**"},
+            {"a/*/*.md, ?.txt", ""},
+            {"**/b/**", ""},
+            {"%regex[.*\\.txt]", ""},
+            {"", ""},
+        };
+        for (String[] p : patterns) {
+            List<File> expected = FileUtils.getFiles(root.toFile(), p[0], withDefaultExcludes(p[1]));
+            List<File> actual = scan(fileset(root.toString(), p[0], p[1]));
+            assertEquals(Arrays.toString(p), sorted(expected), sorted(actual));
+        }
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testOverlappingFilesetsAreDeduplicated()
+            throws Exception {
+        List<File> files = scan(fileset(root.toString(), "**/*.md", ""),
+                fileset(root.resolve("a").toString(), "**", ""),
+                fileset(root.resolve("a/../a").toString(), "**/*.md", ""));
+        List<String> canonical = new ArrayList<>();
+        for (File f : files) {
+            canonical.add(f.getCanonicalPath());
+        }
+        Collections.sort(canonical);
+        assertEquals(sorted(FileUtils.getFiles(root.toFile().getCanonicalFile(), "**/*.md, a/**",
+                withDefaultExcludes(""))), canonical);
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testDefaultExcludes()
+            throws Exception {
+        for (String name : new String[] {".git/config", "a/.git/objects/x.md", "foo~", "docs/p.md~", ".DS_Store"}) {
+            Path file = root.resolve(name);
+            Files.createDirectories(file.getParent());
+            Files.write(file, name.getBytes("UTF-8"));
+        }
+        List<File> files = scan(fileset(root.toString(), "**/*", ""));
+        assertEquals(7, files.size());
+        for (File f : files) {
+            String path = f.getPath();
+            assertFalse(path, path.contains(".git") || path.endsWith("~") || path.endsWith(".DS_Store")
+                    || path.contains("CVS"));
+        }
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testLinkedDirectoriesAreDeduplicated()
+            throws Exception {
+        try {
+            Files.createSymbolicLink(root.resolve("link"), root.resolve("a"));
+        } catch (UnsupportedOperationException | IOException ex) {
+            return;
+        }
+        List<File> files = scan(fileset(root.toString(), "**/z.md", ""));
+        assertEquals(1, files.size());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testUnreadableDirectoriesAreSkipped()
+            throws Exception {
+        List<String> expected = sorted(scan(fileset(root.toString(), "**/*.md", "")));
+        expected.remove(root.resolve("a/b/z.md").toString());
+        File locked = root.resolve("a/b").toFile();
+        assertTrue(locked.setReadable(false, false));
+        assertTrue(locked.setExecutable(false, false));
+        try {
+            if (locked.canRead()) {
+                // the superuser reads every directory
+                return;
+            }
+            final List<File> skipped = Collections.synchronizedList(new ArrayList<File>());
+            List<File> files = new FileScanner(4, new FileScanner.Listener() {
+                @Override
+                public void skipped(File path, IOException ex) {
+                    skipped.add(path);
+                }
+            }).scan(Arrays.asList(fileset(root.toString(), "**/*.md", "")));
+            assertEquals(expected, sorted(files));
+            assertEquals(Collections.singletonList(locked), skipped);
+        } finally {
+            locked.setReadable(true, false);
+            locked.setExecutable(true, false);
+        }
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testStreamIsBounded()
+            throws Exception {
+        try (FileStream stream = new FileScanner(2).stream(
+                Collections.singletonList(fileset(root.toString(), "**", "")), 1)) {
+            assertFalse(stream.isEmpty());
+            int count = 0;
+            while (null != stream.next()) {
+                count++;
+            }
+            assertEquals(7, count);
+            assertEquals(7, stream.getCount());
+            assertTrue(stream.isComplete());
+        }
+        try (FileStream stream = new FileScanner(2).stream(
+                Collections.singletonList(fileset(root.toString(), "none", "")), 1)) {
+            assertTrue(stream.isEmpty());
+            assertNull(stream.next());
+        }
+        // the walk of the empty first fileset completes before the next one is forked
+        Path empty = Files.createDirectory(root.resolve("empty"));
+        List<FileSet> filesets = Arrays.asList(fileset(empty.toString(), "**", ""),
+                fileset(root.toString(), "**", "empty/**"));
+        for (int i = 0; i < 20; i++) {
+            try (FileStream stream = new FileScanner(4).stream(filesets, 1)) {
+                int count = 0;
+                while (null != stream.next()) {
+                    count++;
+                }
+                assertEquals(7, count);
+            }
+            assertEquals(7, new FileScanner(4).scan(filesets).size());
+        }
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testPruning()
+            throws Exception {
+        FileScanner.AntPattern include = new FileScanner.AntPattern("a/*/*.md");
+        assertTrue(include.couldMatchBelow("a"));
+        assertTrue(include.couldMatchBelow("a/b"));
+        assertFalse(include.couldMatchBelow("a/b/c"));
+        assertFalse(include.couldMatchBelow("docs"));
+        assertTrue(new FileScanner.AntPattern("**/*.md").couldMatchBelow("x/y/z"));
+        assertFalse(new FileScanner.AntPattern("*.md").couldMatchBelow("a"));
+
+        assertTrue(new FileScanner.AntPattern("**/CVS/**").matchesTree("a/CVS"));
+        assertTrue(new FileScanner.AntPattern("docs/").matchesTree("docs"));
+        assertFalse(new FileScanner.AntPattern("docs/*.md").matchesTree("docs"));
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testMissingDirectory()
+            throws Exception {
+        try {
+            scan(fileset(root.resolve("missing").toString(), "**", ""));
+            fail("Expected an IOException");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("does not exist"));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.cjnygard.mvn.rest;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.ws.rs.core.MediaType;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class FingerprintManifestTest
+        extends TestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp()
+            throws Exception {
+        super.setUp();
+        dir = Files.createTempDirectory("fingerprints").toFile();
+    }
+
+    @Override
+    protected void tearDown()
+            throws Exception {
+        FileUtils.deleteDirectory(dir);
+        super.tearDown();
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testConfigurationIgnoresHeaderOrder()
+            throws Exception {
+        URI uri = URI.create("http://docker:3001/md2pdf");
+        Map<String, String> a = new HashMap<>();
+        a.put("X-One", "1");
+        a.put("X-Two", "2");
+        Map<String, String> b = new HashMap<>();
+        b.put("X-Two", "2");
+        b.put("X-One", "1");
+        assertEquals(
+                RequestFingerprint.configuration("POST", uri, a, MediaType.TEXT_PLAIN_TYPE, null),
+                RequestFingerprint.configuration("post", uri, b, MediaType.TEXT_PLAIN_TYPE, null));
+        assertFalse(RequestFingerprint.configuration("POST", uri, a, null, null).equals(
+                RequestFingerprint.configuration("PUT", uri, a, null, null)));
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testUpToDate()
+            throws Exception {
+        File input = new File(dir, "test.md");
+        File output = new File(dir, "test.pdf");
+        Files.write(input.toPath(), "# Title".getBytes(StandardCharsets.UTF_8));
+        String fingerprint = RequestFingerprint.combine("config", RequestFingerprint.content(input));
+
+        FingerprintManifest manifest = new FingerprintManifest(new File(dir, "state/default.properties"));
+        manifest.load();
+        assertFalse(manifest.isUpToDate(input, fingerprint, output));
+
+        manifest.record(input, "config", fingerprint);
+        assertFalse("Missing output is never up to date", manifest.isUpToDate(input, fingerprint, output));
+        Files.write(output.toPath(), new byte[] {1});
+        assertTrue(manifest.isUpToDate(input, fingerprint, output));
+        manifest.save();
+
+        FingerprintManifest reloaded = new FingerprintManifest(new File(dir, "state/default.properties"));
+        reloaded.load();
+        assertTrue(reloaded.isUpToDate(input, fingerprint, output));
+
+        Files.write(input.toPath(), "# Changed".getBytes(StandardCharsets.UTF_8));
+        String changed = RequestFingerprint.combine("config", RequestFingerprint.content(input));
+        assertFalse(reloaded.isUpToDate(input, changed, output));
+        assertTrue(reloaded.isConfiguredBy(input, "config"));
+        assertFalse(reloaded.isConfiguredBy(input, "other"));
+        assertFalse(reloaded.isConfiguredBy(output, "config"));
+    }
+}
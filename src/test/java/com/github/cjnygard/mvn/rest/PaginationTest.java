@@ -0,0 +1,90 @@
+package com.github.cjnygard.mvn.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.core.Response;
+
+import junit.framework.TestCase;
+
+public class PaginationTest
+        extends TestCase {
+
+    private static final URI PAGE = URI.create("http://localhost/items?size=10&cursor=a");
+
+    private final List<String> events = new ArrayList<>();
+
+    private URI copy(Pagination pagination, final String body)
+            throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        URI next = pagination.copy(new ByteArrayInputStream(body.getBytes("UTF-8")), out, PAGE, 4,
+                new Pagination.Listener() {
+                    @Override
+                    public void next(URI link) {
+                        events.add(link + " after " + out.size() + " bytes");
+                    }
+                });
+        assertEquals(body, out.toString("UTF-8"));
+        return next;
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testCursorIsFoundWhileCopying()
+            throws Exception {
+        Pagination pagination = new Pagination("cursor", "meta.next", "cursor");
+        String body = "{\"items\":[{\"meta\":{\"next\":\"x\"}}],\"meta\":{\"count\":2,\"next\":\"b c\"},"
+                + "\"more\":\"" + new String(new char[10000]).replace('\0', 'z') + "\"}";
+        URI next = copy(pagination, body);
+        assertEquals(URI.create("http://localhost/items?cursor=b+c&size=10"), next);
+        assertEquals(1, events.size());
+        assertTrue("The next page is known before the page is copied", events.get(0).startsWith(next + " after "));
+        assertFalse(events.get(0).endsWith(" " + body.length() + " bytes"));
+
+        assertEquals(URI.create("http://localhost/items?page=2"),
+                copy(pagination, "{\"meta\":{\"next\":\"/items?page=2\"}}"));
+        assertNull(copy(pagination, "{\"meta\":{\"next\":null}}"));
+        assertNull(copy(pagination, "{\"meta\":{\"next\":\"\"}}"));
+        assertNull(copy(pagination, "{\"items\":[]}"));
+        assertEquals(2, events.size());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testLinkHeader()
+            throws Exception {
+        Pagination pagination = new Pagination(" LINK ", null, null);
+        Response response = Response.ok().link("/items?page=2", "next").link("/items?page=1", "first").build();
+        assertEquals(URI.create("http://localhost/items?page=2"), pagination.nextLink(response, PAGE));
+        assertNull(pagination.nextLink(Response.ok().build(), PAGE));
+        assertNull(copy(pagination, "not json"));
+        assertTrue(events.isEmpty());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testConfiguration()
+            throws Exception {
+        assertEquals("rest-2.file", Pagination.pageFilename("rest.file", 2));
+        assertEquals("out.tar-3.gz", Pagination.pageFilename("out.tar.gz", 3));
+        assertEquals("rest-1", Pagination.pageFilename("rest", 1));
+        try {
+            new Pagination("pages", "next", "cursor");
+            fail("Unknown mode accepted");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage().contains("[pages]"));
+        }
+        try {
+            new Pagination("cursor", " ", "cursor");
+            fail("Cursor mode without a field accepted");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage().contains("pageCursorField"));
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.github.cjnygard.mvn.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.maven.model.FileSet;
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.ReflectionUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.TestCase;
+
+/**
+ * Runs the whole mojo against a local service that answers every upload
+ * with the checksum of the body it received.
+ */
+public class PluginExecutionTest
+        extends TestCase {
+
+    private File dir;
+
+    private File input;
+
+    private File output;
+
+    private HttpServer service;
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private final AtomicInteger unavailable = new AtomicInteger();
+
+    private final AtomicInteger gzipRequests = new AtomicInteger();
+
+    private final AtomicInteger gzipResponses = new AtomicInteger();
+
+    @Override
+    protected void setUp()
+            throws Exception {
+        super.setUp();
+        dir = Files.createTempDirectory("execution").toFile();
+        input = new File(dir, "in");
+        output = new File(dir, "out");
+        assertTrue(input.mkdirs());
+        service = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        service.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange)
+                    throws IOException {
+                requests.incrementAndGet();
+                if (unavailable.getAndDecrement() > 0) {
+                    exchange.sendResponseHeaders(503, -1);
+                    exchange.close();
+                    return;
+                }
+                InputStream in = exchange.getRequestBody();
+                if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                    gzipRequests.incrementAndGet();
+                    in = new GZIPInputStream(in);
+                }
+                byte[] body = ("received " + digest(in)).getBytes(StandardCharsets.UTF_8);
+                String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                if ((null != accept) && accept.contains("gzip")) {
+                    gzipResponses.incrementAndGet();
+                    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                    try (OutputStream gzip = new GZIPOutputStream(compressed)) {
+                        gzip.write(body);
+                    }
+                    body = compressed.toByteArray();
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                exchange.getResponseHeaders().set("Content-Type", "text/plain");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            }
+        });
+        service.setExecutor(Executors.newFixedThreadPool(4));
+        service.start();
+    }
+
+    @Override
+    protected void tearDown()
+            throws Exception {
+        service.stop(0);
+        FileUtils.deleteDirectory(dir);
+        super.tearDown();
+    }
+
+    private static String digest(InputStream in)
+            throws IOException {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+        long length = 0;
+        byte[] buf = new byte[65536];
+        try (InputStream digested = new DigestInputStream(in, sha)) {
+            int n;
+            while ((n = digested.read(buf)) != -1) {
+                length += n;
+            }
+        }
+        return String.format("%064x %d", new BigInteger(1, sha.digest()), length);
+    }
+
+    private File file(String name, int lines)
+            throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            content.append(name).append(" line ").append(i).append('\n');
+        }
+        File f = new File(input, name);
+        Files.write(f.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+        return f;
+    }
+
+    private Plugin plugin(Object... parameters)
+            throws Exception {
+        Plugin plugin = new Plugin();
+        plugin.setLog(new DefaultLog(new ConsoleLogger(Logger.LEVEL_WARN, "rest")));
+        FileSet fileset = new FileSet();
+        fileset.setDirectory(input.getPath());
+        fileset.addInclude("*");
+        ReflectionUtils.setVariableValueInObject(plugin, "endpoint",
+                URI.create("http://127.0.0.1:" + service.getAddress().getPort() + "/digest"));
+        ReflectionUtils.setVariableValueInObject(plugin, "fileset", fileset);
+        ReflectionUtils.setVariableValueInObject(plugin, "outputDir", output);
+        ReflectionUtils.setVariableValueInObject(plugin, "target", new File(dir, "target"));
+        ReflectionUtils.setVariableValueInObject(plugin, "incremental", false);
+        ReflectionUtils.setVariableValueInObject(plugin, "metrics", false);
+        for (int i = 0; i < parameters.length; i += 2) {
+            ReflectionUtils.setVariableValueInObject(plugin, (String) parameters[i], parameters[i + 1]);
+        }
+        return plugin;
+    }
+
+    private void assertReceived(File f)
+            throws Exception {
+        File result = new File(output, f.getName());
+        assertTrue("Missing output " + result, result.isFile());
+        String expected;
+        try (InputStream in = Files.newInputStream(f.toPath())) {
+            expected = "received " + digest(in);
+        }
+        assertEquals(expected, new String(Files.readAllBytes(result.toPath()), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testSynchronousUploads()
+            throws Exception {
+        File a = file("a.txt", 10);
+        File b = file("b.txt", 1000);
+        File c = file("c.txt", 0);
+        plugin("concurrency", 2).execute();
+        assertReceived(a);
+        assertReceived(b);
+        assertReceived(c);
+        assertEquals(0, gzipRequests.get());
+        assertEquals(0, gzipResponses.get());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testAsynchronousUploads()
+            throws Exception {
+        File[] files = new File[20];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = file("f" + i + ".txt", i * 100);
+        }
+        plugin("async", true, "maxInFlight", 8).execute();
+        for (File f : files) {
+            assertReceived(f);
+        }
+    }
+
+    /**
+     * Failed async requests are sent again once their retry delay passed.
+     *
+     * @throws Exception if any
+     */
+    public void testAsynchronousRetries()
+            throws Exception {
+        File[] files = new File[6];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = file("f" + i + ".txt", i * 10);
+        }
+        unavailable.set(4);
+        plugin("async", true, "maxInFlight", 3, "maxRetries", 3, "retryInitialDelay", 50L).execute();
+        for (File f : files) {
+            assertReceived(f);
+        }
+        assertEquals(files.length + 4, requests.get());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testCompressedRequestsAndResponses()
+            throws Exception {
+        File a = file("a.txt", 5000);
+        File b = file("b.txt", 1);
+        plugin("compressRequest", true, "acceptEncoding", "gzip").execute();
+        assertEquals(2, gzipRequests.get());
+        assertEquals(2, gzipResponses.get());
+        assertReceived(a);
+        assertReceived(b);
+    }
+
+    /**
+     * An output that cannot be written is a local error, the request is not
+     * sent again.
+     *
+     * @throws Exception if any
+     */
+    public void testLocalErrorsAreNotRetried()
+            throws Exception {
+        file("a.txt", 10);
+        File blocked = new File(output, "a.txt");
+        assertTrue(new File(blocked, "child").mkdirs());
+        try {
+            plugin("maxRetries", 3, "retryInitialDelay", 1L).execute();
+            fail("The output was written");
+        } catch (Exception ex) {
+            // expected
+        }
+        assertEquals(1, requests.get());
+    }
+
+    /**
+     * Large files are streamed from their channel like small ones.
+     *
+     * @throws Exception if any
+     */
+    public void testLargeUploads()
+            throws Exception {
+        File small = file("small.txt", 100);
+        File large = new File(input, "large.bin");
+        byte[] block = new byte[1024 * 1024];
+        try (OutputStream out = Files.newOutputStream(large.toPath())) {
+            for (int i = 0; i < 70; i++) {
+                for (int j = 0; j < block.length; j += 4096) {
+                    block[j] = (byte) (i + j / 4096);
+                }
+                out.write(block);
+            }
+        }
+        plugin().execute();
+        assertReceived(small);
+        assertReceived(large);
+    }
+}
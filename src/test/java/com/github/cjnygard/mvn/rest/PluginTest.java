@@ -1,8 +1,14 @@
 package com.github.cjnygard.mvn.rest;
 
 import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+import org.codehaus.plexus.util.FileUtils;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.util.Arrays;
 
 public class PluginTest
         extends AbstractMojoTestCase {
@@ -126,4 +132,46 @@ public class PluginTest
         }
 
     }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testPipeToFile()
+            throws Exception {
+        Plugin myPlugin = loadPlugin();
+        File dir = Files.createTempDirectory("pipe").toFile();
+        try {
+            File out = new File(dir, "result.pdf");
+            byte[] data = new byte[200 * 1024];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) i;
+            }
+            myPlugin.pipeToFile(new ByteArrayInputStream(data), out);
+            assertTrue(Arrays.equals(data, Files.readAllBytes(out.toPath())));
+            assertEquals("Temporary file left behind", 1, dir.list().length);
+
+            InputStream broken = new InputStream() {
+                private int count;
+
+                @Override
+                public int read() throws IOException {
+                    if (count++ > 1000) {
+                        throw new IOException("connection reset");
+                    }
+                    return 'x';
+                }
+            };
+            try {
+                myPlugin.pipeToFile(broken, out);
+                fail("Expected IOException");
+            } catch (IOException ex) {
+                // expected
+            }
+            assertTrue("Previous output replaced by partial download",
+                    Arrays.equals(data, Files.readAllBytes(out.toPath())));
+            assertEquals("Temporary file left behind", 1, dir.list().length);
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
 }
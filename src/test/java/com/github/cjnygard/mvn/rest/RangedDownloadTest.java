@@ -0,0 +1,132 @@
+package com.github.cjnygard.mvn.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class RangedDownloadTest
+        extends TestCase {
+
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes();
+
+    private File dir;
+
+    private File output;
+
+    @Override
+    protected void setUp()
+            throws Exception {
+        super.setUp();
+        dir = Files.createTempDirectory("ranges").toFile();
+        output = new File(dir, "big.bin");
+    }
+
+    @Override
+    protected void tearDown()
+            throws Exception {
+        FileUtils.deleteDirectory(dir);
+        super.tearDown();
+    }
+
+    private void write(RangedDownload download, int range)
+            throws Exception {
+        int start = (int) download.getStart(range);
+        int end = (int) download.getEnd(range);
+        download.write(range, new ByteArrayInputStream(Arrays.copyOfRange(CONTENT, start, end + 1)), 4);
+        download.completed(range);
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testResumeFetchesMissingRanges()
+            throws Exception {
+        RangedDownload download = new RangedDownload(output, CONTENT.length, 8, "\"v1\"");
+        assertEquals(3, download.getRangeCount());
+        assertEquals(19, download.getEnd(2));
+        assertEquals(Arrays.asList(0, 1, 2), download.open());
+        assertEquals(CONTENT.length, download.getPartFile().length());
+        write(download, 1);
+        download.close();
+
+        RangedDownload resumed = new RangedDownload(output, CONTENT.length, 8, "\"v1\"");
+        List<Integer> missing = resumed.open();
+        assertEquals(Arrays.asList(0, 2), missing);
+        for (int range : missing) {
+            write(resumed, range);
+        }
+        resumed.finish();
+        assertTrue(Arrays.equals(CONTENT, Files.readAllBytes(output.toPath())));
+        assertFalse(resumed.getPartFile().exists());
+        assertFalse(resumed.getStateFile().exists());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testChangedResourceStartsOver()
+            throws Exception {
+        RangedDownload download = new RangedDownload(output, CONTENT.length, 8, "\"v1\"");
+        download.open();
+        write(download, 0);
+        download.close();
+
+        RangedDownload changed = new RangedDownload(output, CONTENT.length, 8, "\"v2\"");
+        assertEquals(3, changed.open().size());
+        changed.close();
+
+        RangedDownload unvalidated = new RangedDownload(output, CONTENT.length, 8, null);
+        unvalidated.open();
+        write(unvalidated, 0);
+        unvalidated.close();
+        assertEquals("Without a validator nothing is resumed", 3,
+                new RangedDownload(output, CONTENT.length, 8, null).open().size());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testShortRangeIsNotCompleted()
+            throws Exception {
+        RangedDownload download = new RangedDownload(output, CONTENT.length, 8, "\"v1\"");
+        download.open();
+        try {
+            download.write(0, new ByteArrayInputStream(Arrays.copyOfRange(CONTENT, 0, 5)), 4);
+            fail("Short range accepted");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("ended after [5] bytes"));
+        }
+        assertFalse(download.isComplete());
+        try {
+            download.finish();
+            fail("Incomplete download moved into place");
+        } catch (IOException ex) {
+            assertFalse(output.exists());
+        }
+        download.discard();
+        assertFalse(download.getPartFile().exists());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testContentRangeMustMatchTheRequestedRange()
+            throws Exception {
+        RangedDownload download = new RangedDownload(output, CONTENT.length, 8, "\"v1\"");
+        assertTrue(download.isContentRange(1, "bytes 8-15/20"));
+        assertTrue(download.isContentRange(2, "bytes 16-19/*"));
+        assertFalse("Same length, other offset", download.isContentRange(1, "bytes 0-7/20"));
+        assertFalse("Other end", download.isContentRange(1, "bytes 8-14/20"));
+        assertFalse("Other resource length", download.isContentRange(1, "bytes 8-15/21"));
+        assertFalse(download.isContentRange(1, null));
+        assertFalse(download.isContentRange(1, "bytes */20"));
+        assertFalse(download.isContentRange(1, "items 8-15/20"));
+    }
+}
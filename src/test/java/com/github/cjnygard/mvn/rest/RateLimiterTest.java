@@ -0,0 +1,46 @@
+package com.github.cjnygard.mvn.rest;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class RateLimiterTest
+        extends TestCase {
+
+    /**
+     * @throws Exception if any
+     */
+    public void testUnlimited()
+            throws Exception {
+        RateLimiter limiter = new RateLimiter(0, 0);
+        assertTrue(limiter.isUnlimited());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, limiter.acquire(1024 * 1024));
+        }
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testRequestsAreSpacedOut()
+            throws Exception {
+        RateLimiter limiter = new RateLimiter(50, 0);
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i++) {
+            limiter.acquire(0);
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("No burst: " + elapsed, elapsed >= 95);
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testBytesDelayLaterRequests()
+            throws Exception {
+        RateLimiter limiter = new RateLimiter(0, 10000);
+        assertEquals("The first request is sent at once", 0, limiter.acquire(1000));
+        long waited = limiter.acquire(1);
+        assertTrue(String.valueOf(waited), (waited >= 90) && (waited <= 100));
+    }
+}
@@ -0,0 +1,218 @@
+package com.github.cjnygard.mvn.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPatch;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.codehaus.plexus.util.FileUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.TestCase;
+
+public class ReplayServerTest
+        extends TestCase {
+
+    private File archive;
+
+    private HttpServer service;
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    protected void setUp()
+            throws Exception {
+        archive = Files.createTempDirectory("rest-archive").toFile();
+        service = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        service.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange)
+                    throws IOException {
+                calls.incrementAndGet();
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                byte[] body = ("echo:" + read(exchange.getRequestBody()) + ((null == range) ? "" : ":" + range))
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("X-Service", "real");
+                exchange.getResponseHeaders().set("Link", "<" + serviceUri("/items?page=2") + ">; rel=\"next\"");
+                exchange.getResponseHeaders().set("X-Method", exchange.getRequestMethod());
+                exchange.sendResponseHeaders(exchange.getRequestURI().getPath().endsWith("busy") ? 503 : 201,
+                        body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            }
+        });
+        service.start();
+    }
+
+    @Override
+    protected void tearDown()
+            throws Exception {
+        service.stop(0);
+        FileUtils.deleteDirectory(archive);
+    }
+
+    private URI serviceUri(String path) {
+        return URI.create("http://127.0.0.1:" + service.getAddress().getPort() + path);
+    }
+
+    private static String read(InputStream in)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static HttpURLConnection post(URI uri, String body)
+            throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "text/plain");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return connection;
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testRecordThenReplay()
+            throws Exception {
+        URI endpoint = serviceUri("/convert?x=1");
+        try (ReplayServer recorder = ReplayServer.record(archive, endpoint)) {
+            HttpURLConnection connection = post(recorder.getUri(endpoint), "hello");
+            assertEquals(201, connection.getResponseCode());
+            assertEquals("echo:hello", read(connection.getInputStream()));
+        }
+        assertEquals(1, calls.get());
+        service.stop(0);
+
+        try (ReplayServer replayer = ReplayServer.replay(archive)) {
+            HttpURLConnection connection = post(replayer.getUri(endpoint), "hello");
+            assertEquals(201, connection.getResponseCode());
+            assertEquals("real", connection.getHeaderField("X-Service"));
+            assertEquals("echo:hello", read(connection.getInputStream()));
+
+            HttpURLConnection other = post(replayer.getUri(endpoint), "bye");
+            assertEquals("A different body is not matched", 404, other.getResponseCode());
+        }
+        assertEquals(1, calls.get());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testRangesAreRecordedSeparately()
+            throws Exception {
+        URI endpoint = serviceUri("/big");
+        String[] ranges = {"bytes=0-7", "bytes=8-15"};
+        try (ReplayServer recorder = ReplayServer.record(archive, endpoint)) {
+            for (String range : ranges) {
+                HttpURLConnection connection = (HttpURLConnection) recorder.getUri(endpoint).toURL().openConnection();
+                connection.setRequestProperty("Range", range);
+                assertEquals(201, connection.getResponseCode());
+                read(connection.getInputStream());
+            }
+        }
+        assertEquals("One body and one metadata file per range, no scratch files", 4, archive.list().length);
+        service.stop(0);
+
+        try (ReplayServer replayer = ReplayServer.replay(archive)) {
+            for (String range : ranges) {
+                HttpURLConnection connection = (HttpURLConnection) replayer.getUri(endpoint).toURL().openConnection();
+                connection.setRequestProperty("Range", range);
+                assertEquals("echo::" + range, read(connection.getInputStream()));
+            }
+        }
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testPatchAndLinksAreRecorded()
+            throws Exception {
+        URI endpoint = serviceUri("/items");
+        try (ReplayServer recorder = ReplayServer.record(archive, endpoint);
+                CloseableHttpClient client = HttpClients.createDefault()) {
+            HttpPatch patch = new HttpPatch(recorder.getUri(endpoint));
+            patch.setEntity(new StringEntity("hello", ContentType.TEXT_PLAIN));
+            try (CloseableHttpResponse response = client.execute(patch)) {
+                assertEquals(201, response.getStatusLine().getStatusCode());
+                assertEquals("PATCH", response.getFirstHeader("X-Method").getValue());
+                assertEquals("Links lead back to the stub", "</items?page=2>; rel=\"next\"",
+                        response.getFirstHeader("Link").getValue());
+            }
+        }
+        service.stop(0);
+
+        try (ReplayServer replayer = ReplayServer.replay(archive);
+                CloseableHttpClient client = HttpClients.createDefault()) {
+            HttpPatch patch = new HttpPatch(replayer.getUri(endpoint));
+            patch.setEntity(new StringEntity("hello", ContentType.TEXT_PLAIN));
+            try (CloseableHttpResponse response = client.execute(patch)) {
+                assertEquals(201, response.getStatusLine().getStatusCode());
+                assertEquals("</items?page=2>; rel=\"next\"", response.getFirstHeader("Link").getValue());
+                assertEquals("echo:hello", read(response.getEntity().getContent()));
+            }
+        }
+        assertEquals(1, calls.get());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testServerErrorsAreNotRecorded()
+            throws Exception {
+        URI endpoint = serviceUri("/busy");
+        try (ReplayServer recorder = ReplayServer.record(archive, endpoint)) {
+            assertEquals(503, post(recorder.getUri(endpoint), "hello").getResponseCode());
+        }
+        assertEquals(0, archive.list().length);
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testMultipartBoundaryIsIgnored()
+            throws Exception {
+        assertEquals("Boundary_1_2", ReplayServer.boundary("multipart/mixed; boundary=\"Boundary_1_2\""));
+        assertNull(ReplayServer.boundary("text/plain; boundary=x"));
+        byte[] a = ReplayServer.normalize("--abc\r\nX\r\n--abc--".getBytes(StandardCharsets.UTF_8), "abc");
+        byte[] b = ReplayServer.normalize("--xyzw\r\nX\r\n--xyzw--".getBytes(StandardCharsets.UTF_8), "xyzw");
+        assertEquals(new String(a, StandardCharsets.UTF_8), new String(b, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testReplayNeedsAnArchive()
+            throws Exception {
+        try {
+            ReplayServer.replay(new File(archive, "missing"));
+            fail("Expected an IOException");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("does not exist"));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.cjnygard.mvn.rest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+public class RequestDispatcherTest
+        extends TestCase {
+
+    private static Runnable failing() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalArgumentException("bufferSize must be greater than 0");
+            }
+        };
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testEscapedExceptionFailsAwait()
+            throws Exception {
+        final AtomicInteger ran = new AtomicInteger();
+        RequestDispatcher dispatcher = new RequestDispatcher(2, 2);
+        dispatcher.queue(failing());
+        for (int i = 0; i < 5; i++) {
+            dispatcher.queue(new Runnable() {
+                @Override
+                public void run() {
+                    ran.incrementAndGet();
+                }
+            });
+        }
+        try {
+            dispatcher.await();
+            fail("Exception lost");
+        } catch (MojoExecutionException ex) {
+            assertTrue(ex.getMessage().contains("bufferSize must be greater than 0"));
+        }
+        assertEquals("The other tasks still run", 5, ran.get());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testEscapedExceptionFailsTimedAwait()
+            throws Exception {
+        RequestDispatcher dispatcher = new RequestDispatcher(1);
+        dispatcher.submit(failing());
+        try {
+            dispatcher.await(10, TimeUnit.SECONDS);
+            fail("Exception lost");
+        } catch (MojoExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalArgumentException);
+        }
+
+        AsyncRequestDispatcher async = new AsyncRequestDispatcher(2, 1);
+        assertTrue(async.tryAcquire(1, TimeUnit.SECONDS));
+        async.complete(new AsyncRequestDispatcher.Completion() {
+            @Override
+            public boolean process() {
+                failing().run();
+                return true;
+            }
+        });
+        try {
+            async.await();
+            fail("Exception lost");
+        } catch (MojoExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testResentRequestKeepsPermit()
+            throws Exception {
+        final AsyncRequestDispatcher async = new AsyncRequestDispatcher(1, 1);
+        final AtomicInteger sent = new AtomicInteger();
+        assertTrue(async.tryAcquire(1, TimeUnit.SECONDS));
+        async.complete(new AsyncRequestDispatcher.Completion() {
+            @Override
+            public boolean process() {
+                return !async.resend(new Runnable() {
+                    @Override
+                    public void run() {
+                        sent.incrementAndGet();
+                        async.complete(new AsyncRequestDispatcher.Completion() {
+                            @Override
+                            public boolean process() {
+                                return true;
+                            }
+                        });
+                    }
+                }, 200, TimeUnit.MILLISECONDS);
+            }
+        });
+        assertFalse("The retry holds the permit", async.tryAcquire(50, TimeUnit.MILLISECONDS));
+        assertTrue(async.await(10, TimeUnit.SECONDS));
+        assertEquals(1, sent.get());
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.cjnygard.mvn.rest;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+public class RequestLimitsTest
+        extends TestCase {
+
+    private static final URI A = URI.create("http://a:3001/");
+
+    private static final URI B = URI.create("http://b:3001/");
+
+    /**
+     * @throws Exception if any
+     */
+    public void testLeaseIsReleasedOnce()
+            throws Exception {
+        EndpointBalancer balancer = new EndpointBalancer(Arrays.asList(A, B), 0);
+        final RequestLimits limits = new RequestLimits(new RateLimiter(0, 0), balancer, new SystemStreamLog());
+        limits.setConcurrencyLimit(new AdaptiveLimit(1, 1, 1));
+        RequestLimits.Lease first = limits.acquire(0);
+        assertNotNull(first.getEndpoint());
+        first.responded();
+        first.releaseSlot(false);
+        first.close(false);
+        first.close(true);
+        assertEquals(Arrays.asList(0, 0), balancer.getOutstanding());
+
+        RequestLimits.Lease second = limits.acquire(0);
+        final CountDownLatch third = new CountDownLatch(1);
+        Thread waiting = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    limits.acquire(0).close(false);
+                    third.countDown();
+                } catch (InterruptedException ex) {
+                    // the test failed
+                }
+            }
+        });
+        waiting.start();
+        assertFalse("The slot was released twice", third.await(100, TimeUnit.MILLISECONDS));
+        second.close(false);
+        assertTrue(third.await(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(0, 0), balancer.getOutstanding());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testWithoutConcurrencyLimitOrBalancer()
+            throws Exception {
+        RequestLimits limits = new RequestLimits(new RateLimiter(0, 0), null, new SystemStreamLog());
+        RequestLimits.Lease lease = limits.acquire(100);
+        assertNull(lease.getEndpoint());
+        assertEquals(0, lease.getRtt());
+        assertTrue(lease.responded() >= 0);
+        lease.close(true);
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.cjnygard.mvn.rest;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import junit.framework.TestCase;
+
+public class RequestMetricsTest
+        extends TestCase {
+
+    private static long ms(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testPercentiles()
+            throws Exception {
+        long[] values = new long[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i + 1;
+        }
+        assertEquals(50, RequestMetrics.percentile(values, 50));
+        assertEquals(90, RequestMetrics.percentile(values, 90));
+        assertEquals(99, RequestMetrics.percentile(values, 99));
+        assertEquals(7, RequestMetrics.percentile(new long[] {7}, 99));
+        assertEquals(0, RequestMetrics.percentile(new long[0], 50));
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    @SuppressWarnings("unchecked")
+    public void testReport()
+            throws Exception {
+        RequestMetrics metrics = new RequestMetrics();
+        metrics.queued("a", ms(5));
+        metrics.record(new RequestMetrics.Sample("a").queue(ms(1)).response(ms(10), 200).transfer(ms(2))
+                .bytes(100, 50));
+        metrics.record(new RequestMetrics.Sample("a").response(ms(20), 200).bytes(100, 50));
+        metrics.record(new RequestMetrics.Sample("b").response(ms(30), -1).bytes(10, 0));
+        metrics.finish();
+
+        Map<String, Object> report = metrics.report();
+        assertEquals(3, report.get("requests"));
+        assertEquals(210L, report.get("requestBytes"));
+        assertEquals(100L, report.get("responseBytes"));
+        Map<String, Integer> status = (Map<String, Integer>) report.get("status");
+        assertEquals(Integer.valueOf(2), status.get("200"));
+        assertEquals(Integer.valueOf(1), status.get("error"));
+
+        Map<String, Object> latency = (Map<String, Object>) report.get("latencyMs");
+        Map<String, Object> queue = (Map<String, Object>) latency.get("queue");
+        assertEquals("Only the first attempt waits in the queue", 6.0, queue.get("max"));
+        Map<String, Object> total = (Map<String, Object>) latency.get("total");
+        assertEquals(20.0, total.get("p50"));
+        assertEquals(30.0, total.get("max"));
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testWriteJson()
+            throws Exception {
+        RequestMetrics metrics = new RequestMetrics();
+        metrics.record(new RequestMetrics.Sample("a").response(ms(10), 201).bytes(1, 2));
+        metrics.finish();
+        File file = new File(System.getProperty("java.io.tmpdir"), "rest-metrics-test/metrics.json");
+        file.deleteOnExit();
+        metrics.write(file, Collections.<String, Object>singletonMap("execution", "test"));
+
+        JsonNode json = new ObjectMapper().readTree(file);
+        assertEquals("test", json.get("execution").asText());
+        assertEquals(1, json.get("requests").asInt());
+        assertEquals(1, json.get("status").get("201").asInt());
+        assertEquals(10.0, json.get("latencyMs").get("ttfb").get("p99").asDouble());
+        assertEquals("a", json.get("samples").get(0).get("request").asText());
+        assertEquals("requests, 4 latencies, status", 6, metrics.summary().size());
+    }
+}
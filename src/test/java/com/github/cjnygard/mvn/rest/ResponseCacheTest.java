@@ -0,0 +1,83 @@
+package com.github.cjnygard.mvn.rest;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class ResponseCacheTest
+        extends TestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp()
+            throws Exception {
+        super.setUp();
+        dir = Files.createTempDirectory("rest-cache").toFile();
+    }
+
+    @Override
+    protected void tearDown()
+            throws Exception {
+        FileUtils.deleteDirectory(dir);
+        super.tearDown();
+    }
+
+    private File body(String name, int size)
+            throws Exception {
+        File f = new File(dir, name);
+        Files.write(f.toPath(), new byte[size]);
+        return f;
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testHitAndMiss()
+            throws Exception {
+        ResponseCache cache = new ResponseCache(new File(dir, "cache"), 1024);
+        File out = new File(dir, "out.pdf");
+        assertFalse(cache.retrieve("aa01", out));
+        assertFalse(out.exists());
+
+        cache.store("aa01", body("response", 10));
+        assertTrue(cache.retrieve("aa01", out));
+        assertEquals(10, out.length());
+
+        // a later plugin rewriting the output in place
+        try (RandomAccessFile rw = new RandomAccessFile(out, "rw")) {
+            rw.write(new byte[] {1, 2, 3});
+        }
+        File other = new File(dir, "other.pdf");
+        assertTrue(cache.retrieve("aa01", other));
+        assertTrue("The cached response is unchanged", Arrays.equals(new byte[10],
+                Files.readAllBytes(other.toPath())));
+        assertEquals(4, dir.list().length);
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testLeastRecentlyUsedEviction()
+            throws Exception {
+        File cacheDir = new File(dir, "cache");
+        ResponseCache cache = new ResponseCache(cacheDir, 250);
+        cache.store("aa01", body("one", 100));
+        cache.store("bb02", body("two", 100));
+        // make the first entry the oldest, then use it so the second is evicted
+        Files.setLastModifiedTime(new File(cacheDir, "aa/aa01").toPath(), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(new File(cacheDir, "bb/bb02").toPath(), FileTime.fromMillis(2000));
+        assertTrue(cache.retrieve("aa01", new File(dir, "out")));
+
+        cache.store("cc03", body("three", 100));
+        assertTrue(new File(cacheDir, "aa/aa01").exists());
+        assertFalse(new File(cacheDir, "bb/bb02").exists());
+        assertTrue(new File(cacheDir, "cc/cc03").exists());
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.cjnygard.mvn.rest;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Map;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class ResponseValidatorsTest
+        extends TestCase {
+
+    private File dir;
+
+    private File output;
+
+    private File file;
+
+    @Override
+    protected void setUp()
+            throws Exception {
+        super.setUp();
+        dir = Files.createTempDirectory("validators").toFile();
+        output = new File(dir, "out/rest.file");
+        file = new File(dir, "target/rest-validators/default/rest.file.validators");
+        assertTrue(output.getParentFile().mkdirs());
+        Files.write(output.toPath(), "body".getBytes());
+    }
+
+    @Override
+    protected void tearDown()
+            throws Exception {
+        FileUtils.deleteDirectory(dir);
+        super.tearDown();
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testValidatorsAreSentBack()
+            throws Exception {
+        ResponseValidators validators = new ResponseValidators(file, output, "config");
+        assertTrue(validators.getRequestHeaders().isEmpty());
+
+        validators.save(Response.ok().header(HttpHeaders.ETAG, "\"v1\"")
+                .header(HttpHeaders.LAST_MODIFIED, "Wed, 21 Oct 2015 07:28:00 GMT").build());
+        Map<String, String> headers = new ResponseValidators(file, output, "config").getRequestHeaders();
+        assertEquals("\"v1\"", headers.get(HttpHeaders.IF_NONE_MATCH));
+        assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", headers.get(HttpHeaders.IF_MODIFIED_SINCE));
+
+        assertTrue("A changed request is not conditional",
+                new ResponseValidators(file, output, "other").getRequestHeaders().isEmpty());
+        assertTrue(output.delete());
+        assertTrue("A missing output is downloaded again", validators.getRequestHeaders().isEmpty());
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testResponseWithoutValidatorsRemovesSidecar()
+            throws Exception {
+        ResponseValidators validators = new ResponseValidators(file, output, "config");
+        validators.save(Response.ok().header(HttpHeaders.ETAG, "W/\"v1\"").build());
+        assertTrue(validators.getFile().isFile());
+        assertEquals("Only the response is in the output directory", 1, output.getParentFile().list().length);
+        assertEquals(1, validators.getRequestHeaders().size());
+
+        validators.save(Response.ok().build());
+        assertFalse(validators.getFile().exists());
+        assertTrue(validators.getRequestHeaders().isEmpty());
+    }
+}
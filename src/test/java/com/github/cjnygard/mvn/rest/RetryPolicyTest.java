@@ -0,0 +1,77 @@
+package com.github.cjnygard.mvn.rest;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+public class RetryPolicyTest
+        extends TestCase {
+
+    /**
+     * @throws Exception if any
+     */
+    public void testRetryableStatuses()
+            throws Exception {
+        RetryPolicy policy = new RetryPolicy(3, "429, 5xx", false, 10, 100, 100);
+        assertTrue(policy.isRetryable(429));
+        assertTrue(policy.isRetryable(500));
+        assertTrue(policy.isRetryable(503));
+        assertFalse(policy.isRetryable(404));
+        assertFalse(policy.isRetryable(-1));
+        assertTrue(new RetryPolicy(3, "", true, 10, 100, 100).isRetryable(-1));
+        try {
+            new RetryPolicy(3, "5oo", true, 10, 100, 100);
+            fail("Invalid status accepted");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testMaxRetriesAndBudget()
+            throws Exception {
+        RetryPolicy policy = new RetryPolicy(2, "503", true, 10, 100, 3);
+        assertTrue(policy.shouldRetry(503, 0));
+        assertTrue(policy.shouldRetry(503, 1));
+        assertFalse(policy.shouldRetry(503, 2));
+        assertFalse("Not retryable, no budget used", policy.shouldRetry(400, 0));
+        assertEquals(1, policy.getRemainingBudget());
+        assertTrue(policy.shouldRetry(-1, 0));
+        assertFalse("Budget exhausted", policy.shouldRetry(503, 0));
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testDelay()
+            throws Exception {
+        RetryPolicy policy = new RetryPolicy(10, "503", true, 100, 1000, 100);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(policy.delay(0, null) <= 100);
+            assertTrue(policy.delay(2, null) <= 400);
+            assertTrue(policy.delay(40, null) <= 1000);
+        }
+        assertEquals("Retry-After is honored", 1000, policy.delay(0, "1"));
+        assertEquals("Retry-After is capped", 1000, policy.delay(0, "120"));
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testParseRetryAfter()
+            throws Exception {
+        assertEquals(-1, RetryPolicy.parseRetryAfter(null));
+        assertEquals(-1, RetryPolicy.parseRetryAfter("soon"));
+        assertEquals(5000, RetryPolicy.parseRetryAfter(" 5 "));
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        long delay = RetryPolicy.parseRetryAfter(format.format(new Date(System.currentTimeMillis() + 60000)));
+        assertTrue(String.valueOf(delay), (delay > 55000) && (delay <= 60000));
+        assertEquals(0, RetryPolicy.parseRetryAfter(format.format(new Date(0))));
+    }
+}